@@ -8,6 +8,9 @@ import java.util.Map;
 import org.apache.commons.lang.StringUtils;
 
 import cn.edu.zju.lau.cminer.model.Rule;
+import cn.edu.zju.lau.cminer.segment.FixedCountSegmentation;
+import cn.edu.zju.lau.cminer.segment.SegmentationStrategy;
+import cn.edu.zju.lau.utils.LongList;
 
 /**
  * CMinerBase，C-Miner算法的抽象类。
@@ -23,6 +26,8 @@ public abstract class CMinerBase {
 	protected int minSupport;			// 频繁序列的最小出现次数
 	protected float minConfidence;		// 关联规则的最小confidence，confidence(a->b) = support(b)/support(a)
 	protected String inputSequeuece;	// 文件访问序列
+	protected LongList inputTimestamps;	// 文件访问序列中每个访问（字符）的时间戳，时间分段策略使用
+	protected SegmentationStrategy segmentation;	// 文件访问序列的分段策略
 	
 	protected List<String> inputSegments;					// 文件访问序列的分段，每段长度为windowSize
 	protected Map<String, Integer> freSubsequences;			// 候选频繁子序列，对应其出现的次数
@@ -43,6 +48,7 @@ public abstract class CMinerBase {
 		maxGap = windowSize - 2;
 		minSupport = 4;
 		minConfidence = 1.0F;
+		segmentation = new FixedCountSegmentation();
 		
 		// 创建对象
 		inputSegments = new ArrayList<String>();
@@ -55,8 +61,14 @@ public abstract class CMinerBase {
 	}
 	
 	public CMinerBase(String inputSequence, int windowSize, int maxGap, int minSupport, float minConfidence){
+		this(inputSequence, windowSize, maxGap, minSupport, minConfidence, new FixedCountSegmentation());
+	}
+	
+	public CMinerBase(String inputSequence, int windowSize, int maxGap, int minSupport, float minConfidence,
+			SegmentationStrategy segmentation){
 		
 		this.inputSequeuece = inputSequence;
+		this.segmentation = segmentation;
 		
 		// 设置默认参数
 		this.windowSize = windowSize;
@@ -75,7 +87,9 @@ public abstract class CMinerBase {
 	}
 
 	/**
-	 * 采用non-overlapped cutting方法将访问序列划分为多个固定长度的短序列片段。
+	 * 按分段策略将访问序列划分为多个短序列片段，每个片段的长度不超过windowSize。
+	 * 默认采用non-overlapped cutting方法，划分为固定长度的片段；
+	 * 按时间窗口、空闲间隔分段时，需要通过setInputTimestamps输入每个字符的时间。
 	 * 
 	 * 生成:	List<String> inputSegments
 	 */
@@ -86,15 +100,26 @@ public abstract class CMinerBase {
 			System.out.println("Input Sequeuece is null! Exit...");
 			return;
 		}
+		boolean timeBased = segmentation.requiresTimestamps();
+		if(timeBased && (inputTimestamps == null || inputTimestamps.size() < inputSequeuece.length())){
+			System.out.println("Input Timestamps is null or shorter than Input Sequence! Exit...");
+			return;
+		}
 		
 		// 对输入字符串进行分段
 		int start = 0;
-		int end = start + windowSize;
+		long segmentStartTime = timeBased ? inputTimestamps.get(0) : 0;
+		long previousTime = segmentStartTime;
 		
-		while(end < inputSequeuece.length()){
-			inputSegments.add(inputSequeuece.substring(start, end));
-			start = end;
-			end += windowSize;
+		for(int i = 1; i < inputSequeuece.length(); i++){
+			long currentTime = timeBased ? inputTimestamps.get(i) : 0;
+			
+			if(segmentation.isSegmentBoundary(i - start, windowSize, segmentStartTime, previousTime, currentTime)){
+				inputSegments.add(inputSequeuece.substring(start, i));
+				start = i;
+				segmentStartTime = currentTime;
+			}
+			previousTime = currentTime;
 		}
 		inputSegments.add(inputSequeuece.substring(start));
 	}
@@ -114,6 +139,10 @@ public abstract class CMinerBase {
 	 * 		1. 是候选频繁子序列（Frequent Subsequences）的子集
 	 * 		2. 满足Closed条件：与所有super-subsequences的support不同
 	 * 
+	 * 第i层序列的直接父序列，只可能是第i+1层中去掉第一个或最后一个字符后与其相同的序列。
+	 * 因此先按这两个子序列为第i+1层建立索引（子序列 -> 父序列的最大support），
+	 * 每个序列只需查找一次索引，而不必与第i+1层的每个序列比较。
+	 * 
 	 * 生成:	Map<String, Integer> closedFreSubsequences
 	 */
 	public void closedFreSubsequences(){
@@ -129,52 +158,41 @@ public abstract class CMinerBase {
 			
 			// 最长序列都是closed的
 			if(i == this.maxSeqLength){
-				for(Map.Entry<String, Integer> entry: this.freSubsequencesTier.get(i).entrySet()){
-					closedFreSubsequences.put(entry.getKey(), entry.getValue());
-				}
+				closedFreSubsequences.putAll(this.freSubsequencesTier.get(i));
+				continue;
+			}
+			
+			// 为父层建立索引：去掉第一个/最后一个字符后的子序列 -> 父序列的最大support
+			Map<String, Integer> maxSuperSupport = new HashMap<String, Integer>();
+			for(Map.Entry<String, Integer> superEntry: this.freSubsequencesTier.get(i + 1).entrySet()){
+				String superSeq = superEntry.getKey();
+				updateMaxSupport(maxSuperSupport, superSeq.substring(1), superEntry.getValue());
+				updateMaxSupport(maxSuperSupport, superSeq.substring(0, superSeq.length() - 1), superEntry.getValue());
 			}
 			
 			// closed条件：
 			// 不是任何frequent subsequence的子序列
 			// 或
-			// 是子序列 && support 与 大于父序列的support
-			else{
-				// 依次检查当前层每一个序列
-				for(Map.Entry<String, Integer> entry: this.freSubsequencesTier.get(i).entrySet()){
-					boolean isSubSubseq = false;
-					
-					// 当前序列 与 其父层（直接父序列）中每一个序列的关系：是否为子序列、support大小关系
-					for(Map.Entry<String, Integer> superEntry: this.freSubsequencesTier.get(i + 1).entrySet()){
-						
-						// 是子序列
-						if(superEntry.getKey().contains(entry.getKey())){
-							
-							isSubSubseq = true;
-							
-							// 大于所有父序列的support
-							if(entry.getValue() > superEntry.getValue()){
-								closedFreSubsequences.put(entry.getKey(), entry.getValue());
-								
-								// 虽然这一次大于，但是有可能是有小于等于的父序列的，所以需要检测完
-								continue;
-							}
-							else{
-								closedFreSubsequences.remove(entry.getKey());
-								
-								// 一票否定，无需继续检测
-								break;
-							}
-						}
-					}
-					
-					// 不是任何frequent subsequence的子序列
-					if(!isSubSubseq){
-						closedFreSubsequences.put(entry.getKey(), entry.getValue());
-					}
+			// 是子序列 && support 大于所有父序列的support
+			for(Map.Entry<String, Integer> entry: this.freSubsequencesTier.get(i).entrySet()){
+				Integer superSupport = maxSuperSupport.get(entry.getKey());
+				if(superSupport == null || entry.getValue() > superSupport){
+					closedFreSubsequences.put(entry.getKey(), entry.getValue());
 				}
 			}
 		}
 	}
+	
+	/**
+	 * 更新子序列对应的父序列最大support
+	 */
+	protected static <K> void updateMaxSupport(Map<K, Integer> maxSupport, K subseq, int support){
+		
+		Integer current = maxSupport.get(subseq);
+		if(current == null || current < support){
+			maxSupport.put(subseq, support);
+		}
+	}
 
 	/**
 	 * 生成关联规则，满足：
@@ -325,6 +343,26 @@ public abstract class CMinerBase {
 		this.inputSequeuece = inputSequeuece;
 	}
 
+	public LongList getInputTimestamps() {
+		return inputTimestamps;
+	}
+
+	/**
+	 * 输入文件访问序列中每个访问（字符）的时间戳，与inputSequeuece一一对应
+	 * @param inputTimestamps
+	 */
+	public void setInputTimestamps(LongList inputTimestamps) {
+		this.inputTimestamps = inputTimestamps;
+	}
+
+	public SegmentationStrategy getSegmentation() {
+		return segmentation;
+	}
+
+	public void setSegmentation(SegmentationStrategy segmentation) {
+		this.segmentation = segmentation;
+	}
+
 	
 	/* 中间结果的getters */
 	
@@ -360,7 +398,8 @@ public abstract class CMinerBase {
 		sb.append("Window size:\t").append(this.windowSize).append("\n")
 		  .append("Max Gap:\t").append(this.maxGap).append("\n")
 		  .append("Min Support:\t").append(this.minSupport).append("\n")
-		  .append("Min Confidence:\t").append(this.minConfidence).append("\n");
+		  .append("Min Confidence:\t").append(this.minConfidence).append("\n")
+		  .append("Segmentation:\t").append(this.segmentation).append("\n");
 		
 		sb.append("Input Sequence Length:\t\t").append(this.inputSequeuece.length()).append("\n")
 		  .append("Input Segments Length:\t\t").append(this.inputSegments.size()).append("\n")
@@ -9,6 +9,7 @@ import java.util.Set;
 import cn.edu.zju.lau.cminer.CMinerBase;
 import cn.edu.zju.lau.cminer.model.Rule;
 import cn.edu.zju.lau.cminer.model.SubsequenceSuffix;
+import cn.edu.zju.lau.cminer.segment.SegmentationStrategy;
 
 /**
  * 挖掘序列中事件（字符）的关联关系
@@ -34,6 +35,12 @@ public class CMinerAuthor extends CMinerBase {
 		Ds = new HashMap<String,SubsequenceSuffix>();
 	}
 	
+	public CMinerAuthor(String inputSequence, int windowSize, int maxGap, int minSupport, float minConfidence,
+			SegmentationStrategy segmentation){
+		super(inputSequence, windowSize, maxGap, minSupport, minConfidence, segmentation);
+		Ds = new HashMap<String,SubsequenceSuffix>();
+	}
+	
 	@Override
 	public void candidateFreSubsequences() {
 		System.out.println("生成候选频繁子序列的DFS方法需要参数，抽象接口没定义好，哎~ ");
@@ -1,10 +1,13 @@
 package cn.edu.zju.lau.cminer.impl;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
 import cn.edu.zju.lau.cminer.CMinerBase;
+import cn.edu.zju.lau.cminer.segment.SegmentationStrategy;
 
 /**
  * 挖掘序列中事件（字符）的关联关系
@@ -24,6 +27,15 @@ public class CMinerYuki extends CMinerBase {
 		super(inputSequence, windowSize, maxGap, minSupport, minConfidence);
 	}
 	
+	public CMinerYuki(String inputSequence, int windowSize, int maxGap, int minSupport, float minConfidence,
+			SegmentationStrategy segmentation){
+		super(inputSequence, windowSize, maxGap, minSupport, minConfidence, segmentation);
+	}
+	
+	/**
+	 * BFS 产生候选频繁子序列集合，每一轮扫描所有segments，生成长度为currentSeqLen的频繁子序列。
+	 * 第currentSeqLen轮只扩展第currentSeqLen - 1层的频繁子序列，上一层为空时提前结束。
+	 */
 	@Override
 	public void candidateFreSubsequences() {
 
@@ -40,83 +52,109 @@ public class CMinerYuki extends CMinerBase {
 		while(++currentSeqLen <= windowSize){
 
 			// 挖掘关联子序列
+			Collection<String> prefixes = getPrefixes(currentSeqLen);
 			for(String segment: inputSegments){
-				// 初始第一轮扫描，获取最基础（每个字符）的出现次数
-				if(1 == currentSeqLen){
-					for(int i = 0; i < segment.length(); i++){
-						String oneCharStr = segment.substring(i, i + 1);
-						Integer count = newSequences.get(oneCharStr) == null ? 0 : newSequences.get(oneCharStr);
-						newSequences.put(oneCharStr, count + 1);
-					}
-				}
-				
-				// length > 1的序列挖掘
-				else{
-					for(String prefix: freSubsequences.keySet()){
-						
-						// 序列的每次扫描长度 = 当前最长序列 长度+ 1
-						if(prefix.length() < currentSeqLen - 1){
-							continue;
-						}
-						
-						// 这个POS的判断：
-						// 1. 顺序（非连续）包含该prefix中的所有字符即可
-						// 2. POS的值为prefix中最后一个字符在segment中的后一个位置
-						int pos = -1;
-						int lastPos = -1;
-						for(char c: prefix.toCharArray()){
-							lastPos = pos;
-							pos = segment.indexOf(c);
-							if(pos < 0 || pos <= lastPos){
-								break;
-							}
-						}
-						if(pos < 0 || pos <= lastPos){
-							continue;
-						}
-						
-						// 以prefix为关联序列开始，在segment中继续延伸关联序列
-						for(int i = pos + 1; i < segment.length() && (i - pos - 1) <= maxGap; i++){
-							String oneCharStr = segment.substring(i, i + 1);
-							if(prefix.contains(oneCharStr)){
-								continue;
-							}
-
-							String newSeq = prefix + oneCharStr;
-							Integer count = newSequences.get(newSeq) == null ? 0 : newSequences.get(newSeq);
-							newSequences.put(newSeq, count + 1);
-						}
-					}
-				}
+				countSegment(segment, currentSeqLen, prefixes, newSequences);
 			}
 			
-			// 去除support < minSupport的序列
-			Iterator<Map.Entry<String, Integer>> it = newSequences.entrySet().iterator();  
-	        while(it.hasNext()){  
-	            if(it.next().getValue() < minSupport){
-					it.remove();
-				} 
-	        }  
-	        
-	        
-	        // 添加层次为currentSeqLen的subsequenceTier元素
-	        Map<String, Integer> tierMap = new HashMap<String, Integer>();
-	        freSubsequencesTier.put(currentSeqLen, tierMap);
-	        
-	        // 将newSequences添加到subSequences、根据subSequence长度划分的Map中
-	        for(Map.Entry<String, Integer> entry: newSequences.entrySet()){
-	        	
-	        	freSubsequences.put(entry.getKey(), entry.getValue());
-	        	
-	        	// 对得到的frequent subsequence根据subsequence的长度进行分组
-	        	freSubsequencesTier.get(currentSeqLen).put(entry.getKey(), entry.getValue());
-	        }
-	        
-	        // 更新最长序列的长度记录
-        	maxSeqLength = currentSeqLen;
-        	
+			// 生成第currentSeqLen层，没有新的频繁子序列则结束
+			if(!addTier(currentSeqLen, newSequences)){
+				break;
+			}
 	        newSequences.clear();
 		}
 	}
+	
+	/**
+	 * 获取第currentSeqLen轮扫描需要扩展的前缀：第currentSeqLen - 1层的频繁子序列
+	 */
+	protected Collection<String> getPrefixes(int currentSeqLen){
+		
+		if(1 == currentSeqLen){
+			return Collections.emptySet();
+		}
+		return freSubsequencesTier.get(currentSeqLen - 1).keySet();
+	}
+	
+	/**
+	 * 在一个segment中统计长度为currentSeqLen的子序列的出现次数，累加至counts中
+	 * @param segment
+	 * @param currentSeqLen
+	 * @param prefixes		长度为currentSeqLen - 1的频繁子序列
+	 * @param counts
+	 */
+	protected void countSegment(String segment, int currentSeqLen, Collection<String> prefixes, Map<String, Integer> counts){
+		
+		// 初始第一轮扫描，获取最基础（每个字符）的出现次数
+		if(1 == currentSeqLen){
+			for(int i = 0; i < segment.length(); i++){
+				String oneCharStr = segment.substring(i, i + 1);
+				Integer count = counts.get(oneCharStr) == null ? 0 : counts.get(oneCharStr);
+				counts.put(oneCharStr, count + 1);
+			}
+			return;
+		}
+		
+		// length > 1的序列挖掘
+		for(String prefix: prefixes){
+			
+			// 这个POS的判断：
+			// 1. 顺序（非连续）包含该prefix中的所有字符即可
+			// 2. POS的值为prefix中最后一个字符在segment中的后一个位置
+			int pos = -1;
+			int lastPos = -1;
+			for(int k = 0; k < prefix.length(); k++){
+				lastPos = pos;
+				pos = segment.indexOf(prefix.charAt(k));
+				if(pos < 0 || pos <= lastPos){
+					break;
+				}
+			}
+			if(pos < 0 || pos <= lastPos){
+				continue;
+			}
+			
+			// 以prefix为关联序列开始，在segment中继续延伸关联序列
+			for(int i = pos + 1; i < segment.length() && (i - pos - 1) <= maxGap; i++){
+				String oneCharStr = segment.substring(i, i + 1);
+				if(prefix.contains(oneCharStr)){
+					continue;
+				}
+
+				String newSeq = prefix + oneCharStr;
+				Integer count = counts.get(newSeq) == null ? 0 : counts.get(newSeq);
+				counts.put(newSeq, count + 1);
+			}
+		}
+	}
+	
+	/**
+	 * 去除support < minSupport的序列，将剩余序列作为第currentSeqLen层加入频繁子序列集合
+	 * @param currentSeqLen
+	 * @param newSequences
+	 * @return 第currentSeqLen层是否有频繁子序列
+	 */
+	protected boolean addTier(int currentSeqLen, Map<String, Integer> newSequences){
+		
+		// 去除support < minSupport的序列
+		Iterator<Map.Entry<String, Integer>> it = newSequences.entrySet().iterator();  
+        while(it.hasNext()){  
+            if(it.next().getValue() < minSupport){
+				it.remove();
+			} 
+        }  
+        
+        // 添加层次为currentSeqLen的subsequenceTier元素
+        Map<String, Integer> tierMap = new HashMap<String, Integer>(newSequences);
+        freSubsequencesTier.put(currentSeqLen, tierMap);
+        
+        // 将newSequences添加到subSequences
+        freSubsequences.putAll(newSequences);
+        
+        // 更新最长序列的长度记录
+    	maxSeqLength = currentSeqLen;
+    	
+    	return !newSequences.isEmpty();
+	}
 
 }
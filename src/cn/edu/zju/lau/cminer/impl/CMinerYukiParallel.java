@@ -0,0 +1,128 @@
+package cn.edu.zju.lau.cminer.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * CMinerYuki的并行版本：每一轮扫描时，将inputSegments划分为threadNum份，
+ * 每个线程在自己的局部Map中统计子序列的出现次数，本轮结束时再合并，
+ * 然后与CMinerYuki相同，生成第currentSeqLen层的频繁子序列。
+ *
+ * @author yuki
+ * @date 2013-12-05
+ */
+public class CMinerYukiParallel extends CMinerYuki {
+
+	private int threadNum;		// 统计子序列出现次数的线程数
+
+	public CMinerYukiParallel(){
+		super();
+		this.threadNum = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * @param threadNum	统计的线程数，小于1时按1计算
+	 */
+	public CMinerYukiParallel(int threadNum){
+		super();
+		this.threadNum = Math.max(threadNum, 1);
+	}
+
+	public CMinerYukiParallel(String inputSequence, int windowSize, int maxGap, int minSupport, float minConfidence, int threadNum){
+		super(inputSequence, windowSize, maxGap, minSupport, minConfidence);
+		this.threadNum = Math.max(threadNum, 1);
+	}
+
+	@Override
+	public void candidateFreSubsequences() {
+
+		// 检查文件访问序列的分段是否为空
+		if(inputSegments == null || inputSegments.size() == 0){
+			System.out.println("Input Sequeueces Segments is null! Exit...");
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadNum);
+		try{
+			int currentSeqLen = 0;
+			while(++currentSeqLen <= windowSize){
+
+				// 并行统计，合并各线程的计数
+				Map<String, Integer> newSequences = countInParallel(executor, currentSeqLen, getPrefixes(currentSeqLen));
+
+				// 生成第currentSeqLen层，没有新的频繁子序列则结束
+				if(!addTier(currentSeqLen, newSequences)){
+					break;
+				}
+			}
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			System.err.println("Interrupted while counting subsequences! Exit...");
+		}
+		catch(ExecutionException e){
+			throw new IllegalStateException("Failed to count subsequences", e.getCause());
+		}
+		finally{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * 将inputSegments划分为threadNum份，并行统计长度为currentSeqLen的子序列的出现次数
+	 */
+	private Map<String, Integer> countInParallel(ExecutorService executor, final int currentSeqLen, final Collection<String> prefixes)
+			throws InterruptedException, ExecutionException{
+
+		int partitionSize = (inputSegments.size() + threadNum - 1) / threadNum;
+		List<Future<Map<String, Integer>>> futures = new ArrayList<Future<Map<String, Integer>>>();
+
+		for(int start = 0; start < inputSegments.size(); start += partitionSize){
+			final List<String> partition = inputSegments.subList(start, Math.min(start + partitionSize, inputSegments.size()));
+
+			futures.add(executor.submit(new Callable<Map<String, Integer>>() {
+				@Override
+				public Map<String, Integer> call() {
+					Map<String, Integer> counts = new HashMap<String, Integer>();
+					for(String segment: partition){
+						countSegment(segment, currentSeqLen, prefixes, counts);
+					}
+					return counts;
+				}
+			}));
+		}
+
+		// 合并各线程的局部计数
+		Map<String, Integer> newSequences = futures.get(0).get();
+		for(int i = 1; i < futures.size(); i++){
+			for(Map.Entry<String, Integer> entry: futures.get(i).get().entrySet()){
+				Integer count = newSequences.get(entry.getKey());
+				newSequences.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+			}
+		}
+
+		return newSequences;
+	}
+
+
+	/* getters and setters */
+
+	public int getThreadNum() {
+		return threadNum;
+	}
+
+	/**
+	 * @param threadNum	小于1时按1计算
+	 */
+	public void setThreadNum(int threadNum) {
+		this.threadNum = Math.max(threadNum, 1);
+	}
+}
@@ -4,14 +4,21 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 
+import cn.edu.zju.lau.cminer.model.hdfs.FileAccessLog;
 import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
 import cn.edu.zju.lau.cminer.model.hdfs.HDFSSubseqSuffix;
+import cn.edu.zju.lau.cminer.model.hdfs.SessionSequences;
+import cn.edu.zju.lau.cminer.segment.FixedCountSegmentation;
+import cn.edu.zju.lau.cminer.segment.SegmentationStrategy;
+import cn.edu.zju.lau.utils.IntList;
+import cn.edu.zju.lau.utils.LongList;
 
 /**
  * 挖掘HDFS Audit Log中文件访问的关联关系
@@ -29,6 +36,9 @@ public class CMinerHDFS{
 	protected float minConfidence;		// 关联规则的最小confidence，confidence(a->b) = support(b)/support(a)
 	
 	protected List<String> inputSequence;					// 文件访问序列
+	protected LongList inputTimestamps;						// 文件访问序列中每个访问的时间戳，时间分段策略使用
+	protected IntList inputSessionStarts;					// 按会话拆分时，每个会话在inputSequence中的起始位置，分段不跨越会话
+	protected SegmentationStrategy segmentation;			// 文件访问序列的分段策略
 	protected List<List<String>> inputSegments;		// 文件访问序列的分段，每段长度为windowSize
 	protected Map<String, Integer> freSubsequences;			// 候选频繁子序列，对应其出现的次数
 	protected Map<String, Integer> closedFreSubsequences;	// Closed频繁子序列
@@ -51,6 +61,7 @@ public class CMinerHDFS{
 		minConfidence = 1.0F;
 		
 		// 创建对象
+		segmentation = new FixedCountSegmentation();
 		inputSequence = new ArrayList<String>();
 		inputSegments = new ArrayList<List<String>>();
 		freSubsequences = new HashMap<String, Integer>();
@@ -62,9 +73,20 @@ public class CMinerHDFS{
 		maxSeqLength = 0;
 	}
 	
+	public CMinerHDFS(SegmentationStrategy segmentation){
+		this();
+		this.segmentation = segmentation;
+	}
+	
 	public CMinerHDFS(List<String> inputSequence, int windowSize, int maxGap, int minSupport, float minConfidence){
+		this(inputSequence, windowSize, maxGap, minSupport, minConfidence, new FixedCountSegmentation());
+	}
+	
+	public CMinerHDFS(List<String> inputSequence, int windowSize, int maxGap, int minSupport, float minConfidence,
+			SegmentationStrategy segmentation){
 		
 		this.inputSequence = inputSequence;
+		this.segmentation = segmentation;
 		
 		// 设置默认参数
 		this.windowSize = windowSize;
@@ -84,7 +106,10 @@ public class CMinerHDFS{
 	}
 
 	/**
-	 * 采用non-overlapped cutting方法将访问序列划分为多个固定长度的短序列片段。
+	 * 按分段策略将访问序列划分为多个短序列片段，每个片段的长度不超过windowSize。
+	 * 默认采用non-overlapped cutting方法，划分为固定长度的片段；
+	 * 也可以按时间窗口、空闲间隔分段，此时需要通过setInputLogs或setInputTimestamps输入每个访问的时间。
+	 * 通过setInputSessions输入多个会话时，每个会话单独分段。
 	 * 
 	 * 生成:	List<List<FileAccessLog>> inputSegments
 	 */
@@ -95,23 +120,59 @@ public class CMinerHDFS{
 			System.err.println("Input Sequeuece is null! Exit...");
 			return;
 		}
+		if(!checkTimestamps(inputSequence.size())){
+			return;
+		}
 		
 		// 对输入日志序列进行分段
-		int winNum = -1;
+		List<String> window = null;
+		long segmentStartTime = 0;
+		long previousTime = 0;
+		int nextSession = 1;
 		for(int i = 0; i < inputSequence.size(); i++){
+			long currentTime = getTimestamp(i);
 			
-			// 开始一个新窗口
-			if(i / windowSize > winNum){
-				List<String> newWindow = new ArrayList<String>();
-				newWindow.add(inputSequence.get(i));
-				inputSegments.add(newWindow);
-				winNum = i / windowSize;
+			// 到达下一个会话的起始位置
+			boolean sessionStart = false;
+			while(inputSessionStarts != null && nextSession < inputSessionStarts.size() && inputSessionStarts.get(nextSession) <= i){
+				sessionStart = true;
+				nextSession++;
 			}
-			// 在旧窗口中追加访问项
-			else{
-				inputSegments.get(winNum).add(inputSequence.get(i));
+			
+			// 开始一个新窗口
+			if(window == null || sessionStart || segmentation.isSegmentBoundary(window.size(), windowSize, segmentStartTime, previousTime, currentTime)){
+				window = new ArrayList<String>();
+				inputSegments.add(window);
+				segmentStartTime = currentTime;
 			}
+			
+			// 在窗口中追加访问项
+			window.add(inputSequence.get(i));
+			previousTime = currentTime;
+		}
+	}
+	
+	/**
+	 * 分段策略需要时间戳时，检查是否输入了每个访问的时间戳
+	 * @param inputLength
+	 * @return
+	 */
+	protected boolean checkTimestamps(int inputLength){
+		
+		if(segmentation.requiresTimestamps() && (inputTimestamps == null || inputTimestamps.size() < inputLength)){
+			System.err.println("Input Timestamps is null or shorter than Input Sequence! Exit...");
+			return false;
 		}
+		return true;
+	}
+	
+	/**
+	 * 获取第i个访问的时间戳，分段策略不需要时间戳时返回0
+	 * @param i
+	 * @return
+	 */
+	protected long getTimestamp(int i){
+		return segmentation.requiresTimestamps() ? inputTimestamps.get(i) : 0;
 	}
 	
 	/**
@@ -183,33 +244,51 @@ public class CMinerHDFS{
 	 * DFS 产生候选频繁子序列集合（Frequent Subsequences），满足：
 	 * 		1）相距不大于maxGap的访问子序列（没必要连续）
 	 * 		2）出现次数满足frequent要求，即不小于minSupport
+	 * 先处理以currentSubseq为起点的子树，再依次处理Ds中剩余的每一个长度为1的频繁序列。
+	 * 使用显式的栈代替递归，栈的深度不超过频繁子序列的最大长度（windowSize），与频繁文件的个数无关。
 	 * 
 	 * 生成:	Map<String, Integer> freSubsequences
 	 * 		Map<Integer, Map<String, Integer>> freSubsequencesTier;
 	 */
 	public void candidateFreSubsequences(String currentSubseq, int occurTimes){
 		
-		// 添加当前序列至 候选频繁子序列集合中
-		freSubsequences.put(currentSubseq, occurTimes);
+		HDFSSubseqSuffix currentRoot = Ds.get(currentSubseq);
 		
-		// 添加当前序列至 候选频发子序列对应的长度层次中
-		int seqLen = currentSubseq.split("\\|").length;
-		if(seqLen > maxSeqLength){
-			maxSeqLength = seqLen;
-		}
-		if(freSubsequencesTier.get(seqLen) == null){
-			freSubsequencesTier.put(seqLen, new HashMap<String, Integer>());
+		while(currentRoot != null){
+			candidateFreSubsequences(currentRoot);
+			
+			// 处理完毕，从Ds中移除，继续处理下一个
+			Ds.remove(currentRoot.getSubsequence());
+			currentRoot = getSeqFromDs();
 		}
-		freSubsequencesTier.get(seqLen).put(currentSubseq, occurTimes);
+	}
+	
+	/**
+	 * 以root为起点，DFS扩展频繁子序列。
+	 * 栈中的每一层记录：子序列、子序列的后缀集合、尚未检测的扩展文件。
+	 */
+	private void candidateFreSubsequences(HDFSSubseqSuffix root){
 		
-		// 获取当前序列的后缀集合
-		Set<String> currentDs = Ds.get(currentSubseq).getSuffixes();
+		List<HDFSSubseqSuffix> seqStack = new ArrayList<HDFSSubseqSuffix>();
+		List<Iterator<String>> fileStack = new ArrayList<Iterator<String>>();
 		
-		// 从当前的后缀集合中计算出只包含一个访问序列的频繁子序列集合
-		Set<String> oneFileFreSubseqs = generateOneCharFreSubseq(currentDs);
+		addFreSubsequence(root.getSubsequence(), root.getOccurTimes(), 1);
+		seqStack.add(root);
+		fileStack.add(generateOneCharFreSubseq(root.getSuffixes()).iterator());
 		
-		// 一次扫描每一个后缀集合中 只包含1个文件的频繁子序列
-		for(String file: oneFileFreSubseqs){
+		while(!seqStack.isEmpty()){
+			int top = seqStack.size() - 1;
+			String currentSubseq = seqStack.get(top).getSubsequence();
+			Set<String> currentDs = seqStack.get(top).getSuffixes();
+			Iterator<String> files = fileStack.get(top);
+			
+			// 当前序列的所有扩展都已检测完毕，出栈
+			if(!files.hasNext()){
+				seqStack.remove(top);
+				fileStack.remove(top);
+				continue;
+			}
+			String file = files.next();
 			
 			// 类似AA这种不检测
 			if(currentSubseq.equalsIgnoreCase(file)){
@@ -225,37 +304,49 @@ public class CMinerHDFS{
 				if(suffix.contains(file)){
 					String[] suffixFiles = suffix.split("\\|");
 					
+					// 新suffix的起始位置：第i个文件之后
+					int suffixStart = 0;
 					for(int i = 0; i < suffixFiles.length && i <= maxGap; i++){
+						suffixStart += suffixFiles[i].length() + 1;
+						if(!suffixFiles[i].equalsIgnoreCase(file)){
+							continue;
+						}
+						
+						// file是后缀的最后一个文件，新序列没有后续的suffix
 						if(i == suffixFiles.length - 1){
 							endCount++;
 						}
-						else if(suffixFiles[i].equalsIgnoreCase(file)){
-							newDs.add(suffix.substring(suffix.indexOf(suffixFiles[i + 1])));
-							break;
+						else{
+							newDs.add(suffix.substring(suffixStart));
 						}
+						break;
 					}
 				}
 			}
 			
-			// 对于达到minSupport的新序列，递归调用
+			// 对于达到minSupport的新序列，入栈继续扩展
 			if(newDs.size() + endCount >= minSupport){
-				Ds.put(newSeq, new HDFSSubseqSuffix(newSeq, newDs.size() + endCount, newDs));
-				
-				// 处理完毕，从Ds中移除
-				Ds.remove(currentSubseq);
-				
-				candidateFreSubsequences(newSeq, newDs.size() + endCount);
+				addFreSubsequence(newSeq, newDs.size() + endCount, top + 2);
+				seqStack.add(new HDFSSubseqSuffix(newSeq, newDs.size() + endCount, newDs));
+				fileStack.add(generateOneCharFreSubseq(newDs).iterator());
 			}
 		}
+	}
+	
+	/**
+	 * 添加序列至 候选频繁子序列集合、以及对应的长度层次中
+	 */
+	private void addFreSubsequence(String subseq, int occurTimes, int seqLen){
 		
-		// 处理完毕，从Ds中移除
-		Ds.remove(currentSubseq);
+		freSubsequences.put(subseq, occurTimes);
 		
-		// 继续处理下一个
-		HDFSSubseqSuffix nextSeq = getSeqFromDs();
-		if(nextSeq != null){
-			candidateFreSubsequences(nextSeq.getSubsequence(), nextSeq.getOccurTimes());
+		if(seqLen > maxSeqLength){
+			maxSeqLength = seqLen;
+		}
+		if(freSubsequencesTier.get(seqLen) == null){
+			freSubsequencesTier.put(seqLen, new HashMap<String, Integer>());
 		}
+		freSubsequencesTier.get(seqLen).put(subseq, occurTimes);
 	}
 
 	/**
@@ -263,6 +354,9 @@ public class CMinerHDFS{
 	 * 		1. 是候选频繁子序列（Frequent Subsequences）的子集
 	 * 		2. 满足Closed条件：与所有super-subsequences的support不同
 	 * 
+	 * 第i层序列的直接父序列，只可能是第i+1层中去掉第一个或最后一个文件后与其相同的序列，
+	 * 因此先以这两个子序列为第i+1层建立索引，每个序列只需查找一次。
+	 * 
 	 * 生成:	Map<String, Integer> closedFreSubsequences
 	 */
 	public void closedFreSubsequences(){
@@ -278,54 +372,41 @@ public class CMinerHDFS{
 			
 			// 最长序列都是closed的
 			if(i == this.maxSeqLength){
-				for(Map.Entry<String, Integer> entry: this.freSubsequencesTier.get(i).entrySet()){
-					closedFreSubsequences.put(entry.getKey(), entry.getValue());
-				}
+				closedFreSubsequences.putAll(this.freSubsequencesTier.get(i));
+				continue;
+			}
+			
+			// 为父层建立索引：去掉第一个/最后一个文件后的子序列 -> 父序列的最大support
+			Map<String, Integer> maxSuperSupport = new HashMap<String, Integer>();
+			for(Map.Entry<String, Integer> superEntry: this.freSubsequencesTier.get(i + 1).entrySet()){
+				String superSeq = superEntry.getKey();
+				updateMaxSupport(maxSuperSupport, superSeq.substring(superSeq.indexOf("|") + 1), superEntry.getValue());
+				updateMaxSupport(maxSuperSupport, superSeq.substring(0, superSeq.lastIndexOf("|")), superEntry.getValue());
 			}
 			
 			// closed条件：
 			// 不是任何frequent subsequence的子序列
 			// 或
-			// 是子序列 && support 与 大于父序列的support
-			else{
-				// 依次检查当前层每一个序列
-				for(Map.Entry<String, Integer> entry: this.freSubsequencesTier.get(i).entrySet()){
-					boolean isSubSubseq = false;
-					
-					// 当前序列 与 其父层（直接父序列）中每一个序列的关系：是否为子序列、support大小关系
-					for(Map.Entry<String, Integer> superEntry: this.freSubsequencesTier.get(i + 1).entrySet()){
-						
-						// 是子序列
-						if(superEntry.getKey().endsWith("|" + entry.getKey())
-							|| superEntry.getKey().startsWith(entry.getKey() + "|")
-							|| superEntry.getKey().contains("|" + entry.getKey() + "|")){
-							
-							isSubSubseq = true;
-							
-							// 大于所有父序列的support
-							if(entry.getValue() > superEntry.getValue()){
-								closedFreSubsequences.put(entry.getKey(), entry.getValue());
-								
-								// 虽然这一次大于，但是有可能是有小于等于的父序列的，所以需要检测完
-								continue;
-							}
-							else{
-								closedFreSubsequences.remove(entry.getKey());
-								
-								// 一票否定，无需继续检测
-								break;
-							}
-						}
-					}
-					
-					// 不是任何frequent subsequence的子序列
-					if(!isSubSubseq){
-						closedFreSubsequences.put(entry.getKey(), entry.getValue());
-					}
+			// 是子序列 && support 大于所有父序列的support
+			for(Map.Entry<String, Integer> entry: this.freSubsequencesTier.get(i).entrySet()){
+				Integer superSupport = maxSuperSupport.get(entry.getKey());
+				if(superSupport == null || entry.getValue() > superSupport){
+					closedFreSubsequences.put(entry.getKey(), entry.getValue());
 				}
 			}
 		}
 	}
+	
+	/**
+	 * 更新子序列对应的父序列最大support
+	 */
+	protected static <K> void updateMaxSupport(Map<K, Integer> maxSupport, K subseq, int support){
+		
+		Integer current = maxSupport.get(subseq);
+		if(current == null || current < support){
+			maxSupport.put(subseq, support);
+		}
+	}
 
 
 	/**
@@ -334,6 +415,7 @@ public class CMinerHDFS{
 	 * 		2. 从Closed Frequent Subsequences中生成
 	 * 		3. 每个Rule的confidence不小于minConfidence
 	 * 		4. 多个Closed Frequent Subsequences产生相同的rule，取最大support作为rule的support
+	 * 		5. 同一个history的多个prediction都保留在rule中，按排名排序
 	 * 
 	 * 生成:	Map<String, HDFSRule> rules
 	 */
@@ -372,7 +454,11 @@ public class CMinerHDFS{
 						historyList.add(accessFiles[i]);
 					}
 					String historyStr = StringUtils.join(historyList.iterator(), "|");
-					float historyConf = freSubsequences.get(historyStr) * 1.0F;
+					Integer historySupport = freSubsequences.get(historyStr);
+					if(historySupport == null){
+						continue;
+					}
+					float historyConf = historySupport * 1.0F;
 				
 					// 生成prediction子序列（只有一个文件）
 					for(int predictionStart = historyEnd; predictionStart < accessFiles.length; predictionStart++){
@@ -392,9 +478,7 @@ public class CMinerHDFS{
 							rules.put(ruleStr, new HDFSRule(historyList, prediction, closedSeqConf, newRuleConf));
 						}
 						else{
-							if(rules.get(ruleStr).getSupport() < closedSeqConf){
-								rules.get(ruleStr).setSupport(closedSeqConf);
-							}
+							rules.get(ruleStr).addPrediction(prediction, closedSeqConf, newRuleConf);
 						}
 					}
 				}
@@ -439,6 +523,8 @@ public class CMinerHDFS{
 	 */
 	public void clear(){
 		inputSequence.clear();
+		inputTimestamps = null;
+		inputSessionStarts = null;
 		inputSegments.clear();
 		freSubsequences.clear();
 		closedFreSubsequences.clear();
@@ -457,9 +543,6 @@ public class CMinerHDFS{
 	 */
 	public Map<String, HDFSRule> startMining() {
 		
-		// 设置输入
-		setInputSequence(inputSequence);
-		
 		// 对初始访问序列分段
 		cutAccessSequence();
 		
@@ -522,6 +605,71 @@ public class CMinerHDFS{
 		this.inputSequence.addAll(inputSequence);
 	}
 
+	public LongList getInputTimestamps() {
+		return inputTimestamps;
+	}
+
+	/**
+	 * 输入文件访问序列中每个访问的时间戳，与inputSequence一一对应
+	 * @param inputTimestamps
+	 */
+	public void setInputTimestamps(LongList inputTimestamps) {
+		this.inputTimestamps = inputTimestamps;
+	}
+
+	/**
+	 * 输入文件访问日志，有效日志的源文件地址追加至inputSequence，访问时间追加至inputTimestamps
+	 * @param logs
+	 */
+	public void setInputLogs(List<FileAccessLog> logs) {
+		
+		if(inputTimestamps == null){
+			inputTimestamps = new LongList(logs.size());
+		}
+		for(FileAccessLog log: logs){
+			if(log.isValid()){
+				inputSequence.add(log.getSrc());
+				inputTimestamps.add(log.getTimeMillis());
+			}
+		}
+	}
+
+	public IntList getInputSessionStarts() {
+		return inputSessionStarts;
+	}
+
+	/**
+	 * 输入按会话拆分后的文件访问序列，依次追加至inputSequence、inputTimestamps，并记录每个会话的起始位置。
+	 * 注意CMinerHDFSInterned.setInputSessions替换之前的输入，而不是追加。
+	 * @param sessions
+	 */
+	public void setInputSessions(SessionSequences sessions) {
+		
+		int offset = inputSequence.size();
+		if(inputTimestamps == null){
+			inputTimestamps = new LongList(sessions.size());
+		}
+		if(inputSessionStarts == null){
+			inputSessionStarts = new IntList(sessions.getSessionNum());
+		}
+		
+		for(int i = 0; i < sessions.size(); i++){
+			inputSequence.add(sessions.getDictionary().getName(sessions.getFileIds().get(i)));
+		}
+		inputTimestamps.addAll(sessions.getTimestamps());
+		for(int session = 0; session < sessions.getSessionNum(); session++){
+			inputSessionStarts.add(offset + sessions.sessionStart(session));
+		}
+	}
+
+	public SegmentationStrategy getSegmentation() {
+		return segmentation;
+	}
+
+	public void setSegmentation(SegmentationStrategy segmentation) {
+		this.segmentation = segmentation;
+	}
+
 	
 	/* 中间结果的getters */
 	
@@ -560,7 +708,8 @@ public class CMinerHDFS{
 		sb.append("Window size:\t").append(this.windowSize).append("\n")
 		  .append("Max Gap:\t").append(this.maxGap).append("\n")
 		  .append("Min Support:\t").append(this.minSupport).append("\n")
-		  .append("Min Confidence:\t").append(this.minConfidence).append("\n");
+		  .append("Min Confidence:\t").append(this.minConfidence).append("\n")
+		  .append("Segmentation:\t").append(this.segmentation).append("\n");
 		
 		sb.append("Input Sequence Length:\t\t").append(this.inputSequence.size()).append("\n")
 		  .append("Input Segments Length:\t\t").append(this.inputSegments.size()).append("\n")
@@ -0,0 +1,568 @@
+package cn.edu.zju.lau.cminer.impl.hdfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+import cn.edu.zju.lau.cminer.model.hdfs.IntSequence;
+import cn.edu.zju.lau.cminer.model.hdfs.ProjectedDatabase;
+import cn.edu.zju.lau.cminer.model.hdfs.SegmentedSequence;
+import cn.edu.zju.lau.cminer.model.hdfs.SessionSequences;
+import cn.edu.zju.lau.cminer.segment.SegmentationStrategy;
+import cn.edu.zju.lau.utils.FileDictionary;
+import cn.edu.zju.lau.utils.IntList;
+
+/**
+ * 挖掘HDFS Audit Log中文件访问的关联关系，与CMinerHDFS算法相同，但：
+ * 		1. 每个不同的文件路径只保存一次，通过FileDictionary映射为int ID；
+ * 		2. 分段、子序列、规则的挖掘过程都只使用int数组，不再拼接、拆分"a|b|c"字符串；
+ * 		3. 后缀采用伪投影（ProjectedDatabase），每个后缀只是指向分段序列的 (segment, offset)，扩展前缀时不复制后缀；
+ * 		4. 只有在发布关联规则（generateRules）时，才将文件ID还原为文件路径。
+ *
+ * 与CMinerHDFS的区别：每个segment中的后缀单独计数，不会因为两个segment的后缀内容相同而被合并。
+ *
+ * @author yuki
+ * @date 2013-12-02
+ */
+public class CMinerHDFSInterned extends CMinerHDFS {
+
+	protected FileDictionary dictionary;						// 文件路径 <-> 文件ID
+	protected IntList inputFileIds;								// 已转换为文件ID的文件访问序列，不为空时代替inputSequence
+	protected SegmentedSequence idSegments;						// 文件ID序列的分段，每段长度为windowSize
+	protected Map<IntSequence, ProjectedDatabase> idDs;			// 长度为1的频繁序列及其在每个segments中的最长suffix
+	protected Map<IntSequence, Integer> idFreSubsequences;		// 候选频繁子序列，对应其出现的次数
+	protected Map<IntSequence, Integer> idClosedFreSubsequences;	// Closed频繁子序列
+	protected Map<Integer, Map<IntSequence, Integer>> idFreSubsequencesTier;	// 按长度分层的候选频繁子序列
+
+	protected int parallelism;			// 挖掘频繁子序列时使用的线程数，1为串行
+	protected boolean closedDuringMining;	// 是否在DFS挖掘的同时判断closed，不再生成分层结果
+
+	private static final int TASKS_PER_THREAD = 16;	// 并行挖掘时，平均每个线程分到的任务数
+
+	public CMinerHDFSInterned(){
+		super();
+		init();
+	}
+
+	public CMinerHDFSInterned(SegmentationStrategy segmentation){
+		super(segmentation);
+		init();
+	}
+
+	public CMinerHDFSInterned(List<String> inputSequence, int windowSize, int maxGap, int minSupport, float minConfidence){
+		super(inputSequence, windowSize, maxGap, minSupport, minConfidence);
+		init();
+	}
+
+	public CMinerHDFSInterned(List<String> inputSequence, int windowSize, int maxGap, int minSupport, float minConfidence,
+			SegmentationStrategy segmentation){
+		super(inputSequence, windowSize, maxGap, minSupport, minConfidence, segmentation);
+		init();
+	}
+
+	private void init(){
+		parallelism = 1;
+		closedDuringMining = false;
+		dictionary = new FileDictionary();
+		idSegments = new SegmentedSequence();
+		idDs = new HashMap<IntSequence, ProjectedDatabase>();
+		idFreSubsequences = new HashMap<IntSequence, Integer>();
+		idClosedFreSubsequences = new HashMap<IntSequence, Integer>();
+		idFreSubsequencesTier = new HashMap<Integer, Map<IntSequence, Integer>>();
+	}
+
+	/**
+	 * 将访问序列中的文件路径转换为文件ID，并按分段策略划分为多个片段（默认为non-overlapped cutting）。
+	 * 通过setInputFileIds输入文件ID序列时，直接对文件ID序列分段。
+	 * 通过setInputSessions输入多个会话时，每个会话单独分段；parallelism > 1 时，各组会话并行分段后按顺序合并。
+	 *
+	 * 生成:	SegmentedSequence idSegments
+	 */
+	@Override
+	public void cutAccessSequence(){
+
+		final boolean interned = inputFileIds != null && inputFileIds.size() > 0;
+		int inputLength = interned ? inputFileIds.size() : (inputSequence == null ? 0 : inputSequence.size());
+
+		// 检查输入日志序列
+		if(inputLength == 0){
+			System.err.println("Input Sequeuece is null! Exit...");
+			return;
+		}
+		if(!checkTimestamps(inputLength)){
+			return;
+		}
+
+		// 文件路径需要依次转换为ID，只能串行分段
+		if(!interned || parallelism <= 1 || inputSessionStarts == null || inputSessionStarts.size() <= 1){
+			cutRange(idSegments, 0, inputLength, 1, interned);
+			return;
+		}
+
+		// 按访问数将会话均分为parallelism组，每组在自己的SegmentedSequence中分段
+		int groupSize = (inputLength + parallelism - 1) / parallelism;
+		List<int[]> groups = new ArrayList<int[]>();
+		int groupStart = 0;
+		for(int session = 1; session <= inputSessionStarts.size(); session++){
+			int sessionStart = session < inputSessionStarts.size() ? inputSessionStarts.get(session) : inputLength;
+			if(sessionStart - inputSessionStarts.get(groupStart) >= groupSize || session == inputSessionStarts.size()){
+				groups.add(new int[]{inputSessionStarts.get(groupStart), sessionStart, groupStart + 1});
+				groupStart = session;
+			}
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, groups.size()));
+		try{
+			List<Future<SegmentedSequence>> futures = new ArrayList<Future<SegmentedSequence>>();
+			for(final int[] group: groups){
+				futures.add(executor.submit(new Callable<SegmentedSequence>() {
+					@Override
+					public SegmentedSequence call() {
+						SegmentedSequence segments = new SegmentedSequence(group[1] - group[0]);
+						cutRange(segments, group[0], group[1], group[2], interned);
+						return segments;
+					}
+				}));
+			}
+
+			// 按会话顺序合并
+			for(Future<SegmentedSequence> future: futures){
+				idSegments.append(future.get());
+			}
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			System.err.println("Interrupted while cutting sessions! Exit...");
+		}
+		catch(ExecutionException e){
+			throw new IllegalStateException("Failed to cut sessions", e.getCause());
+		}
+		finally{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * 对输入序列中[from, to)之间的访问分段，from必须是一个会话的起始位置
+	 * @param segments		分段结果
+	 * @param nextSession	下一个会话在inputSessionStarts中的下标
+	 * @param interned		输入是否为文件ID序列，否则需要将文件路径转换为ID
+	 */
+	private void cutRange(SegmentedSequence segments, int from, int to, int nextSession, boolean interned){
+
+		int segmentLength = 0;
+		long segmentStartTime = 0;
+		long previousTime = 0;
+		for(int i = from; i < to; i++){
+			long currentTime = getTimestamp(i);
+
+			// 到达下一个会话的起始位置
+			boolean sessionStart = false;
+			while(inputSessionStarts != null && nextSession < inputSessionStarts.size() && inputSessionStarts.get(nextSession) <= i){
+				sessionStart = true;
+				nextSession++;
+			}
+
+			if(segmentLength == 0 || sessionStart || segmentation.isSegmentBoundary(segmentLength, windowSize, segmentStartTime, previousTime, currentTime)){
+				segments.startSegment();
+				segmentLength = 0;
+				segmentStartTime = currentTime;
+			}
+
+			segments.add(interned ? inputFileIds.get(i) : dictionary.intern(inputSequence.get(i)));
+			segmentLength++;
+			previousTime = currentTime;
+		}
+	}
+
+	/**
+	 * 获取长度为1的频繁序列，以及各个频繁子序列的后缀集合
+	 *
+	 * 生成:	Map<IntSequence, ProjectedDatabase> idDs
+	 */
+	@Override
+	public void generateFirstDs(){
+
+		int[] fileAccessTimes = new int[dictionary.size()];
+		int[] lastSegment = new int[dictionary.size()];
+		Arrays.fill(lastSegment, -1);
+		ProjectedDatabase[] roots = new ProjectedDatabase[dictionary.size()];
+
+		// 统计每个文件访问的次数，同时记录其在每个segment中第一次出现时的suffix
+		for(int i = 0; i < idSegments.getSegmentNum(); i++){
+			int start = idSegments.segmentStart(i);
+			int end = idSegments.segmentEnd(i);
+
+			for(int k = start; k < end; k++){
+				int currentFile = idSegments.get(k);
+				fileAccessTimes[currentFile]++;
+
+				// 当前文件在当前窗口中已经统计过
+				if(lastSegment[currentFile] == i){
+					continue;
+				}
+				lastSegment[currentFile] = i;
+
+				if(roots[currentFile] == null){
+					roots[currentFile] = new ProjectedDatabase();
+				}
+				roots[currentFile].addSuffix(i, k + 1 - start);
+			}
+		}
+
+		// 过滤掉出现次数小于minSupport的子序列
+		for(int file = 0; file < fileAccessTimes.length; file++){
+			if(fileAccessTimes[file] >= minSupport){
+				IntSequence subsequence = new IntSequence(file);
+				roots[file].setSubsequence(subsequence);
+				roots[file].setOccurTimes(fileAccessTimes[file]);
+				idDs.put(subsequence, roots[file]);
+			}
+		}
+	}
+
+	/**
+	 * DFS 产生候选频繁子序列集合（Frequent Subsequences），依次以idDs中每一个长度为1的频繁序列为起点。
+	 * 递归深度只与频繁子序列的长度有关，不超过windowSize。
+	 * parallelism > 1 时，不同起点的子树交给ForkJoinPool并行挖掘，每个任务使用局部结果Map，最后合并，
+	 * 结果与串行挖掘完全相同。
+	 * closedDuringMining为true时，不生成分层结果，在挖掘的同时得到Closed频繁子序列。
+	 *
+	 * 生成:	Map<IntSequence, Integer> idFreSubsequences
+	 * 		Map<Integer, Map<IntSequence, Integer>> idFreSubsequencesTier
+	 * 		Map<IntSequence, Integer> idClosedFreSubsequences（closedDuringMining）
+	 */
+	public void candidateFreSubsequences(){
+
+		// 按文件ID排序起点，保证每次挖掘的任务划分相同
+		ProjectedDatabase[] roots = idDs.values().toArray(new ProjectedDatabase[idDs.size()]);
+		Arrays.sort(roots, new Comparator<ProjectedDatabase>() {
+			@Override
+			public int compare(ProjectedDatabase o1, ProjectedDatabase o2) {
+				return o1.getSubsequence().compareTo(o2.getSubsequence());
+			}
+		});
+
+		// 串行：直接写入结果Map
+		if(parallelism <= 1 || roots.length <= 1){
+			ProjectionMiner miner = new ProjectionMiner(idSegments, dictionary.size(), maxGap, minSupport,
+					closedDuringMining, idFreSubsequences, idFreSubsequencesTier);
+			for(ProjectedDatabase root: roots){
+				miner.mine(root);
+			}
+			maxSeqLength = Math.max(maxSeqLength, miner.getMaxSeqLength());
+			if(closedDuringMining){
+				miner.resolveClosed(idClosedFreSubsequences);
+			}
+		}
+		// 并行：Fork/Join挖掘各个起点，合并局部结果
+		else{
+			int batchSize = Math.max(1, roots.length / (parallelism * TASKS_PER_THREAD));
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try{
+				ProjectionMiner result = pool.invoke(new RootMiningTask(roots, 0, roots.length, batchSize,
+						idSegments, dictionary.size(), maxGap, minSupport, closedDuringMining));
+				mergeFreSubsequences(result);
+				if(closedDuringMining){
+					result.resolveClosed(idClosedFreSubsequences);
+				}
+			}
+			finally{
+				pool.shutdown();
+			}
+		}
+
+		idDs.clear();
+	}
+
+	/**
+	 * 将ProjectionMiner的局部挖掘结果合并至 候选频繁子序列集合、对应的长度层次中
+	 */
+	private void mergeFreSubsequences(ProjectionMiner result){
+
+		idFreSubsequences.putAll(result.getFreSubsequences());
+		for(Map.Entry<Integer, Map<IntSequence, Integer>> entry: result.getFreSubsequencesTier().entrySet()){
+			if(idFreSubsequencesTier.get(entry.getKey()) == null){
+				idFreSubsequencesTier.put(entry.getKey(), new HashMap<IntSequence, Integer>());
+			}
+			idFreSubsequencesTier.get(entry.getKey()).putAll(entry.getValue());
+		}
+		maxSeqLength = Math.max(maxSeqLength, result.getMaxSeqLength());
+	}
+
+	/**
+	 * 产生Closed Frequent Subsequences，满足：
+	 * 		1. 是候选频繁子序列（Frequent Subsequences）的子集
+	 * 		2. 满足Closed条件：与所有super-subsequences的support不同
+	 * 第i+1层按 去掉第一个/最后一个文件后的子序列 建立索引，每个序列只需查找一次。
+	 * closedDuringMining模式下，Closed频繁子序列已在挖掘时得到，这里直接返回。
+	 *
+	 * 生成:	Map<IntSequence, Integer> idClosedFreSubsequences
+	 */
+	@Override
+	public void closedFreSubsequences(){
+
+		if(closedDuringMining){
+			return;
+		}
+
+		// 检查候选频繁子序列层次是否为空
+		if(idFreSubsequencesTier.size() == 0){
+			System.err.println("Candidate Frequent Sequeueces is null! Exit...");
+			return;
+		}
+
+		// 每层、依次检查每一个frequent subsequence，从中挑选出closed frequent subsequence
+		for(int i = this.maxSeqLength; i > 0; i--){
+
+			// 最长序列都是closed的
+			if(i == this.maxSeqLength){
+				idClosedFreSubsequences.putAll(idFreSubsequencesTier.get(i));
+				continue;
+			}
+
+			// 为父层建立索引：去掉第一个/最后一个文件后的子序列 -> 父序列的最大support
+			Map<IntSequence, Integer> maxSuperSupport = new HashMap<IntSequence, Integer>();
+			for(Map.Entry<IntSequence, Integer> superEntry: idFreSubsequencesTier.get(i + 1).entrySet()){
+				IntSequence superSeq = superEntry.getKey();
+				updateMaxSupport(maxSuperSupport, superSeq.subSequence(1, i + 1), superEntry.getValue());
+				updateMaxSupport(maxSuperSupport, superSeq.subSequence(0, i), superEntry.getValue());
+			}
+
+			// closed条件：不是任何frequent subsequence的子序列，或 support 大于所有父序列的support
+			for(Map.Entry<IntSequence, Integer> entry: idFreSubsequencesTier.get(i).entrySet()){
+				Integer superSupport = maxSuperSupport.get(entry.getKey());
+				if(superSupport == null || entry.getValue() > superSupport){
+					idClosedFreSubsequences.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * 生成关联规则，满足：
+	 * 		1. 规则格式：子序列（长度>=1） -> 后续子序列（长度=1）
+	 * 		2. 从Closed Frequent Subsequences中生成
+	 * 		3. 每个Rule的confidence不小于minConfidence
+	 * 		4. 多个Closed Frequent Subsequences产生相同的rule，取最大support作为rule的support
+	 * 		5. 同一个history的多个prediction都保留在rule中，按排名排序
+	 * 发布规则时才将文件ID还原为文件路径。
+	 *
+	 * 生成:	Map<String, HDFSRule> rules
+	 */
+	@Override
+	public Map<String, HDFSRule> generateRules(){
+
+		// 检查候选频繁子序列、Closed频繁子序列是否为空
+		if(idFreSubsequences.size() == 0){
+			System.err.println("Candidate Frequent Sequeueces is null! Exit...");
+			return rules;
+		}
+		if(idClosedFreSubsequences.size() == 0){
+			System.err.println("Closed Frequent Sequeueces is null! Exit...");
+			return rules;
+		}
+
+		// 按序处理每一个closed frequent subsequence，获取rules，保证串行、并行挖掘得到相同的规则
+		List<IntSequence> closedSeqs = new ArrayList<IntSequence>(idClosedFreSubsequences.keySet());
+		Collections.sort(closedSeqs);
+		for(IntSequence closedSeq: closedSeqs){
+
+			int closedSeqConf = idClosedFreSubsequences.get(closedSeq);
+
+			// 只有一个文件的序列，无法导出关系，跳过
+			if(closedSeq.length() <= 1){
+				continue;
+			}
+
+			for(int historyStart = 0; historyStart < closedSeq.length() - 1; historyStart++){
+				for(int historyEnd = historyStart + 1; historyEnd < closedSeq.length(); historyEnd++){
+
+					IntSequence history = closedSeq.subSequence(historyStart, historyEnd);
+					Integer historySupport = idFreSubsequences.get(history);
+					if(historySupport == null){
+						continue;
+					}
+					float historyConf = historySupport * 1.0F;
+					String historyStr = null;
+
+					// 生成prediction子序列（只有一个文件）
+					for(int predictionStart = historyEnd; predictionStart < closedSeq.length(); predictionStart++){
+
+						int prediction = closedSeq.get(predictionStart);
+						float newRuleConf = idFreSubsequences.get(new IntSequence(prediction)) / historyConf;
+
+						// 当前规则confidence不够，跳过
+						if(newRuleConf < minConfidence){
+							continue;
+						}
+
+						// 关联规则生成成功，还原文件路径后放入规则集合中
+						if(historyStr == null){
+							historyStr = history.toPathString(dictionary);
+						}
+						HDFSRule rule = rules.get(historyStr);
+						if(rule == null){
+							rules.put(historyStr, new HDFSRule(history.toPathList(dictionary), dictionary.getName(prediction), closedSeqConf, newRuleConf));
+						}
+						else{
+							rule.addPrediction(dictionary.getName(prediction), closedSeqConf, newRuleConf);
+						}
+					}
+				}
+			}
+		}
+
+		return rules;
+	}
+
+	/**
+	 * 清除List/MAP对象占用的空间，恢复初始状态
+	 */
+	@Override
+	public void clear(){
+		super.clear();
+
+		// 文件ID序列及其字典可能由外部（如AuditLogReader）共享，不清空，只解除引用
+		inputFileIds = null;
+		dictionary = new FileDictionary();
+		idSegments.clear();
+		idDs.clear();
+		idFreSubsequences.clear();
+		idClosedFreSubsequences.clear();
+		idFreSubsequencesTier.clear();
+	}
+
+	/**
+	 * 执行关联规则的挖掘过程
+	 *
+	 * @return rules
+	 */
+	@Override
+	public Map<String, HDFSRule> startMining() {
+
+		// 对初始访问序列分段
+		cutAccessSequence();
+
+		// 获取长度为1的频繁序列
+		generateFirstDs();
+
+		// 挖掘：频繁子序列
+		candidateFreSubsequences();
+
+		// 过滤：Closed频繁子序列
+		closedFreSubsequences();
+
+		// 生成：关联规则
+		generateRules();
+
+		return rules;
+	}
+
+
+	/* 算法参数的 getters and setters */
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public boolean isClosedDuringMining() {
+		return closedDuringMining;
+	}
+
+	public void setClosedDuringMining(boolean closedDuringMining) {
+		this.closedDuringMining = closedDuringMining;
+	}
+
+
+	/**
+	 * 输入已转换为文件ID的文件访问序列，例如AuditLogReader.readAll()的结果，
+	 * 不再经过文件路径 -> 文件ID的转换。
+	 * @param inputFileIds
+	 * @param dictionary	生成文件ID时使用的字典，发布规则时通过它还原文件路径
+	 */
+	public void setInputFileIds(IntList inputFileIds, FileDictionary dictionary) {
+		this.inputFileIds = inputFileIds;
+		this.dictionary = dictionary;
+	}
+
+
+	/**
+	 * 输入按会话拆分后的文件访问序列，直接使用其中的文件ID序列、字典、时间戳，不再转换为文件路径。
+	 * 与setInputFileIds相同，替换之前输入的序列，而不是像CMinerHDFS.setInputSessions那样追加：
+	 * 每次拆分的会话使用各自的字典，文件ID不能直接拼接（IncrementalCMinerHDFS会转换为自己的文件ID）。
+	 * @param sessions
+	 */
+	@Override
+	public void setInputSessions(SessionSequences sessions) {
+		this.inputFileIds = sessions.getFileIds();
+		this.dictionary = sessions.getDictionary();
+		this.inputTimestamps = sessions.getTimestamps();
+		this.inputSessionStarts = sessions.getSessionStarts();
+	}
+
+
+	/* 中间结果的getters */
+
+	public FileDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public SegmentedSequence getIdSegments() {
+		return idSegments;
+	}
+
+	public Map<IntSequence, ProjectedDatabase> getIdDs() {
+		return idDs;
+	}
+
+	public Map<IntSequence, Integer> getIdFreSubsequences() {
+		return idFreSubsequences;
+	}
+
+	public Map<IntSequence, Integer> getIdClosedFreSubsequences() {
+		return idClosedFreSubsequences;
+	}
+
+	public Map<Integer, Map<IntSequence, Integer>> getIdFreSubsequencesTier() {
+		return idFreSubsequencesTier;
+	}
+
+	/* 覆盖、重写（Overriding）toString */
+	@Override
+	public String toString(){
+		StringBuilder sb = new StringBuilder("\n======== Generating Correlation Rules ========\n");
+
+		sb.append("Window size:\t").append(this.windowSize).append("\n")
+		  .append("Max Gap:\t").append(this.maxGap).append("\n")
+		  .append("Min Support:\t").append(this.minSupport).append("\n")
+		  .append("Min Confidence:\t").append(this.minConfidence).append("\n")
+		  .append("Segmentation:\t").append(this.segmentation).append("\n");
+
+		int inputLength = inputFileIds != null && inputFileIds.size() > 0 ? inputFileIds.size() : inputSequence.size();
+		sb.append("Input Sequence Length:\t\t").append(inputLength).append("\n")
+		  .append("Distinct Files:\t\t\t").append(this.dictionary.size()).append("\n")
+		  .append("Input Segments Length:\t\t").append(this.idSegments.getSegmentNum()).append("\n")
+		  .append("Frequent Subsequences:\t\t").append(this.idFreSubsequences.size()).append("\n")
+		  .append("Closed Frequent Subsequences:\t").append(this.idClosedFreSubsequences.size()).append("\n");
+
+		sb.append("Rules Number:\t").append(rules.size()).append("\n");
+
+		return sb.toString();
+	}
+}
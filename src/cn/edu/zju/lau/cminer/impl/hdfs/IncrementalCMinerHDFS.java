@@ -0,0 +1,426 @@
+package cn.edu.zju.lau.cminer.impl.hdfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+import cn.edu.zju.lau.cminer.model.hdfs.IntSequence;
+import cn.edu.zju.lau.cminer.model.hdfs.ProjectedDatabase;
+import cn.edu.zju.lau.cminer.model.hdfs.SessionSequences;
+import cn.edu.zju.lau.cminer.segment.SegmentationStrategy;
+import cn.edu.zju.lau.utils.FileDictionary;
+import cn.edu.zju.lau.utils.IntList;
+
+/**
+ * 增量挖掘：每次startMining只输入新的日志片段，新片段被切分为新的segment追加在已有segment之后，
+ * 只更新受新segment影响的频繁子序列，而不是重新挖掘全部的访问序列。
+ *
+ * 依据：子序列的support可以按segment累加。
+ * 		1. 长度为1的序列，support为文件在所有segment中出现的次数；
+ * 		2. 更长的序列，support为其在多少个segment中出现（每个segment中按第一次出现的位置扩展），
+ * 		   所以 新support = 旧support + 在新segment中的support。
+ *
+ * 保存的状态：
+ * 		1. 所有segment，以及每个文件在每个segment中第一次出现之后的suffix（rootDs）；
+ * 		2. 频繁子序列的support（idFreSubsequences），以及负边界：频繁子序列扩展一个文件后不频繁的序列的support（borderSupports）。
+ *
+ * 增量挖掘时，只从在新segment中出现的序列开始DFS：
+ * 		1. 原来就频繁的序列，扩展的旧support从状态中读取，只需在新segment中投影；
+ * 		2. 新变为频繁的序列，扩展的旧support未知，需要在旧segment中重新投影（从rootDs开始）。
+ * 之后只对support变化的序列及其直接子序列重新判断closed，再由Closed频繁子序列重新生成规则
+ * （规则的confidence依赖于单个文件的support，几乎每个新片段都会改变，因此规则整体重新生成，但不再需要挖掘）。
+ *
+ * 新片段总是从新的segment开始，因此当每个片段的长度都是windowSize的整数倍时（固定长度分段），
+ * 增量挖掘的结果与一次性挖掘所有片段的结果完全相同。
+ * 增量挖掘是串行的，不使用parallelism、closedDuringMining参数。
+ *
+ * @author yuki
+ * @date 2013-12-10
+ */
+public class IncrementalCMinerHDFS extends CMinerHDFSInterned {
+
+	protected int[] fileAccessTimes;						// 每个文件在所有segment中出现的次数
+	protected ProjectedDatabase[] rootDs;					// 每个文件在所有segment中第一次出现之后的suffix，按segment排序
+	protected int firstSegment;								// 第一个仍在统计范围内的segment，之前的segment已过期（见SlidingWindowCMinerHDFS）
+	protected Map<IntSequence, Integer> borderSupports;		// 负边界：频繁子序列扩展一个文件后，不频繁的序列的support
+	protected Map<IntSequence, Integer> maxSuperSupport;	// 子序列 -> 频繁父序列（去掉第一个/最后一个文件后与其相同）的最大support
+
+	// 一次增量挖掘过程中使用的临时状态
+	protected ProjectionMiner kernel;						// 统计扩展文件、投影后缀
+	protected int oldSegmentNum;							// 本次新片段之前的segment个数
+	protected List<IntSequence> changedSubsequences;		// 本次support发生变化的频繁子序列
+
+	private static final int[] NO_EXTENSIONS = new int[0];
+
+	public IncrementalCMinerHDFS(){
+		super();
+		init();
+	}
+
+	public IncrementalCMinerHDFS(SegmentationStrategy segmentation){
+		super(segmentation);
+		init();
+	}
+
+	public IncrementalCMinerHDFS(int windowSize, int maxGap, int minSupport, float minConfidence){
+		super(new ArrayList<String>(), windowSize, maxGap, minSupport, minConfidence);
+		init();
+	}
+
+	private void init(){
+		fileAccessTimes = new int[0];
+		rootDs = new ProjectedDatabase[0];
+		borderSupports = new HashMap<IntSequence, Integer>();
+		maxSuperSupport = new HashMap<IntSequence, Integer>();
+		firstSegment = 0;
+	}
+
+	/**
+	 * 挖掘本次输入的新片段（setInputSequence / setInputFileIds / setInputSessions），与之前的结果合并。
+	 * 挖掘结束后清空输入，下一次只需输入之后的新片段。
+	 *
+	 * @return rules
+	 */
+	@Override
+	public Map<String, HDFSRule> startMining() {
+
+		int segmentNum = idSegments.getSegmentNum();
+
+		// 对新片段分段，追加在已有segment之后
+		cutAccessSequence();
+		consumeInput();
+		if(idSegments.getSegmentNum() == segmentNum){
+			return rules;
+		}
+
+		// 更新：频繁子序列
+		updateFreSubsequences(segmentNum);
+
+		// 更新：Closed频繁子序列
+		updateClosedFreSubsequences();
+
+		// 重新生成：关联规则
+		rules.clear();
+		generateRules();
+
+		return rules;
+	}
+
+	/**
+	 * 输入已转换为文件ID的新片段。已保存的状态使用getDictionary()的文件ID，
+	 * 片段的字典不是该字典时，按文件路径把片段的文件ID转换为该字典中的文件ID。
+	 * @param inputFileIds
+	 * @param dictionary	生成文件ID时使用的字典
+	 */
+	@Override
+	public void setInputFileIds(IntList inputFileIds, FileDictionary dictionary) {
+		super.setInputFileIds(toOwnIds(inputFileIds, dictionary), this.dictionary);
+	}
+
+	/**
+	 * 输入按会话拆分后的新片段。SessionDemultiplexer每次都创建新的字典，
+	 * 文件ID按文件路径转换为getDictionary()中的文件ID，不替换已有的字典。
+	 * @param sessions
+	 */
+	@Override
+	public void setInputSessions(SessionSequences sessions) {
+
+		IntList ownIds = toOwnIds(sessions.getFileIds(), sessions.getDictionary());
+		FileDictionary ownDictionary = this.dictionary;
+		super.setInputSessions(sessions);
+		this.inputFileIds = ownIds;
+		this.dictionary = ownDictionary;
+	}
+
+	/**
+	 * 将由fileDictionary分配的文件ID转换为本挖掘器的字典中的文件ID，与ParallelAuditLogLoader合并各段的字典相同
+	 */
+	private IntList toOwnIds(IntList fileIds, FileDictionary fileDictionary){
+
+		if(fileDictionary == dictionary){
+			return fileIds;
+		}
+
+		int[] local2Global = new int[fileDictionary.size()];
+		for(int localId = 0; localId < local2Global.length; localId++){
+			local2Global[localId] = dictionary.intern(fileDictionary.getName(localId));
+		}
+
+		IntList ownIds = new IntList(fileIds.size());
+		for(int i = 0; i < fileIds.size(); i++){
+			ownIds.add(local2Global[fileIds.get(i)]);
+		}
+		return ownIds;
+	}
+
+	/**
+	 * 清空本次的输入，已分段的结果保存在idSegments中
+	 */
+	protected void consumeInput(){
+		inputSequence.clear();
+		inputFileIds = null;
+		inputTimestamps = null;
+		inputSessionStarts = null;
+	}
+
+	/**
+	 * 统计新segment中的文件，从在新segment中出现的频繁文件开始，DFS更新频繁子序列及负边界
+	 * @param oldSegmentNum	新segment的起始下标
+	 */
+	protected void updateFreSubsequences(int oldSegmentNum){
+
+		this.oldSegmentNum = oldSegmentNum;
+		this.changedSubsequences = new ArrayList<IntSequence>();
+
+		int fileNum = dictionary.size();
+		int[] oldAccessTimes = Arrays.copyOf(fileAccessTimes, fileNum);
+		fileAccessTimes = Arrays.copyOf(fileAccessTimes, fileNum);
+		rootDs = Arrays.copyOf(rootDs, fileNum);
+
+		// 统计新segment中每个文件出现的次数，同时记录其在每个新segment中第一次出现时的suffix
+		int[] lastSegment = new int[fileNum];
+		Arrays.fill(lastSegment, -1);
+		List<Integer> changedRoots = new ArrayList<Integer>();
+		for(int i = oldSegmentNum; i < idSegments.getSegmentNum(); i++){
+			int start = idSegments.segmentStart(i);
+			int end = idSegments.segmentEnd(i);
+
+			for(int k = start; k < end; k++){
+				int currentFile = idSegments.get(k);
+				if(fileAccessTimes[currentFile]++ == oldAccessTimes[currentFile]){
+					changedRoots.add(currentFile);
+				}
+
+				// 当前文件在当前窗口中已经统计过
+				if(lastSegment[currentFile] == i){
+					continue;
+				}
+				lastSegment[currentFile] = i;
+
+				if(rootDs[currentFile] == null){
+					rootDs[currentFile] = new ProjectedDatabase(new IntSequence(currentFile), 0, 4);
+				}
+				rootDs[currentFile].addSuffix(i, k + 1 - start);
+			}
+		}
+
+		// 依次更新每个在新segment中出现、且频繁的文件为起点的子序列
+		kernel = new ProjectionMiner(idSegments, fileNum, maxGap, minSupport, false);
+		Collections.sort(changedRoots);
+		for(int root: changedRoots){
+			if(fileAccessTimes[root] < minSupport){
+				continue;
+			}
+
+			IntSequence subsequence = new IntSequence(root);
+			boolean newlyFrequent = oldAccessTimes[root] < minSupport;
+			rootDs[root].setOccurTimes(fileAccessTimes[root]);
+			addFreSubsequence(subsequence, fileAccessTimes[root]);
+
+			ProjectedDatabase newDs = slice(rootDs[root], oldSegmentNum, Integer.MAX_VALUE);
+			ProjectedDatabase oldDs = newlyFrequent ? slice(rootDs[root], firstSegment, oldSegmentNum) : null;
+			update(subsequence, newDs, oldDs);
+		}
+
+		kernel = null;
+	}
+
+	/**
+	 * 更新以currentSubseq为前缀的频繁子序列
+	 * @param currentSubseq	频繁子序列
+	 * @param newDs			currentSubseq在新segment中的后缀
+	 * @param oldDs			currentSubseq在旧segment中的后缀；currentSubseq原来就频繁时为null，扩展的旧support从状态中读取
+	 */
+	private void update(IntSequence currentSubseq, ProjectedDatabase newDs, ProjectedDatabase oldDs){
+
+		// 新、旧segment中可以扩展当前序列的文件：[file0, support0, file1, support1, ...]，按文件ID排序
+		int[] newExtensions = kernel.countExtensions(newDs, 1);
+		int[] oldExtensions = oldDs == null ? NO_EXTENSIONS : kernel.countExtensions(oldDs, 1);
+
+		int n = 0;
+		int o = 0;
+		while(n < newExtensions.length || o < oldExtensions.length){
+
+			// 按文件ID合并新、旧扩展
+			int file;
+			int newSupport = 0;
+			int oldSupport = 0;
+			if(o >= oldExtensions.length || (n < newExtensions.length && newExtensions[n] < oldExtensions[o])){
+				file = newExtensions[n];
+				newSupport = newExtensions[n + 1];
+				n += 2;
+			}
+			else if(n >= newExtensions.length || oldExtensions[o] < newExtensions[n]){
+				file = oldExtensions[o];
+				oldSupport = oldExtensions[o + 1];
+				o += 2;
+			}
+			else{
+				file = newExtensions[n];
+				newSupport = newExtensions[n + 1];
+				oldSupport = oldExtensions[o + 1];
+				n += 2;
+				o += 2;
+			}
+
+			// 类似AA这种不检测
+			if(ProjectionMiner.isSelfExtension(currentSubseq, file)){
+				continue;
+			}
+
+			// 当前序列原来就频繁，扩展的旧support从频繁子序列或负边界中读取
+			IntSequence newSubseq = currentSubseq.append(file);
+			boolean wasFrequent = false;
+			if(oldDs == null){
+				Integer support = idFreSubsequences.get(newSubseq);
+				if(support != null){
+					wasFrequent = true;
+				}
+				else{
+					support = borderSupports.get(newSubseq);
+				}
+				oldSupport = support == null ? 0 : support;
+			}
+
+			// 仍然不频繁，记录在负边界中
+			int support = oldSupport + newSupport;
+			if(support < minSupport){
+				borderSupports.put(newSubseq, support);
+				continue;
+			}
+			borderSupports.remove(newSubseq);
+			addFreSubsequence(newSubseq, support);
+
+			// 新变为频繁的序列，需要其在旧segment中的后缀，以得到扩展的旧support
+			ProjectedDatabase newSubseqNewDs = kernel.project(newDs, newSubseq, file, newSupport);
+			ProjectedDatabase newSubseqOldDs = null;
+			if(!wasFrequent){
+				newSubseqOldDs = oldDs != null ? kernel.project(oldDs, newSubseq, file, oldSupport) : projectOldSegments(newSubseq);
+			}
+			update(newSubseq, newSubseqNewDs, newSubseqOldDs);
+		}
+	}
+
+	/**
+	 * 从rootDs开始，在旧segment中重新投影subsequence，得到其在旧segment中的后缀
+	 */
+	private ProjectedDatabase projectOldSegments(IntSequence subsequence){
+
+		ProjectedDatabase ds = slice(rootDs[subsequence.get(0)], firstSegment, oldSegmentNum);
+		for(int i = 1; i < subsequence.length(); i++){
+			ds = kernel.project(ds, subsequence.subSequence(0, i + 1), subsequence.get(i), ds.size());
+		}
+		return ds;
+	}
+
+	/**
+	 * 截取ds中segment在[fromSegment, toSegment)之间的后缀
+	 */
+	protected static ProjectedDatabase slice(ProjectedDatabase ds, int fromSegment, int toSegment){
+
+		int from = lowerBound(ds, fromSegment);
+		int to = toSegment == Integer.MAX_VALUE ? ds.size() : lowerBound(ds, toSegment);
+
+		ProjectedDatabase result = new ProjectedDatabase(ds.getSubsequence(), ds.getOccurTimes(), Math.max(to - from, 1));
+		for(int i = from; i < to; i++){
+			result.addSuffix(ds.getSegment(i), ds.getOffset(i));
+		}
+		return result;
+	}
+
+	/**
+	 * ds中第一个segment不小于segment的后缀的下标
+	 */
+	protected static int lowerBound(ProjectedDatabase ds, int segment){
+
+		int low = 0;
+		int high = ds.size();
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(ds.getSegment(middle) < segment){
+				low = middle + 1;
+			}
+			else{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 记录频繁子序列的新support
+	 */
+	private void addFreSubsequence(IntSequence subsequence, int support){
+
+		idFreSubsequences.put(subsequence, support);
+		changedSubsequences.add(subsequence);
+		if(subsequence.length() > maxSeqLength){
+			maxSeqLength = subsequence.length();
+		}
+	}
+
+	/**
+	 * 只对support变化的频繁子序列，及其直接子序列（去掉第一个/最后一个文件）重新判断closed：
+	 * support大于所有频繁父序列的support。
+	 * 新片段只会增加support，所以父序列的最大support只增不减，可以直接在索引中更新。
+	 */
+	protected void updateClosedFreSubsequences(){
+
+		Set<IntSequence> affected = new HashSet<IntSequence>(changedSubsequences);
+		for(IntSequence subsequence: changedSubsequences){
+			int length = subsequence.length();
+			if(length <= 1){
+				continue;
+			}
+			int support = idFreSubsequences.get(subsequence);
+			IntSequence tail = subsequence.subSequence(1, length);
+			IntSequence head = subsequence.subSequence(0, length - 1);
+			updateMaxSupport(maxSuperSupport, tail, support);
+			updateMaxSupport(maxSuperSupport, head, support);
+			affected.add(tail);
+			affected.add(head);
+		}
+
+		for(IntSequence subsequence: affected){
+			Integer support = idFreSubsequences.get(subsequence);
+			if(support == null){
+				continue;
+			}
+			Integer superSupport = maxSuperSupport.get(subsequence);
+			if(superSupport == null || support > superSupport){
+				idClosedFreSubsequences.put(subsequence, support);
+			}
+			else{
+				idClosedFreSubsequences.remove(subsequence);
+			}
+		}
+
+		changedSubsequences = null;
+	}
+
+	/**
+	 * 清除所有状态，恢复初始状态
+	 */
+	@Override
+	public void clear(){
+		super.clear();
+		init();
+	}
+
+
+	/* 增量状态的getters */
+
+	public Map<IntSequence, Integer> getBorderSupports() {
+		return borderSupports;
+	}
+
+	public int getFileAccessTimes(int file) {
+		return file < fileAccessTimes.length ? fileAccessTimes[file] : 0;
+	}
+}
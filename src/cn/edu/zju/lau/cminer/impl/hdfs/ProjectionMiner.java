@@ -0,0 +1,304 @@
+package cn.edu.zju.lau.cminer.impl.hdfs;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import cn.edu.zju.lau.cminer.model.hdfs.IntSequence;
+import cn.edu.zju.lau.cminer.model.hdfs.ProjectedDatabase;
+import cn.edu.zju.lau.cminer.model.hdfs.SegmentedSequence;
+
+/**
+ * 以一个长度为1的频繁序列（及其伪投影）为起点，DFS挖掘频繁子序列。
+ * 只读访问分段序列，结果写入自己持有的Map，因此不同起点可以交给不同线程各自挖掘，最后合并。
+ *
+ * closedDuringMining模式下不生成分层结果，而是在挖掘的同时判断closed：
+ * 		1. 子序列的直接父序列只有两类：在末尾追加一个文件（即DFS中的子节点），在开头追加一个文件；
+ * 		2. 子节点的support在扩展时即可得到，support不大于某个子节点的序列直接排除；
+ * 		3. 在开头追加文件的父序列，记录为 去掉第一个文件后的子序列 -> 父序列的最大support，挖掘结束后统一检查。
+ *
+ * @author yuki
+ * @date 2013-12-04
+ */
+class ProjectionMiner {
+
+	private SegmentedSequence segments;		// 文件ID序列的分段，只读
+	private int maxGap;
+	private int minSupport;
+
+	private Map<IntSequence, Integer> freSubsequences;
+	private Map<Integer, Map<IntSequence, Integer>> freSubsequencesTier;
+	private int maxSeqLength;
+
+	private boolean closedDuringMining;						// 是否在挖掘的同时判断closed
+	private Map<IntSequence, Integer> closedCandidates;		// support大于所有子节点的序列
+	private Map<IntSequence, Integer> prefixedSuperSupport;	// 去掉第一个文件后的子序列 -> 父序列的最大support
+
+	// 统计后缀中文件出现次数时使用的临时数组，以文件ID为下标，避免为每个子序列创建Map
+	private int[] itemCounts;
+	private int[] itemStamps;
+	private int currentStamp;
+
+	ProjectionMiner(SegmentedSequence segments, int fileNum, int maxGap, int minSupport, boolean closedDuringMining){
+		this(segments, fileNum, maxGap, minSupport, closedDuringMining,
+			new HashMap<IntSequence, Integer>(), new HashMap<Integer, Map<IntSequence, Integer>>());
+	}
+
+	ProjectionMiner(SegmentedSequence segments, int fileNum, int maxGap, int minSupport, boolean closedDuringMining,
+			Map<IntSequence, Integer> freSubsequences, Map<Integer, Map<IntSequence, Integer>> freSubsequencesTier){
+
+		this.segments = segments;
+		this.maxGap = maxGap;
+		this.minSupport = minSupport;
+		this.freSubsequences = freSubsequences;
+		this.freSubsequencesTier = freSubsequencesTier;
+		this.maxSeqLength = 0;
+
+		this.closedDuringMining = closedDuringMining;
+		this.closedCandidates = new HashMap<IntSequence, Integer>();
+		this.prefixedSuperSupport = new HashMap<IntSequence, Integer>();
+
+		this.itemCounts = new int[fileNum];
+		this.itemStamps = new int[fileNum];
+		this.currentStamp = 0;
+	}
+
+	/**
+	 * 挖掘以root为起点的所有频繁子序列
+	 * @param root
+	 */
+	void mine(ProjectedDatabase root){
+		mine(root.getSubsequence(), root.getOccurTimes(), root);
+	}
+
+	/**
+	 * 以currentSubseq为前缀，DFS扩展频繁子序列，递归深度不超过windowSize
+	 * @param currentSubseq
+	 * @param occurTimes
+	 * @param currentDs	currentSubseq在每个segment中的后缀（伪投影）
+	 */
+	private void mine(IntSequence currentSubseq, int occurTimes, ProjectedDatabase currentDs){
+
+		// 添加当前序列至 候选频繁子序列集合、对应的长度层次中
+		addFreSubsequence(currentSubseq, occurTimes);
+
+		// 从当前的后缀集合中计算出可以扩展当前序列的文件，及其support：[file0, support0, file1, support1, ...]
+		int[] oneFileFreSubseqs = countExtensions(currentDs, minSupport);
+
+		if(closedDuringMining){
+			checkClosed(currentSubseq, occurTimes, oneFileFreSubseqs);
+		}
+
+		for(int n = 0; n < oneFileFreSubseqs.length; n += 2){
+			int file = oneFileFreSubseqs[n];
+			int support = oneFileFreSubseqs[n + 1];
+
+			// 类似AA这种不检测
+			if(isSelfExtension(currentSubseq, file)){
+				continue;
+			}
+
+			// currentSubseq连接file的support已知，只需记录file有效出现时的新suffix
+			ProjectedDatabase newDs = project(currentDs, currentSubseq.append(file), file, support);
+
+			// 递归处理新序列
+			mine(newDs.getSubsequence(), support, newDs);
+		}
+	}
+
+	/**
+	 * 在currentDs的每个后缀的前maxGap + 1个位置中查找file，记录file第一次出现之后的新后缀
+	 * @param currentDs
+	 * @param newSubseq	currentDs的子序列连接file后的新序列
+	 * @param file
+	 * @param support	新序列的support，即新后缀的个数，用于预分配空间
+	 * @return
+	 */
+	ProjectedDatabase project(ProjectedDatabase currentDs, IntSequence newSubseq, int file, int support){
+
+		ProjectedDatabase newDs = new ProjectedDatabase(newSubseq, support, support);
+		for(int k = 0; k < currentDs.size(); k++){
+			int segment = currentDs.getSegment(k);
+			int segmentStart = segments.segmentStart(segment);
+			int start = segmentStart + currentDs.getOffset(k);
+			int end = Math.min(segments.segmentEnd(segment), start + maxGap + 1);
+
+			for(int i = start; i < end; i++){
+				if(segments.get(i) == file){
+					newDs.addSuffix(segment, i + 1 - segmentStart);
+					break;
+				}
+			}
+		}
+		return newDs;
+	}
+
+	/**
+	 * 类似AA这种扩展不生成
+	 */
+	static boolean isSelfExtension(IntSequence currentSubseq, int file){
+		return currentSubseq.length() == 1 && currentSubseq.get(0) == file;
+	}
+
+	/**
+	 * closedDuringMining模式：
+	 * 		1. support大于所有子节点（在末尾追加一个文件）的support时，才可能是closed的；
+	 * 		2. 记录去掉第一个文件后的子序列的父序列support，挖掘结束后在resolveClosed中检查。
+	 */
+	private void checkClosed(IntSequence currentSubseq, int occurTimes, int[] oneFileFreSubseqs){
+
+		int maxChildSupport = 0;
+		for(int n = 0; n < oneFileFreSubseqs.length; n += 2){
+			if(!isSelfExtension(currentSubseq, oneFileFreSubseqs[n])){
+				maxChildSupport = Math.max(maxChildSupport, oneFileFreSubseqs[n + 1]);
+			}
+		}
+		if(occurTimes > maxChildSupport){
+			closedCandidates.put(currentSubseq, occurTimes);
+		}
+
+		if(currentSubseq.length() > 1){
+			CMinerHDFS.updateMaxSupport(prefixedSuperSupport, currentSubseq.subSequence(1, currentSubseq.length()), occurTimes);
+		}
+	}
+
+	/**
+	 * closedDuringMining模式：挖掘结束后，从候选中挑选出support同样大于所有 在开头追加一个文件的父序列 的序列
+	 * @param closedFreSubsequences
+	 */
+	void resolveClosed(Map<IntSequence, Integer> closedFreSubsequences){
+
+		for(Map.Entry<IntSequence, Integer> entry: closedCandidates.entrySet()){
+			Integer superSupport = prefixedSuperSupport.get(entry.getKey());
+			if(superSupport == null || entry.getValue() > superSupport){
+				closedFreSubsequences.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * 从输入的后缀中计算出可以扩展前缀的文件：在后缀的前maxGap + 1个位置中出现，且出现的后缀数不小于threshold。
+	 * 返回按ID排序的 [file0, support0, file1, support1, ...]。
+	 */
+	int[] countExtensions(ProjectedDatabase suffixes, int threshold){
+
+		int[] touched = new int[16];
+		int touchedNum = 0;
+
+		// 统计每个文件出现的后缀数，同一个后缀中只统计一次
+		for(int k = 0; k < suffixes.size(); k++){
+			int segment = suffixes.getSegment(k);
+			int start = segments.segmentStart(segment) + suffixes.getOffset(k);
+			int end = Math.min(segments.segmentEnd(segment), start + maxGap + 1);
+
+			currentStamp++;
+			for(int i = start; i < end; i++){
+				int file = segments.get(i);
+				if(itemStamps[file] == currentStamp){
+					continue;
+				}
+				itemStamps[file] = currentStamp;
+
+				if(itemCounts[file]++ == 0){
+					if(touchedNum == touched.length){
+						touched = Arrays.copyOf(touched, touchedNum * 2);
+					}
+					touched[touchedNum++] = file;
+				}
+			}
+		}
+
+		// 过滤掉出现次数小于threshold的文件
+		int freNum = 0;
+		for(int i = 0; i < touchedNum; i++){
+			if(itemCounts[touched[i]] >= threshold){
+				int file = touched[freNum];
+				touched[freNum++] = touched[i];
+				touched[i] = file;
+			}
+		}
+		Arrays.sort(touched, 0, freNum);
+
+		// 记录support，同时重置计数
+		int[] oneFileFreSubseqs = new int[freNum * 2];
+		for(int i = 0; i < freNum; i++){
+			oneFileFreSubseqs[i * 2] = touched[i];
+			oneFileFreSubseqs[i * 2 + 1] = itemCounts[touched[i]];
+		}
+		for(int i = 0; i < touchedNum; i++){
+			itemCounts[touched[i]] = 0;
+		}
+
+		return oneFileFreSubseqs;
+	}
+
+	/**
+	 * 添加序列至 候选频繁子序列集合、对应的长度层次中
+	 */
+	private void addFreSubsequence(IntSequence subsequence, int occurTimes){
+
+		freSubsequences.put(subsequence, occurTimes);
+
+		int seqLen = subsequence.length();
+		if(seqLen > maxSeqLength){
+			maxSeqLength = seqLen;
+		}
+
+		// closedDuringMining模式下不需要分层
+		if(closedDuringMining){
+			return;
+		}
+		if(freSubsequencesTier.get(seqLen) == null){
+			freSubsequencesTier.put(seqLen, new HashMap<IntSequence, Integer>());
+		}
+		freSubsequencesTier.get(seqLen).put(subsequence, occurTimes);
+	}
+
+	/**
+	 * 合并另一个ProjectionMiner的挖掘结果，两者的起点不能相同
+	 * @param other
+	 */
+	void merge(ProjectionMiner other){
+
+		freSubsequences.putAll(other.freSubsequences);
+
+		for(Map.Entry<Integer, Map<IntSequence, Integer>> entry: other.freSubsequencesTier.entrySet()){
+			Map<IntSequence, Integer> tier = freSubsequencesTier.get(entry.getKey());
+			if(tier == null){
+				freSubsequencesTier.put(entry.getKey(), entry.getValue());
+			}
+			else{
+				tier.putAll(entry.getValue());
+			}
+		}
+
+		if(other.maxSeqLength > maxSeqLength){
+			maxSeqLength = other.maxSeqLength;
+		}
+
+		closedCandidates.putAll(other.closedCandidates);
+		for(Map.Entry<IntSequence, Integer> entry: other.prefixedSuperSupport.entrySet()){
+			CMinerHDFS.updateMaxSupport(prefixedSuperSupport, entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * 释放临时数组，合并之后的ProjectionMiner只保留结果
+	 */
+	void releaseBuffers(){
+		itemCounts = null;
+		itemStamps = null;
+	}
+
+	Map<IntSequence, Integer> getFreSubsequences() {
+		return freSubsequences;
+	}
+
+	Map<Integer, Map<IntSequence, Integer>> getFreSubsequencesTier() {
+		return freSubsequencesTier;
+	}
+
+	int getMaxSeqLength() {
+		return maxSeqLength;
+	}
+}
@@ -0,0 +1,72 @@
+package cn.edu.zju.lau.cminer.impl.hdfs;
+
+import java.util.concurrent.RecursiveTask;
+
+import cn.edu.zju.lau.cminer.model.hdfs.ProjectedDatabase;
+import cn.edu.zju.lau.cminer.model.hdfs.SegmentedSequence;
+
+/**
+ * Fork/Join任务：挖掘roots[from, to)中每一个长度为1的频繁序列的子树。
+ * 不同起点的子树互不相关，每个任务使用自己的ProjectionMiner（局部结果Map），在join时合并。
+ *
+ * @author yuki
+ * @date 2013-12-04
+ */
+class RootMiningTask extends RecursiveTask<ProjectionMiner> {
+
+	private static final long serialVersionUID = 2706437409786418447L;
+
+	private ProjectedDatabase[] roots;
+	private int from;
+	private int to;
+	private int batchSize;			// 每个任务直接挖掘的起点个数，超过则继续拆分
+
+	private SegmentedSequence segments;
+	private int fileNum;
+	private int maxGap;
+	private int minSupport;
+	private boolean closedDuringMining;
+
+	RootMiningTask(ProjectedDatabase[] roots, int from, int to, int batchSize,
+			SegmentedSequence segments, int fileNum, int maxGap, int minSupport, boolean closedDuringMining){
+
+		this.roots = roots;
+		this.from = from;
+		this.to = to;
+		this.batchSize = batchSize;
+		this.segments = segments;
+		this.fileNum = fileNum;
+		this.maxGap = maxGap;
+		this.minSupport = minSupport;
+		this.closedDuringMining = closedDuringMining;
+	}
+
+	@Override
+	protected ProjectionMiner compute() {
+
+		// 起点足够少，直接挖掘
+		if(to - from <= batchSize){
+			ProjectionMiner miner = new ProjectionMiner(segments, fileNum, maxGap, minSupport, closedDuringMining);
+			for(int i = from; i < to; i++){
+				miner.mine(roots[i]);
+			}
+			miner.releaseBuffers();
+			return miner;
+		}
+
+		// 拆分为两个子任务，结果合并到较大的一方
+		int middle = (from + to) >>> 1;
+		RootMiningTask left = new RootMiningTask(roots, from, middle, batchSize, segments, fileNum, maxGap, minSupport, closedDuringMining);
+		RootMiningTask right = new RootMiningTask(roots, middle, to, batchSize, segments, fileNum, maxGap, minSupport, closedDuringMining);
+		left.fork();
+		ProjectionMiner rightResult = right.compute();
+		ProjectionMiner leftResult = left.join();
+
+		if(leftResult.getFreSubsequences().size() >= rightResult.getFreSubsequences().size()){
+			leftResult.merge(rightResult);
+			return leftResult;
+		}
+		rightResult.merge(leftResult);
+		return rightResult;
+	}
+}
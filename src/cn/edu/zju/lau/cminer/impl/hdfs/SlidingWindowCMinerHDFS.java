@@ -0,0 +1,418 @@
+package cn.edu.zju.lau.cminer.impl.hdfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cn.edu.zju.lau.cminer.model.hdfs.FileAccessLog;
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+import cn.edu.zju.lau.cminer.model.hdfs.IntSequence;
+import cn.edu.zju.lau.cminer.model.hdfs.ProjectedDatabase;
+import cn.edu.zju.lau.cminer.segment.SegmentationStrategy;
+import cn.edu.zju.lau.utils.LongList;
+
+/**
+ * 滑动窗口挖掘：在增量挖掘的基础上，只统计最近的segment（最近maxSegments个segment，或最近maxMillis毫秒内的segment），
+ * 过期的segment从所有support中减去，support不足的频繁子序列被移除，由其生成的关联规则随之撤回。
+ *
+ * 过期与新增是对称的：子序列的support可以按segment累加，过期segment中的support可以像新segment一样，
+ * 从rootDs开始投影计算，只需将加法换为减法。
+ * 		1. 仍然频繁的序列，继续在过期segment中投影，更新其扩展；
+ * 		2. 不再频繁的序列移入负边界（support为0时直接删除），以其为前缀的序列全部删除（它们也不再频繁，且不再是频繁序列的扩展）。
+ *
+ * support会减少，父序列的最大support不再只增不减，因此每次都由频繁子序列重新判断closed（与频繁子序列的个数成正比，不需要挖掘）。
+ *
+ * 过期的segment在数量达到总数的一半时统一删除，分段序列、rootDs中的下标随之前移，
+ * 所以占用的内存与窗口内的日志量成正比，而不是与输入的日志总量成正比。
+ *
+ * 按时间过期时，segment必须按时间排列，过期时只需从最早的segment向后扫描。
+ * 通过setInputSessions输入时，segment按会话依次排列，时间并不递增，因此每次输入的新segment先按时间（segment中最后一次访问的时间）排序；
+ * 多次输入之间不再排序，后一次输入的访问应晚于前一次输入的访问。新segment中有缺少时间戳的segment时不排序。
+ *
+ * @author yuki
+ * @date 2013-12-11
+ */
+public class SlidingWindowCMinerHDFS extends IncrementalCMinerHDFS {
+
+	private int maxSegments;		// 窗口内最多保留的segment个数，0为不限制
+	private long maxMillis;			// 窗口的时间跨度（毫秒），早于最新segment这么久的segment过期，0为不限制
+
+	private LongList segmentTimes;					// 每个segment中最后一次访问的时间，没有时间戳时为TIME_UNKNOWN
+	private Map<String, HDFSRule> retractedRules;	// 最近一次挖掘中撤回的关联规则
+
+	// 一次过期过程中使用的临时状态
+	private Set<IntSequence> demotedSubsequences;	// 本次不再频繁的子序列
+
+	public SlidingWindowCMinerHDFS(){
+		super();
+		init();
+	}
+
+	public SlidingWindowCMinerHDFS(SegmentationStrategy segmentation){
+		super(segmentation);
+		init();
+	}
+
+	public SlidingWindowCMinerHDFS(int windowSize, int maxGap, int minSupport, float minConfidence, int maxSegments){
+		super(windowSize, maxGap, minSupport, minConfidence);
+		init();
+		this.maxSegments = maxSegments;
+	}
+
+	private void init(){
+		maxSegments = 0;
+		maxMillis = 0;
+		segmentTimes = new LongList();
+		retractedRules = new HashMap<String, HDFSRule>();
+	}
+
+	/**
+	 * 挖掘本次输入的新片段，并使窗口之外的segment过期。
+	 * 按时间过期时，需要通过setInputTimestamps / setInputLogs / setInputSessions输入时间戳。
+	 *
+	 * @return rules
+	 */
+	@Override
+	public Map<String, HDFSRule> startMining() {
+
+		retractedRules = new HashMap<String, HDFSRule>();
+		int segmentNum = idSegments.getSegmentNum();
+
+		// 对新片段分段，追加在已有segment之后，记录每个新segment的时间
+		cutAccessSequence();
+		recordSegmentTimes(segmentNum);
+		consumeInput();
+		if(idSegments.getSegmentNum() == segmentNum){
+			return rules;
+		}
+
+		// 过期：窗口之外的segment
+		expireSegments(segmentNum);
+		segmentNum -= compactSegments();
+
+		// 更新：频繁子序列（只统计未过期的新segment）
+		updateFreSubsequences(Math.max(segmentNum, firstSegment));
+
+		// 重新判断：Closed频繁子序列
+		updateClosedFreSubsequences();
+
+		// 重新生成：关联规则，记录被撤回的规则
+		Map<String, HDFSRule> oldRules = new HashMap<String, HDFSRule>(rules);
+		rules.clear();
+		generateRules();
+		for(Map.Entry<String, HDFSRule> entry: oldRules.entrySet()){
+			if(!rules.containsKey(entry.getKey())){
+				retractedRules.put(entry.getKey(), entry.getValue());
+			}
+		}
+
+		return rules;
+	}
+
+	/**
+	 * 记录每个新segment中最后一次访问的时间，所有新segment都有时间时，按时间排序新segment
+	 * @param oldSegmentNum	新segment的起始下标
+	 */
+	private void recordSegmentTimes(int oldSegmentNum){
+
+		final long[] times = new long[idSegments.getSegmentNum() - oldSegmentNum];
+		boolean timed = true;
+		int position = -1;
+		for(int i = 0; i < times.length; i++){
+			position += idSegments.segmentLength(oldSegmentNum + i);
+			times[i] = inputTimestamps != null && position < inputTimestamps.size() ? inputTimestamps.get(position) : FileAccessLog.TIME_UNKNOWN;
+			timed &= times[i] != FileAccessLog.TIME_UNKNOWN;
+		}
+
+		// 会话依次排列的segment按时间排序（稳定排序，时间相同时保持原顺序）
+		Integer[] order = new Integer[times.length];
+		for(int i = 0; i < order.length; i++){
+			order[i] = i;
+		}
+		if(timed){
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return Long.compare(times[o1], times[o2]);
+				}
+			});
+			int[] segmentOrder = new int[order.length];
+			for(int i = 0; i < order.length; i++){
+				segmentOrder[i] = order[i];
+			}
+			idSegments.reorderSegments(oldSegmentNum, segmentOrder);
+		}
+
+		for(int i = 0; i < order.length; i++){
+			segmentTimes.add(times[order[i]]);
+		}
+	}
+
+	/**
+	 * 按窗口大小计算过期的segment，从support中减去其中的统计，firstSegment后移
+	 * @param oldSegmentNum	新segment的起始下标，新segment尚未统计，过期时不需要减去
+	 */
+	private void expireSegments(int oldSegmentNum){
+
+		int segmentNum = idSegments.getSegmentNum();
+		int expireTo = firstSegment;
+		if(maxSegments > 0){
+			expireTo = Math.max(expireTo, segmentNum - maxSegments);
+		}
+		long newestTime = segmentTimes.get(segmentNum - 1);
+		if(maxMillis > 0 && newestTime != FileAccessLog.TIME_UNKNOWN){
+			while(expireTo < segmentNum && segmentTimes.get(expireTo) != FileAccessLog.TIME_UNKNOWN
+					&& segmentTimes.get(expireTo) < newestTime - maxMillis){
+				expireTo++;
+			}
+		}
+		if(expireTo == firstSegment){
+			return;
+		}
+
+		retractSegments(firstSegment, Math.min(expireTo, oldSegmentNum));
+		firstSegment = expireTo;
+	}
+
+	/**
+	 * 从support中减去segment在[fromSegment, toSegment)之间的统计
+	 */
+	private void retractSegments(int fromSegment, int toSegment){
+
+		if(fromSegment >= toSegment){
+			return;
+		}
+
+		int[] oldAccessTimes = fileAccessTimes.clone();
+		List<Integer> changedRoots = new ArrayList<Integer>();
+		for(int k = idSegments.segmentStart(fromSegment); k < idSegments.segmentStart(toSegment); k++){
+			int currentFile = idSegments.get(k);
+			if(fileAccessTimes[currentFile]-- == oldAccessTimes[currentFile]){
+				changedRoots.add(currentFile);
+			}
+		}
+
+		// 依次更新每个在过期segment中出现、且原来频繁的文件为起点的子序列
+		kernel = new ProjectionMiner(idSegments, dictionary.size(), maxGap, minSupport, false);
+		demotedSubsequences = new HashSet<IntSequence>();
+		Collections.sort(changedRoots);
+		for(int root: changedRoots){
+			if(oldAccessTimes[root] < minSupport){
+				continue;
+			}
+
+			IntSequence subsequence = new IntSequence(root);
+			rootDs[root].setOccurTimes(fileAccessTimes[root]);
+			if(fileAccessTimes[root] < minSupport){
+				idFreSubsequences.remove(subsequence);
+				demotedSubsequences.add(subsequence);
+				continue;
+			}
+			idFreSubsequences.put(subsequence, fileAccessTimes[root]);
+			retract(subsequence, slice(rootDs[root], fromSegment, toSegment));
+		}
+
+		removeDescendants();
+		kernel = null;
+		demotedSubsequences = null;
+	}
+
+	/**
+	 * 从以currentSubseq为前缀的序列中减去过期segment中的support
+	 * @param currentSubseq	仍然频繁的子序列
+	 * @param expiredDs		currentSubseq在过期segment中的后缀
+	 */
+	private void retract(IntSequence currentSubseq, ProjectedDatabase expiredDs){
+
+		int[] expiredExtensions = kernel.countExtensions(expiredDs, 1);
+		for(int n = 0; n < expiredExtensions.length; n += 2){
+			int file = expiredExtensions[n];
+			int expiredSupport = expiredExtensions[n + 1];
+
+			// 类似AA这种不检测
+			if(ProjectionMiner.isSelfExtension(currentSubseq, file)){
+				continue;
+			}
+
+			IntSequence newSubseq = currentSubseq.append(file);
+			Integer support = idFreSubsequences.get(newSubseq);
+
+			// 原来不频繁，只更新负边界
+			if(support == null){
+				support = borderSupports.get(newSubseq);
+				if(support == null){
+					continue;
+				}
+				if(support > expiredSupport){
+					borderSupports.put(newSubseq, support - expiredSupport);
+				}
+				else{
+					borderSupports.remove(newSubseq);
+				}
+				continue;
+			}
+
+			// 仍然频繁，继续在过期segment中投影
+			support -= expiredSupport;
+			if(support >= minSupport){
+				idFreSubsequences.put(newSubseq, support);
+				retract(newSubseq, kernel.project(expiredDs, newSubseq, file, expiredSupport));
+				continue;
+			}
+
+			// 不再频繁，移入负边界
+			idFreSubsequences.remove(newSubseq);
+			demotedSubsequences.add(newSubseq);
+			if(support > 0){
+				borderSupports.put(newSubseq, support);
+			}
+		}
+	}
+
+	/**
+	 * 删除以不再频繁的子序列为前缀的频繁子序列及负边界
+	 */
+	private void removeDescendants(){
+
+		if(demotedSubsequences.isEmpty()){
+			return;
+		}
+		removeDescendants(idFreSubsequences.keySet().iterator());
+		removeDescendants(borderSupports.keySet().iterator());
+	}
+
+	private void removeDescendants(Iterator<IntSequence> iterator){
+
+		while(iterator.hasNext()){
+			IntSequence subsequence = iterator.next();
+			for(int length = 1; length < subsequence.length(); length++){
+				if(demotedSubsequences.contains(subsequence.subSequence(0, length))){
+					iterator.remove();
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 过期的segment达到总数的一半时，删除过期的segment，segment下标前移
+	 * @return	删除的segment个数
+	 */
+	private int compactSegments(){
+
+		int removeNum = firstSegment;
+		if(removeNum == 0 || removeNum * 2 < idSegments.getSegmentNum()){
+			return 0;
+		}
+
+		idSegments.removeFirstSegments(removeNum);
+
+		LongList remainTimes = new LongList(segmentTimes.size() - removeNum);
+		for(int i = removeNum; i < segmentTimes.size(); i++){
+			remainTimes.add(segmentTimes.get(i));
+		}
+		segmentTimes = remainTimes;
+
+		// 窗口内不再出现的文件，不再保存其后缀
+		for(int file = 0; file < rootDs.length; file++){
+			if(rootDs[file] == null){
+				continue;
+			}
+			ProjectedDatabase remain = slice(rootDs[file], removeNum, Integer.MAX_VALUE);
+			if(remain.size() == 0){
+				rootDs[file] = null;
+				continue;
+			}
+			rootDs[file] = new ProjectedDatabase(remain.getSubsequence(), remain.getOccurTimes(), remain.size());
+			for(int i = 0; i < remain.size(); i++){
+				rootDs[file].addSuffix(remain.getSegment(i) - removeNum, remain.getOffset(i));
+			}
+		}
+
+		firstSegment = 0;
+		return removeNum;
+	}
+
+	/**
+	 * support会因过期而减少，父序列的最大support无法只在索引中更新，由所有频繁子序列重新判断closed
+	 */
+	@Override
+	protected void updateClosedFreSubsequences(){
+
+		maxSuperSupport.clear();
+		idClosedFreSubsequences.clear();
+		maxSeqLength = 0;
+
+		for(Map.Entry<IntSequence, Integer> entry: idFreSubsequences.entrySet()){
+			IntSequence subsequence = entry.getKey();
+			int length = subsequence.length();
+			maxSeqLength = Math.max(maxSeqLength, length);
+			if(length > 1){
+				updateMaxSupport(maxSuperSupport, subsequence.subSequence(1, length), entry.getValue());
+				updateMaxSupport(maxSuperSupport, subsequence.subSequence(0, length - 1), entry.getValue());
+			}
+		}
+
+		for(Map.Entry<IntSequence, Integer> entry: idFreSubsequences.entrySet()){
+			Integer superSupport = maxSuperSupport.get(entry.getKey());
+			if(superSupport == null || entry.getValue() > superSupport){
+				idClosedFreSubsequences.put(entry.getKey(), entry.getValue());
+			}
+		}
+
+		changedSubsequences = null;
+	}
+
+	/**
+	 * 清除所有状态，恢复初始状态
+	 */
+	@Override
+	public void clear(){
+		int maxSegments = this.maxSegments;
+		long maxMillis = this.maxMillis;
+		super.clear();
+		init();
+		this.maxSegments = maxSegments;
+		this.maxMillis = maxMillis;
+	}
+
+
+	/* 窗口参数的 getters and setters */
+
+	public int getMaxSegments() {
+		return maxSegments;
+	}
+
+	public void setMaxSegments(int maxSegments) {
+		this.maxSegments = maxSegments;
+	}
+
+	public long getMaxMillis() {
+		return maxMillis;
+	}
+
+	public void setMaxMillis(long maxMillis) {
+		this.maxMillis = maxMillis;
+	}
+
+
+	/* 滑动窗口状态的getters */
+
+	/**
+	 * 窗口内（未过期）的segment个数
+	 */
+	public int getLiveSegmentNum() {
+		return idSegments.getSegmentNum() - firstSegment;
+	}
+
+	public Map<String, HDFSRule> getRetractedRules() {
+		return retractedRules;
+	}
+}
@@ -0,0 +1,475 @@
+package cn.edu.zju.lau.cminer.io.hdfs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import cn.edu.zju.lau.cminer.model.hdfs.FileAccessLog;
+import cn.edu.zju.lau.utils.FileDictionary;
+import cn.edu.zju.lau.utils.IntList;
+import cn.edu.zju.lau.utils.LongList;
+import cn.edu.zju.lau.utils.TimestampDecoder;
+
+/**
+ * 流式读取HDFS Audit Log，依次返回每个OPEN操作访问的文件ID。
+ * 与 FileAccessLog.parse 相比：
+ * 		1. 日志文件分块映射到内存（mmap），每块只包含完整的日志行，不经过BufferedReader逐行复制；
+ * 		2. 直接在字节上查找 cmd= 和 src= 字段，非OPEN操作的日志行直接跳过，不创建任何对象；
+ * 		3. 文件路径在字节上查找已出现的路径（ByteStringInterner），只有第一次出现的路径才解码为字符串，并加入FileDictionary；
+ * 		4. 可选地按ugi、ip等字段区分会话，为每个访问给出会话ID。
+ *
+ * 日志行中只要包含 cmd= 和 src= 字段即视为有效，不再检查 dst=、perm= 字段。
+ *
+ * @author yuki
+ * @date 2013-12-06
+ */
+public class AuditLogReader implements Closeable {
+
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;	// 每次映射的字节数
+	private static final byte[] CMD_KEY = "cmd=".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] SRC_KEY = "src=".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] OPEN_CMD = "open".getBytes(StandardCharsets.US_ASCII);
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private long fileSize;
+	private long rangeEnd;				// 读取范围的结束位置，必须是日志行的起始位置或文件末尾
+	private int chunkSize;
+
+	private MappedByteBuffer chunk;		// 当前映射的日志块
+	private long chunkStart;			// 当前块在文件中的起始位置
+	private int chunkLimit;				// 当前块中最后一个完整日志行的结束位置
+	private int position;				// 下一个日志行在当前块中的起始位置
+	private int recordStart;			// 上一次next()返回的日志行在当前块中的起始位置
+	private TimestampDecoder timeDecoder;
+
+	private FileDictionary dictionary;
+	private ByteStringInterner fileInterner;	// 文件路径的字节 -> 文件ID
+	private byte[] cutCommonPrefix;		// 需要截断的文件名公共前缀
+
+	// 会话标识：由若干字段（如ugi、ip）的值组成，以\t连接，通过setSessionFields开启
+	private byte[][] sessionKeys;			// 组成会话标识的字段名，如 "ugi="
+	private ByteStringInterner sessionInterner;	// 会话标识的字节 -> 会话ID
+	private byte[] sessionBuffer;			// 拼接会话标识的临时缓冲区
+	private ByteBuffer sessionBufferView;
+	private int sessionId;					// 上一次next()返回的日志行的会话ID
+
+	private long lineNum;				// 已读取的日志行数
+	private long openNum;				// 已读取的OPEN操作数
+
+	public AuditLogReader(String filePath, FileDictionary dictionary) throws IOException{
+		this(filePath, dictionary, null, DEFAULT_CHUNK_SIZE);
+	}
+
+	public AuditLogReader(String filePath, FileDictionary dictionary, String cutCommonPrefix) throws IOException{
+		this(filePath, dictionary, cutCommonPrefix, DEFAULT_CHUNK_SIZE);
+	}
+
+	public AuditLogReader(String filePath, FileDictionary dictionary, String cutCommonPrefix, int chunkSize) throws IOException{
+		this(filePath, dictionary, cutCommonPrefix, chunkSize, 0, -1);
+	}
+
+	/**
+	 * 只读取文件中[rangeStart, rangeEnd)之间的日志行，两个位置都必须是日志行的起始位置（或文件末尾）
+	 * @param rangeEnd	小于0表示读取至文件末尾
+	 */
+	public AuditLogReader(String filePath, FileDictionary dictionary, String cutCommonPrefix, int chunkSize,
+			long rangeStart, long rangeEnd) throws IOException{
+
+		this.file = new RandomAccessFile(filePath, "r");
+		this.channel = file.getChannel();
+		this.fileSize = channel.size();
+		this.rangeEnd = rangeEnd < 0 ? fileSize : Math.min(rangeEnd, fileSize);
+		this.chunkSize = chunkSize;
+
+		this.chunkStart = rangeStart;
+		this.chunkLimit = 0;
+		this.position = 0;
+		this.recordStart = -1;
+		this.timeDecoder = new TimestampDecoder();
+
+		this.dictionary = dictionary;
+		this.fileInterner = new ByteStringInterner(dictionary);
+		this.sessionId = -1;
+		this.cutCommonPrefix = (cutCommonPrefix == null || cutCommonPrefix.isEmpty()) ? null : cutCommonPrefix.getBytes(StandardCharsets.UTF_8);
+
+		this.lineNum = 0;
+		this.openNum = 0;
+	}
+
+	/**
+	 * 读取下一个OPEN操作访问的文件ID
+	 * @return	文件ID，读取结束返回-1
+	 * @throws IOException
+	 */
+	public int next() throws IOException{
+
+		while(true){
+
+			// 当前块已读完，映射下一块
+			if(position >= chunkLimit && !nextChunk()){
+				return -1;
+			}
+
+			int lineStart = position;
+			int lineEnd = indexOf((byte) '\n', lineStart, chunkLimit);
+			int fileId = parseLine(lineStart, lineEnd);
+			position = lineEnd + 1;
+
+			if(fileId >= 0){
+				recordStart = lineStart;
+				return fileId;
+			}
+		}
+	}
+
+	/**
+	 * 获取上一次next()返回的日志行的毫秒时间戳，只在调用时才解码日志行开头的时间
+	 * @return	没有日志行或时间格式不正确时返回FileAccessLog.TIME_UNKNOWN
+	 */
+	public long getTimeMillis(){
+
+		if(recordStart < 0){
+			return FileAccessLog.TIME_UNKNOWN;
+		}
+		try{
+			return timeDecoder.decode(chunk, recordStart);
+		}
+		catch(IllegalArgumentException e){
+			return FileAccessLog.TIME_UNKNOWN;
+		}
+	}
+
+	/**
+	 * 按字段值区分会话（客户端），例如 setSessionFields("ugi", "ip")，之后可通过getSessionId获取每个访问的会话ID。
+	 * 缺少其中任何一个字段的日志行将被跳过。
+	 * @param fields	字段名，不含 "="
+	 */
+	public void setSessionFields(String... fields){
+
+		sessionKeys = new byte[fields.length][];
+		for(int i = 0; i < fields.length; i++){
+			sessionKeys[i] = (fields[i] + "=").getBytes(StandardCharsets.US_ASCII);
+		}
+		sessionInterner = new ByteStringInterner(new FileDictionary());
+		sessionBuffer = new byte[256];
+		sessionBufferView = ByteBuffer.wrap(sessionBuffer);
+	}
+
+	/**
+	 * 获取上一次next()返回的访问所属的会话ID，会话标识可通过getSessionDictionary还原
+	 * @return	没有调用setSessionFields时返回-1
+	 */
+	public int getSessionId(){
+		return sessionId;
+	}
+
+	/**
+	 * 会话ID <-> 会话标识（字段值以\t连接）
+	 * @return
+	 */
+	public FileDictionary getSessionDictionary(){
+		return sessionInterner == null ? null : sessionInterner.getDictionary();
+	}
+
+	/**
+	 * 读取剩余的所有OPEN操作访问的文件ID
+	 * @return
+	 * @throws IOException
+	 */
+	public IntList readAll() throws IOException{
+
+		IntList fileIds = new IntList(1024);
+		int fileId;
+		while((fileId = next()) >= 0){
+			fileIds.add(fileId);
+		}
+		return fileIds;
+	}
+
+	/**
+	 * 读取剩余的所有OPEN操作访问的文件ID，同时将每个访问的时间戳追加至timestamps
+	 * @param timestamps
+	 * @return
+	 * @throws IOException
+	 */
+	public IntList readAll(LongList timestamps) throws IOException{
+
+		IntList fileIds = new IntList(1024);
+		int fileId;
+		while((fileId = next()) >= 0){
+			fileIds.add(fileId);
+			timestamps.add(getTimeMillis());
+		}
+		return fileIds;
+	}
+
+	/**
+	 * 获取position处或之后第一个日志行的起始位置，用于将文件划分为多个读取范围
+	 * @param filePath
+	 * @param position
+	 * @return	日志行的起始位置，之后没有日志行时返回文件大小
+	 * @throws IOException
+	 */
+	public static long nextLineStart(String filePath, long position) throws IOException{
+
+		RandomAccessFile file = new RandomAccessFile(filePath, "r");
+		try{
+			long fileSize = file.length();
+			if(position <= 0){
+				return 0;
+			}
+
+			// 从前一个字节开始查找换行符，前一个字节就是换行符时position即为行首
+			byte[] buffer = new byte[8192];
+			long current = position - 1;
+			while(current < fileSize){
+				file.seek(current);
+				int read = file.read(buffer);
+				for(int i = 0; i < read; i++){
+					if(buffer[i] == '\n'){
+						return current + i + 1;
+					}
+				}
+				current += read;
+			}
+			return fileSize;
+		}
+		finally{
+			file.close();
+		}
+	}
+
+	/**
+	 * 映射下一个日志块，块的结尾截断至最后一个换行符处，被截断的日志行在下一块中读取。
+	 * 一个日志行比块还长时，扩大映射范围直至包含完整的日志行。
+	 * @return	文件已读完返回false
+	 */
+	private boolean nextChunk() throws IOException{
+
+		long start = chunkStart + chunkLimit;
+		if(start >= rangeEnd){
+			return false;
+		}
+
+		long mapSize = Math.min(chunkSize, rangeEnd - start);
+		while(true){
+			chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, mapSize);
+
+			// 已映射至读取范围的末尾，最后一行可以没有换行符
+			if(start + mapSize == rangeEnd){
+				chunkLimit = (int) mapSize;
+				break;
+			}
+
+			int lastLineEnd = lastIndexOf((byte) '\n', (int) mapSize);
+			if(lastLineEnd >= 0){
+				chunkLimit = lastLineEnd + 1;
+				break;
+			}
+			if(mapSize == Integer.MAX_VALUE){
+				throw new IOException("Log line too long at position " + start);
+			}
+			mapSize = Math.min(Math.min(mapSize * 2, Integer.MAX_VALUE), rangeEnd - start);
+		}
+
+		chunkStart = start;
+		position = 0;
+		recordStart = -1;
+		return true;
+	}
+
+	/**
+	 * 解析[start, end)之间的日志行，只查找 cmd= 和 src= 字段
+	 * @return	OPEN操作访问的文件ID，其他操作或无效日志行返回-1
+	 */
+	private int parseLine(int start, int end){
+
+		lineNum++;
+
+		// 去掉行尾的\r
+		if(end > start && chunk.get(end - 1) == '\r'){
+			end--;
+		}
+
+		// 跳过日志行开头的时间，time: ugi= ...
+		int infoStart = indexOfInfo(start, end);
+
+		// 查找cmd字段，只提取只读的OPEN操作
+		int cmdStart = findField(CMD_KEY, infoStart, end);
+		if(cmdStart < 0){
+			return -1;
+		}
+		int cmdEnd = indexOf((byte) '\t', cmdStart, end);
+		if(!equalsIgnoreCase(OPEN_CMD, cmdStart, cmdEnd)){
+			return -1;
+		}
+
+		// 查找src字段
+		int srcStart = findField(SRC_KEY, cmdEnd, end);
+		if(srcStart < 0){
+			return -1;
+		}
+		int srcEnd = indexOf((byte) '\t', srcStart, end);
+
+		// 截断文件名的公共前缀
+		if(cutCommonPrefix != null && startsWith(cutCommonPrefix, srcStart, srcEnd)){
+			srcStart += cutCommonPrefix.length;
+		}
+
+		// 查找组成会话标识的字段
+		if(sessionKeys != null && !parseSession(infoStart, end)){
+			return -1;
+		}
+
+		openNum++;
+		return fileInterner.intern(chunk, srcStart, srcEnd);
+	}
+
+	/**
+	 * 将组成会话标识的字段值以\t连接，获取其会话ID
+	 * @return	缺少某个字段时返回false
+	 */
+	private boolean parseSession(int start, int end){
+
+		int length = 0;
+		for(int k = 0; k < sessionKeys.length; k++){
+			int valueStart = findField(sessionKeys[k], start, end);
+			if(valueStart < 0){
+				return false;
+			}
+			int valueEnd = indexOf((byte) '\t', valueStart, end);
+
+			// 扩大缓冲区
+			int required = length + (valueEnd - valueStart) + 1;
+			if(required > sessionBuffer.length){
+				sessionBuffer = Arrays.copyOf(sessionBuffer, Math.max(required, sessionBuffer.length * 2));
+				sessionBufferView = ByteBuffer.wrap(sessionBuffer);
+			}
+
+			if(k > 0){
+				sessionBuffer[length++] = '\t';
+			}
+			for(int i = valueStart; i < valueEnd; i++){
+				sessionBuffer[length++] = chunk.get(i);
+			}
+		}
+
+		sessionId = sessionInterner.intern(sessionBufferView, 0, length);
+		return true;
+	}
+
+	/**
+	 * 日志行中 "time: " 之后第一个字段的起始位置，没有时间时返回start
+	 */
+	private int indexOfInfo(int start, int end){
+
+		for(int i = start; i < end - 1; i++){
+			if(chunk.get(i) == ':' && chunk.get(i + 1) == ' '){
+				return i + 2;
+			}
+			if(chunk.get(i) == '\t'){
+				break;
+			}
+		}
+		return start;
+	}
+
+	/**
+	 * 在[start, end)中查找以key开头的字段（字段之间以\t分隔），返回字段值的起始位置，不存在返回-1
+	 */
+	private int findField(byte[] key, int start, int end){
+
+		int fieldStart = start;
+		while(fieldStart < end){
+			if(startsWith(key, fieldStart, end)){
+				return fieldStart + key.length;
+			}
+			fieldStart = indexOf((byte) '\t', fieldStart, end) + 1;
+		}
+		return -1;
+	}
+
+	private int indexOf(byte target, int start, int end){
+
+		for(int i = start; i < end; i++){
+			if(chunk.get(i) == target){
+				return i;
+			}
+		}
+		return end;
+	}
+
+	private int lastIndexOf(byte target, int end){
+
+		for(int i = end - 1; i >= 0; i--){
+			if(chunk.get(i) == target){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean startsWith(byte[] key, int start, int end){
+
+		if(end - start < key.length){
+			return false;
+		}
+		for(int i = 0; i < key.length; i++){
+			if(chunk.get(start + i) != key[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean equalsIgnoreCase(byte[] lowerCase, int start, int end){
+
+		if(end - start != lowerCase.length){
+			return false;
+		}
+		for(int i = 0; i < lowerCase.length; i++){
+			if((chunk.get(start + i) | 0x20) != lowerCase[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException{
+		chunk = null;
+		channel.close();
+		file.close();
+	}
+
+	@Override
+	public String toString(){
+		return "AuditLogReader[lines=" + lineNum + ", open=" + openNum + ", files=" + dictionary.size()
+				+ ", position=" + (chunkStart + position) + "/" + rangeEnd + "]";
+	}
+
+
+	/* getters */
+
+	public FileDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public long getLineNum() {
+		return lineNum;
+	}
+
+	public long getOpenNum() {
+		return openNum;
+	}
+
+	public long getFileSize() {
+		return fileSize;
+	}
+}
@@ -0,0 +1,112 @@
+package cn.edu.zju.lau.cminer.io.hdfs;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import cn.edu.zju.lau.utils.FileDictionary;
+
+/**
+ * 在字节上查找已出现的字符串（文件路径、会话标识等），返回其在FileDictionary中的ID。
+ * 开放寻址，只有第一次出现的字符串才解码并加入字典，之后的查找不创建任何对象。
+ *
+ * @author yuki
+ * @date 2013-12-09
+ */
+class ByteStringInterner {
+
+	private FileDictionary dictionary;
+
+	// 字节 -> ID，slotIds中存储 ID + 1，0表示空位
+	private int[] slotHashes;
+	private int[] slotIds;
+	private byte[][] slotNames;
+	private int slotUsed;
+
+	ByteStringInterner(FileDictionary dictionary){
+		this.dictionary = dictionary;
+		this.slotHashes = new int[1024];
+		this.slotIds = new int[1024];
+		this.slotNames = new byte[1024][];
+		this.slotUsed = 0;
+	}
+
+	/**
+	 * 获取buffer中[start, end)之间的字节对应的ID（绝对位置，不改变缓冲区的position）
+	 */
+	int intern(ByteBuffer buffer, int start, int end){
+
+		int hash = 1;
+		for(int i = start; i < end; i++){
+			hash = 31 * hash + buffer.get(i);
+		}
+
+		int mask = slotIds.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while(slotIds[slot] != 0){
+			if(slotHashes[slot] == hash && equalsBytes(slotNames[slot], buffer, start, end)){
+				return slotIds[slot] - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		// 新的字符串
+		byte[] name = new byte[end - start];
+		for(int i = 0; i < name.length; i++){
+			name[i] = buffer.get(start + i);
+		}
+		int id = dictionary.intern(new String(name, StandardCharsets.UTF_8));
+
+		slotHashes[slot] = hash;
+		slotIds[slot] = id + 1;
+		slotNames[slot] = name;
+		if(++slotUsed * 2 > slotIds.length){
+			rehash();
+		}
+		return id;
+	}
+
+	/**
+	 * 扩大开放寻址表
+	 */
+	private void rehash(){
+
+		int[] oldHashes = slotHashes;
+		int[] oldIds = slotIds;
+		byte[][] oldNames = slotNames;
+
+		slotHashes = new int[oldIds.length * 2];
+		slotIds = new int[oldIds.length * 2];
+		slotNames = new byte[oldIds.length * 2][];
+
+		int mask = slotIds.length - 1;
+		for(int i = 0; i < oldIds.length; i++){
+			if(oldIds[i] == 0){
+				continue;
+			}
+			int slot = (oldHashes[i] ^ (oldHashes[i] >>> 16)) & mask;
+			while(slotIds[slot] != 0){
+				slot = (slot + 1) & mask;
+			}
+			slotHashes[slot] = oldHashes[i];
+			slotIds[slot] = oldIds[i];
+			slotNames[slot] = oldNames[i];
+		}
+	}
+
+	private static boolean equalsBytes(byte[] name, ByteBuffer buffer, int start, int end){
+
+		if(end - start != name.length){
+			return false;
+		}
+		for(int i = 0; i < name.length; i++){
+			if(buffer.get(start + i) != name[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	FileDictionary getDictionary() {
+		return dictionary;
+	}
+}
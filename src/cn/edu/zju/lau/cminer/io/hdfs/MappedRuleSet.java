@@ -0,0 +1,386 @@
+package cn.edu.zju.lau.cminer.io.hdfs;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+
+/**
+ * 只读映射（mmap）RuleSetWriter写出的二进制规则集文件，不把规则读入堆中：
+ * 加载时只检查文件头，查找时直接在映射的字节上二分查找，多个进程映射同一个文件时共享同一份page cache。
+ *
+ * 文件格式（版本2，大端序）：
+ * 		文件头（40字节）：	magic "CMRS" | version | 字符串个数 | 记录条数 | 最长history长度H | 保留 | 字符串字典段位置(long) | 规则记录段位置(long)
+ * 		字符串字典段：		每个字符串的起始位置 int[字符串个数 + 1] | 按UTF-8字节排序的所有文件路径
+ * 		规则记录段：			每个prediction一条记录，H + 3 个int：history的文件ID（不足H补-1）| prediction的文件ID | support | confidence的float bits，
+ * 							按history的文件ID序列排序（短的history在前），同一个history的记录相邻，按prediction的排名排序
+ * 版本1中每个history只有一条记录，是版本2的特例，同样可以读取。
+ *
+ * 只使用绝对位置读取，不改变缓冲区的position，一个实例可以被多个线程共享。
+ *
+ * @author yuki
+ * @date 2013-12-12
+ */
+public class MappedRuleSet {
+
+	static final int MAGIC = 0x434D5253;	// "CMRS"
+	static final int VERSION = 2;
+	static final int MIN_VERSION = 1;		// 可以读取的最低版本
+	static final int HEADER_SIZE = 40;
+	static final int RECORD_FIXED_INTS = 3;	// prediction, support, confidence
+	static final int NO_FILE = -1;			// history不足最长长度时的填充
+
+	private String filePath;
+	private ByteBuffer buffer;
+
+	private int stringNum;
+	private int recordNum;
+	private int maxHistoryLength;
+	private int stringOffsetsStart;		// 字符串起始位置表在文件中的位置
+	private int stringDataStart;		// 字符串数据在文件中的位置
+	private int ruleSectionStart;		// 规则记录段在文件中的位置
+	private int recordSize;				// 每条规则记录的字节数
+
+	private MappedRuleSet(String filePath, ByteBuffer buffer) throws IOException{
+
+		this.filePath = filePath;
+		this.buffer = buffer;
+
+		if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC){
+			throw new IOException("Not a rule set file: " + filePath);
+		}
+		int version = buffer.getInt(4);
+		if(version < MIN_VERSION || version > VERSION){
+			throw new IOException("Unsupported rule set version " + version + ": " + filePath);
+		}
+
+		this.stringNum = buffer.getInt(8);
+		this.recordNum = buffer.getInt(12);
+		this.maxHistoryLength = buffer.getInt(16);
+		long stringSectionOffset = buffer.getLong(24);
+		long ruleSectionOffset = buffer.getLong(32);
+
+		this.stringOffsetsStart = (int) stringSectionOffset;
+		this.stringDataStart = stringOffsetsStart + 4 * (stringNum + 1);
+		this.ruleSectionStart = (int) ruleSectionOffset;
+		this.recordSize = 4 * (maxHistoryLength + RECORD_FIXED_INTS);
+
+		if(ruleSectionOffset + (long) recordNum * recordSize > buffer.limit()){
+			throw new IOException("Truncated rule set file: " + filePath);
+		}
+	}
+
+	/**
+	 * 只读映射规则集文件
+	 * @param filePath
+	 * @return
+	 * @throws IOException	文件不存在、格式或版本不正确
+	 */
+	public static MappedRuleSet load(String filePath) throws IOException{
+
+		RandomAccessFile file = new RandomAccessFile(filePath, "r");
+		try{
+			FileChannel channel = file.getChannel();
+			long fileSize = channel.size();
+			if(fileSize > Integer.MAX_VALUE){
+				throw new IOException("Rule set file larger than 2GB: " + filePath);
+			}
+
+			// 映射在通道关闭后仍然有效
+			return new MappedRuleSet(filePath, channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize));
+		}
+		finally{
+			file.close();
+		}
+	}
+
+	/**
+	 * 查找history对应的规则
+	 * @param history
+	 * @return	规则，不存在时返回null
+	 */
+	public HDFSRule getRule(List<String> history){
+
+		int index = findRule(history);
+		return index < 0 ? null : getRule(index);
+	}
+
+	/**
+	 * 查找history对应的规则的下标
+	 * @param history
+	 * @return	规则第一条记录（排名第一的prediction）的下标，不存在时返回-1
+	 */
+	public int findRule(List<String> history){
+
+		if(history.size() == 0 || history.size() > maxHistoryLength){
+			return -1;
+		}
+		int[] historyIds = new int[maxHistoryLength];
+		for(int i = 0; i < maxHistoryLength; i++){
+			historyIds[i] = i < history.size() ? findString(history.get(i)) : NO_FILE;
+			if(i < history.size() && historyIds[i] < 0){
+				return -1;
+			}
+		}
+		return findRule(historyIds, history.size());
+	}
+
+	/**
+	 * 查找由文件ID组成的history对应的规则的下标
+	 * @param historyIds	history的文件ID
+	 * @param length		history的长度，只使用historyIds的前length个元素
+	 * @return	规则第一条记录（排名第一的prediction）的下标，不存在时返回-1
+	 */
+	public int findRule(int[] historyIds, int length){
+
+		if(length == 0 || length > maxHistoryLength){
+			return -1;
+		}
+		int low = lowerBound(historyIds, length);
+		return low < recordNum && compareRecordHistory(low, historyIds, length) == 0 ? low : -1;
+	}
+
+	/**
+	 * 二分查找第一条history不小于historyIds的记录。history较短的记录排在前面，
+	 * 因此以historyIds为前缀的记录（如果有）从返回的下标开始相邻排列，第一条就是history恰好为historyIds的规则（如果有）。
+	 * @param historyIds	history的文件ID
+	 * @param length		只使用historyIds的前length个元素，不超过最长history长度
+	 * @return	记录的下标，所有记录都小于historyIds时返回记录条数
+	 */
+	public int lowerBound(int[] historyIds, int length){
+
+		int low = 0;
+		int high = recordNum;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(compareRecordHistory(middle, historyIds, length) < 0){
+				low = middle + 1;
+			}
+			else{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 从第index条记录开始，history相同的记录条数，即规则的prediction个数
+	 * @param index	规则第一条记录的下标
+	 * @return
+	 */
+	public int getPredictionNum(int index){
+
+		int end = index + 1;
+		while(end < recordNum && sameHistory(index, end)){
+			end++;
+		}
+		return end - index;
+	}
+
+	private boolean sameHistory(int a, int b){
+
+		int positionA = ruleSectionStart + a * recordSize;
+		int positionB = ruleSectionStart + b * recordSize;
+		for(int i = 0; i < maxHistoryLength; i++){
+			int file = buffer.getInt(positionA + 4 * i);
+			if(file != buffer.getInt(positionB + 4 * i)){
+				return false;
+			}
+			if(file == NO_FILE){
+				break;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 第index条规则的history与historyIds比较，缺少的部分视为-1
+	 */
+	private int compareRecordHistory(int index, int[] historyIds, int length){
+
+		int position = ruleSectionStart + index * recordSize;
+		for(int i = 0; i < maxHistoryLength; i++){
+			int a = buffer.getInt(position + 4 * i);
+			int b = i < length ? historyIds[i] : NO_FILE;
+			if(a != b){
+				return a < b ? -1 : 1;
+			}
+			if(a == NO_FILE){
+				return 0;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * 按文件ID的字典序比较两个history，-1（已结束）小于任何文件ID
+	 */
+	static int compareHistory(int[] a, int aOffset, int[] b, int bOffset, int length){
+
+		for(int i = 0; i < length; i++){
+			if(a[aOffset + i] != b[bOffset + i]){
+				return a[aOffset + i] < b[bOffset + i] ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * 在字符串字典中二分查找文件路径
+	 * @param path
+	 * @return	文件ID，不存在时返回-1
+	 */
+	public int findString(String path){
+
+		byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = stringNum - 1;
+		while(low <= high){
+			int middle = (low + high) >>> 1;
+			int cmp = compareString(middle, bytes);
+			if(cmp < 0){
+				low = middle + 1;
+			}
+			else if(cmp > 0){
+				high = middle - 1;
+			}
+			else{
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 第id个字符串与bytes按无符号字节的字典序比较
+	 */
+	private int compareString(int id, byte[] bytes){
+
+		int start = stringDataStart + buffer.getInt(stringOffsetsStart + 4 * id);
+		int end = stringDataStart + buffer.getInt(stringOffsetsStart + 4 * (id + 1));
+		int length = Math.min(end - start, bytes.length);
+		for(int i = 0; i < length; i++){
+			int diff = (buffer.get(start + i) & 0xFF) - (bytes[i] & 0xFF);
+			if(diff != 0){
+				return diff;
+			}
+		}
+		return (end - start) - bytes.length;
+	}
+
+	/**
+	 * 获取文件ID对应的文件路径
+	 * @param id
+	 * @return
+	 */
+	public String getString(int id){
+
+		int start = stringDataStart + buffer.getInt(stringOffsetsStart + 4 * id);
+		int end = stringDataStart + buffer.getInt(stringOffsetsStart + 4 * (id + 1));
+		byte[] bytes = new byte[end - start];
+		for(int i = 0; i < bytes.length; i++){
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 获取从第index条记录开始的规则，包含history相同的所有prediction，还原文件路径
+	 * @param index	规则第一条记录的下标
+	 * @return
+	 */
+	public HDFSRule getRule(int index){
+
+		int length = getHistoryLength(index);
+		List<String> history = new ArrayList<String>(length);
+		for(int i = 0; i < length; i++){
+			history.add(getString(getHistoryId(index, i)));
+		}
+
+		HDFSRule rule = new HDFSRule(history, getString(getPredictionId(index)), getSupport(index), getConfidence(index));
+		int predictionNum = getPredictionNum(index);
+		for(int i = index + 1; i < index + predictionNum; i++){
+			rule.addPrediction(getString(getPredictionId(i)), getSupport(i), getConfidence(i));
+		}
+		return rule;
+	}
+
+	/**
+	 * 将所有规则读入堆中，与CMinerHDFS.getRules()的格式相同："a|b|c" -> 规则
+	 * @return
+	 */
+	public Map<String, HDFSRule> toRules(){
+
+		Map<String, HDFSRule> rules = new HashMap<String, HDFSRule>(recordNum * 2);
+		for(int index = 0; index < recordNum; index += getPredictionNum(index)){
+			HDFSRule rule = getRule(index);
+			StringBuilder historyStr = new StringBuilder();
+			for(String path: rule.getHistory()){
+				if(historyStr.length() > 0){
+					historyStr.append("|");
+				}
+				historyStr.append(path);
+			}
+			rules.put(historyStr.toString(), rule);
+		}
+		return rules;
+	}
+
+
+	/* 规则记录的字段，不创建对象 */
+
+	public int getHistoryLength(int index){
+
+		int position = ruleSectionStart + index * recordSize;
+		int length = 0;
+		while(length < maxHistoryLength && buffer.getInt(position + 4 * length) != NO_FILE){
+			length++;
+		}
+		return length;
+	}
+
+	public int getHistoryId(int index, int i){
+		return buffer.getInt(ruleSectionStart + index * recordSize + 4 * i);
+	}
+
+	public int getPredictionId(int index){
+		return buffer.getInt(ruleSectionStart + index * recordSize + 4 * maxHistoryLength);
+	}
+
+	public int getSupport(int index){
+		return buffer.getInt(ruleSectionStart + index * recordSize + 4 * (maxHistoryLength + 1));
+	}
+
+	public float getConfidence(int index){
+		return Float.intBitsToFloat(buffer.getInt(ruleSectionStart + index * recordSize + 4 * (maxHistoryLength + 2)));
+	}
+
+
+	/* getters */
+
+	public String getFilePath() {
+		return filePath;
+	}
+
+	/**
+	 * 记录条数，即所有规则的prediction个数之和
+	 */
+	public int size() {
+		return recordNum;
+	}
+
+	public int getStringNum() {
+		return stringNum;
+	}
+
+	public int getMaxHistoryLength() {
+		return maxHistoryLength;
+	}
+}
@@ -0,0 +1,207 @@
+package cn.edu.zju.lau.cminer.io.hdfs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import cn.edu.zju.lau.utils.FileDictionary;
+import cn.edu.zju.lau.utils.IntList;
+
+/**
+ * 多线程读取同一个HDFS Audit Log：
+ * 		1. 按字节将文件划分为threadNum个范围，范围的边界对齐到日志行的起始位置；
+ * 		2. 每个线程用AuditLogReader读取一个范围，文件ID由线程自己的局部字典分配；
+ * 		3. 按文件中的位置顺序合并各范围的结果，局部ID依次转换为全局字典中的ID。
+ *
+ * 局部字典按第一次出现的顺序分配ID，依次合并后，全局ID与单线程顺序读取得到的ID完全相同。
+ *
+ * @author yuki
+ * @date 2013-12-07
+ */
+public class ParallelAuditLogLoader {
+
+	private static final long MIN_RANGE_SIZE = 1024 * 1024;	// 每个读取范围的最小字节数，避免小文件被切得过碎
+
+	private String filePath;
+	private String cutCommonPrefix;		// 需要截断的文件名公共前缀
+	private int threadNum;				// 读取线程数
+
+	public ParallelAuditLogLoader(String filePath, String cutCommonPrefix){
+		this(filePath, cutCommonPrefix, Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelAuditLogLoader(String filePath, String cutCommonPrefix, int threadNum){
+		this.filePath = filePath;
+		this.cutCommonPrefix = cutCommonPrefix;
+		this.threadNum = threadNum;
+	}
+
+	/**
+	 * 读取所有OPEN操作访问的文件ID，按日志中的顺序排列
+	 * @param dictionary	文件路径 <-> 文件ID，新出现的文件路径加入其中
+	 * @return
+	 * @throws IOException
+	 */
+	public IntList loadFileIds(FileDictionary dictionary) throws IOException{
+
+		long[] boundaries = splitRanges();
+		int rangeNum = boundaries.length - 1;
+
+		// 只有一个范围时直接读取
+		if(rangeNum <= 1){
+			AuditLogReader reader = new AuditLogReader(filePath, dictionary, cutCommonPrefix);
+			try{
+				return reader.readAll();
+			}
+			finally{
+				reader.close();
+			}
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadNum, rangeNum));
+		try{
+			List<Future<RangeResult>> futures = new ArrayList<Future<RangeResult>>();
+			for(int i = 0; i < rangeNum; i++){
+				final long rangeStart = boundaries[i];
+				final long rangeEnd = boundaries[i + 1];
+
+				futures.add(executor.submit(new Callable<RangeResult>() {
+					@Override
+					public RangeResult call() throws IOException {
+						FileDictionary localDictionary = new FileDictionary();
+						AuditLogReader reader = new AuditLogReader(filePath, localDictionary, cutCommonPrefix,
+								AuditLogReader.DEFAULT_CHUNK_SIZE, rangeStart, rangeEnd);
+						try{
+							return new RangeResult(reader.readAll(), localDictionary);
+						}
+						finally{
+							reader.close();
+						}
+					}
+				}));
+			}
+
+			// 按范围顺序合并，局部ID转换为全局ID
+			IntList fileIds = null;
+			for(Future<RangeResult> future: futures){
+				RangeResult result = future.get();
+
+				int[] local2Global = new int[result.dictionary.size()];
+				for(int localId = 0; localId < local2Global.length; localId++){
+					local2Global[localId] = dictionary.intern(result.dictionary.getName(localId));
+				}
+
+				if(fileIds == null){
+					fileIds = new IntList(result.fileIds.size() * rangeNum);
+				}
+				for(int i = 0; i < result.fileIds.size(); i++){
+					fileIds.add(local2Global[result.fileIds.get(i)]);
+				}
+			}
+			return fileIds;
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while loading " + filePath);
+		}
+		catch(ExecutionException e){
+			if(e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException("Failed to load " + filePath, e.getCause());
+		}
+		finally{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * 读取所有OPEN操作访问的文件路径，可直接作为CMinerHDFS.setInputSequence的输入，相同的路径共用一个字符串对象
+	 * @return
+	 * @throws IOException
+	 */
+	public List<String> loadPaths() throws IOException{
+
+		FileDictionary dictionary = new FileDictionary();
+		IntList fileIds = loadFileIds(dictionary);
+
+		List<String> paths = new ArrayList<String>(fileIds.size());
+		for(int i = 0; i < fileIds.size(); i++){
+			paths.add(dictionary.getName(fileIds.get(i)));
+		}
+		return paths;
+	}
+
+	/**
+	 * 将文件按字节均分为threadNum个范围，边界对齐到日志行的起始位置，去掉重复的边界
+	 * @return	[0, b1, b2, ..., fileSize]
+	 */
+	public long[] splitRanges() throws IOException{
+
+		long fileSize = new File(filePath).length();
+		int rangeNum = (int) Math.max(1, Math.min(threadNum, fileSize / MIN_RANGE_SIZE));
+
+		long[] boundaries = new long[rangeNum + 1];
+		int boundaryNum = 1;
+		boundaries[0] = 0;
+		for(int i = 1; i < rangeNum; i++){
+			long boundary = AuditLogReader.nextLineStart(filePath, fileSize / rangeNum * i);
+			if(boundary > boundaries[boundaryNum - 1] && boundary < fileSize){
+				boundaries[boundaryNum++] = boundary;
+			}
+		}
+		boundaries[boundaryNum++] = fileSize;
+
+		long[] result = new long[boundaryNum];
+		System.arraycopy(boundaries, 0, result, 0, boundaryNum);
+		return result;
+	}
+
+	/**
+	 * 一个读取范围的结果：局部文件ID序列及局部字典
+	 */
+	private static class RangeResult {
+
+		private IntList fileIds;
+		private FileDictionary dictionary;
+
+		RangeResult(IntList fileIds, FileDictionary dictionary){
+			this.fileIds = fileIds;
+			this.dictionary = dictionary;
+		}
+	}
+
+
+	/* getters and setters */
+
+	public String getFilePath() {
+		return filePath;
+	}
+
+	public void setFilePath(String filePath) {
+		this.filePath = filePath;
+	}
+
+	public String getCutCommonPrefix() {
+		return cutCommonPrefix;
+	}
+
+	public void setCutCommonPrefix(String cutCommonPrefix) {
+		this.cutCommonPrefix = cutCommonPrefix;
+	}
+
+	public int getThreadNum() {
+		return threadNum;
+	}
+
+	public void setThreadNum(int threadNum) {
+		this.threadNum = threadNum;
+	}
+}
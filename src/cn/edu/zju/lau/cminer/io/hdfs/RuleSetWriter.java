@@ -0,0 +1,194 @@
+package cn.edu.zju.lau.cminer.io.hdfs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSPrediction;
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+
+/**
+ * 将关联规则（CMinerHDFS.getRules()）写为二进制规则集文件，文件格式见MappedRuleSet。
+ * 		1. 所有文件路径按UTF-8字节排序后编号，写入字符串字典段；
+ * 		2. 规则的每个prediction写为一条定长记录：history的文件ID（不足最长history的部分补-1）、prediction的文件ID、support、confidence，
+ * 		   记录按history的文件ID序列排序，同一个history的记录相邻，按prediction的排名排序。
+ *
+ * 先写入同目录下的临时文件，写完后再替换目标文件，正在映射旧文件的进程不会读到写了一半的内容。
+ *
+ * @author yuki
+ * @date 2013-12-12
+ */
+public class RuleSetWriter {
+
+	private RuleSetWriter(){
+
+	}
+
+	/**
+	 * 将关联规则写入filePath
+	 * @param rules
+	 * @param filePath
+	 * @throws IOException
+	 */
+	public static void write(Map<String, HDFSRule> rules, String filePath) throws IOException{
+		write(rules.values(), filePath);
+	}
+
+	/**
+	 * 将关联规则写入filePath
+	 * @param rules
+	 * @param filePath
+	 * @throws IOException
+	 */
+	public static void write(Collection<HDFSRule> rules, String filePath) throws IOException{
+
+		// 字符串字典：所有history、prediction中的文件路径，按UTF-8字节排序
+		Map<String, byte[]> pathBytes = new HashMap<String, byte[]>();
+		int maxHistoryLength = 0;
+		for(HDFSRule rule: rules){
+			for(String path: rule.getHistory()){
+				addPath(pathBytes, path);
+			}
+			for(HDFSPrediction prediction: rule.getPredictions()){
+				addPath(pathBytes, prediction.getPrediction());
+			}
+			maxHistoryLength = Math.max(maxHistoryLength, rule.getHistory().size());
+		}
+
+		List<Map.Entry<String, byte[]>> paths = new ArrayList<Map.Entry<String, byte[]>>(pathBytes.entrySet());
+		Collections.sort(paths, new Comparator<Map.Entry<String, byte[]>>() {
+			@Override
+			public int compare(Map.Entry<String, byte[]> a, Map.Entry<String, byte[]> b) {
+				return compareBytes(a.getValue(), b.getValue());
+			}
+		});
+		List<byte[]> strings = new ArrayList<byte[]>(paths.size());
+		Map<String, Integer> path2Id = new HashMap<String, Integer>();
+		for(Map.Entry<String, byte[]> path: paths){
+			path2Id.put(path.getKey(), strings.size());
+			strings.add(path.getValue());
+		}
+
+		// 规则记录：[history0, history1, ..., -1, prediction, support, confidence]，按history排序，排序是稳定的，prediction的排名不变
+		final int recordLength = maxHistoryLength + MappedRuleSet.RECORD_FIXED_INTS;
+		List<int[]> records = new ArrayList<int[]>(rules.size());
+		for(HDFSRule rule: rules){
+			for(HDFSPrediction prediction: rule.getPredictions()){
+				int[] record = new int[recordLength];
+				Arrays.fill(record, 0, maxHistoryLength, MappedRuleSet.NO_FILE);
+				for(int i = 0; i < rule.getHistory().size(); i++){
+					record[i] = path2Id.get(rule.getHistory().get(i));
+				}
+				record[maxHistoryLength] = path2Id.get(prediction.getPrediction());
+				record[maxHistoryLength + 1] = prediction.getSupport();
+				record[maxHistoryLength + 2] = Float.floatToIntBits(prediction.getConfidence());
+				records.add(record);
+			}
+		}
+		final int historyLength = maxHistoryLength;
+		Collections.sort(records, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] a, int[] b) {
+				return MappedRuleSet.compareHistory(a, 0, b, 0, historyLength);
+			}
+		});
+
+		// 写入临时文件
+		File target = new File(filePath).getAbsoluteFile();
+		File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+		try{
+			long stringSectionOffset = MappedRuleSet.HEADER_SIZE;
+			long stringBytes = 0;
+			for(byte[] string: strings){
+				stringBytes += string.length;
+			}
+			long stringSectionSize = 4L * (strings.size() + 1) + stringBytes;
+			long ruleSectionOffset = align(stringSectionOffset + stringSectionSize);
+
+			// 文件头
+			out.writeInt(MappedRuleSet.MAGIC);
+			out.writeInt(MappedRuleSet.VERSION);
+			out.writeInt(strings.size());
+			out.writeInt(records.size());
+			out.writeInt(maxHistoryLength);
+			out.writeInt(0);
+			out.writeLong(stringSectionOffset);
+			out.writeLong(ruleSectionOffset);
+
+			// 字符串字典段：每个字符串的起始位置（相对于字符串数据），最后一项为字符串数据的总长度；之后是字符串数据
+			int offset = 0;
+			for(byte[] string: strings){
+				out.writeInt(offset);
+				offset += string.length;
+			}
+			out.writeInt(offset);
+			for(byte[] string: strings){
+				out.write(string);
+			}
+			for(long i = stringSectionOffset + stringSectionSize; i < ruleSectionOffset; i++){
+				out.writeByte(0);
+			}
+
+			// 规则记录段
+			for(int[] record: records){
+				for(int value: record){
+					out.writeInt(value);
+				}
+			}
+		}
+		finally{
+			out.close();
+		}
+
+		// 替换目标文件
+		try{
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(AtomicMoveNotSupportedException e){
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void addPath(Map<String, byte[]> pathBytes, String path){
+		if(!pathBytes.containsKey(path)){
+			pathBytes.put(path, path.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * 规则记录段按4字节对齐
+	 */
+	private static long align(long position){
+		return (position + 3) & ~3L;
+	}
+
+	/**
+	 * 按无符号字节的字典序比较，与MappedRuleSet中查找字符串的顺序一致
+	 */
+	private static int compareBytes(byte[] a, byte[] b){
+
+		int length = Math.min(a.length, b.length);
+		for(int i = 0; i < length; i++){
+			int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if(diff != 0){
+				return diff;
+			}
+		}
+		return a.length - b.length;
+	}
+}
@@ -0,0 +1,171 @@
+package cn.edu.zju.lau.cminer.io.hdfs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cn.edu.zju.lau.cminer.model.hdfs.FileAccessLog;
+import cn.edu.zju.lau.cminer.model.hdfs.SessionSequences;
+import cn.edu.zju.lau.utils.FileDictionary;
+import cn.edu.zju.lau.utils.IntList;
+import cn.edu.zju.lau.utils.LongList;
+
+/**
+ * 将交错在一起的文件访问日志按会话（客户端）拆分，会话由若干字段的值确定，默认为 ugi + ip。
+ * 不同客户端并发访问时，各自的访问在日志中交错出现，破坏了单个客户端访问序列中的关联关系；
+ * 拆分后每个会话单独分段，分段不会跨越会话。
+ *
+ * 会话按第一次出现的顺序排列，会话内的访问保持日志中的顺序。
+ *
+ * @author yuki
+ * @date 2013-12-09
+ */
+public class SessionDemultiplexer {
+
+	public static final String[] DEFAULT_SESSION_FIELDS = {"ugi", "ip"};
+
+	private String[] sessionFields;		// 组成会话标识的字段名
+
+	public SessionDemultiplexer(){
+		this(DEFAULT_SESSION_FIELDS);
+	}
+
+	public SessionDemultiplexer(String... sessionFields){
+		this.sessionFields = sessionFields;
+	}
+
+	/**
+	 * 读取日志文件，按会话拆分其中的OPEN操作
+	 * @param filePath
+	 * @param cutCommonPrefix	需要截断的文件名公共前缀
+	 * @return
+	 * @throws IOException
+	 */
+	public SessionSequences demultiplex(String filePath, String cutCommonPrefix) throws IOException{
+
+		AuditLogReader reader = new AuditLogReader(filePath, new FileDictionary(), cutCommonPrefix);
+		try{
+			return demultiplex(reader);
+		}
+		finally{
+			reader.close();
+		}
+	}
+
+	/**
+	 * 读取reader中剩余的OPEN操作，按会话拆分
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 */
+	public SessionSequences demultiplex(AuditLogReader reader) throws IOException{
+
+		reader.setSessionFields(sessionFields);
+
+		List<IntList> sessionFiles = new ArrayList<IntList>();
+		List<LongList> sessionTimes = new ArrayList<LongList>();
+
+		int fileId;
+		while((fileId = reader.next()) >= 0){
+			int sessionId = reader.getSessionId();
+			if(sessionId == sessionFiles.size()){
+				sessionFiles.add(new IntList());
+				sessionTimes.add(new LongList());
+			}
+			sessionFiles.get(sessionId).add(fileId);
+			sessionTimes.get(sessionId).add(reader.getTimeMillis());
+		}
+
+		FileDictionary sessionDictionary = reader.getSessionDictionary();
+		List<String> sessionKeys = new ArrayList<String>(sessionFiles.size());
+		for(int i = 0; i < sessionFiles.size(); i++){
+			sessionKeys.add(sessionDictionary.getName(i));
+		}
+
+		return flatten(reader.getDictionary(), sessionKeys, sessionFiles, sessionTimes);
+	}
+
+	/**
+	 * 将FileAccessLog列表中的有效日志按会话拆分
+	 * @param logs
+	 * @return
+	 */
+	public SessionSequences demultiplex(List<FileAccessLog> logs){
+
+		FileDictionary dictionary = new FileDictionary();
+		Map<String, Integer> sessionIds = new HashMap<String, Integer>();
+		List<String> sessionKeys = new ArrayList<String>();
+		List<IntList> sessionFiles = new ArrayList<IntList>();
+		List<LongList> sessionTimes = new ArrayList<LongList>();
+
+		for(FileAccessLog log: logs){
+			if(!log.isValid()){
+				continue;
+			}
+
+			String sessionKey = getSessionKey(log);
+			Integer sessionId = sessionIds.get(sessionKey);
+			if(sessionId == null){
+				sessionId = sessionKeys.size();
+				sessionIds.put(sessionKey, sessionId);
+				sessionKeys.add(sessionKey);
+				sessionFiles.add(new IntList());
+				sessionTimes.add(new LongList());
+			}
+			sessionFiles.get(sessionId).add(dictionary.intern(log.getSrc()));
+			sessionTimes.get(sessionId).add(log.getTimeMillis());
+		}
+
+		return flatten(dictionary, sessionKeys, sessionFiles, sessionTimes);
+	}
+
+	/**
+	 * 会话标识：各字段的值以\t连接，与AuditLogReader中的会话标识相同
+	 */
+	private String getSessionKey(FileAccessLog log){
+
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < sessionFields.length; i++){
+			if(i > 0){
+				sb.append('\t');
+			}
+			sb.append(log.getField(sessionFields[i]));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 将每个会话的访问序列依次存入同一个数组
+	 */
+	private SessionSequences flatten(FileDictionary dictionary, List<String> sessionKeys, List<IntList> sessionFiles, List<LongList> sessionTimes){
+
+		int total = 0;
+		for(IntList files: sessionFiles){
+			total += files.size();
+		}
+
+		IntList sessionStarts = new IntList(Math.max(1, sessionFiles.size()));
+		IntList fileIds = new IntList(Math.max(1, total));
+		LongList timestamps = new LongList(Math.max(1, total));
+		for(int i = 0; i < sessionFiles.size(); i++){
+			sessionStarts.add(fileIds.size());
+			fileIds.addAll(sessionFiles.get(i));
+			timestamps.addAll(sessionTimes.get(i));
+		}
+
+		return new SessionSequences(dictionary, sessionKeys, sessionStarts, fileIds, timestamps);
+	}
+
+
+	/* getters and setters */
+
+	public String[] getSessionFields() {
+		return sessionFields;
+	}
+
+	public void setSessionFields(String... sessionFields) {
+		this.sessionFields = sessionFields;
+	}
+}
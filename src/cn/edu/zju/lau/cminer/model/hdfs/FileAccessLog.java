@@ -1,9 +1,10 @@
 package cn.edu.zju.lau.cminer.model.hdfs;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
+import cn.edu.zju.lau.utils.TimestampDecoder;
+
 /**
  * 将HDFS中的audit.log中的日志行转换成日志对象。
  * Audit.log是HDFS中的监控日志，需要配置开启，它会记录所有对文件的操作。
@@ -26,9 +27,21 @@ public class FileAccessLog {
 	private String perm;	// 操作权限
 	
 	private boolean valid = true;
+	private long timeMillis = TIME_UNKNOWN;	// 客户端访问文件的时间的毫秒时间戳，第一次使用时才解码
+	private boolean timeDecoded;	// time是否已经解码过，格式不正确时也只解码一次
 	private Date timeDate;	// 客户端访问文件的时间的Date对象
 	private static final String timeFormat = "yyyy-MM-dd HH:mm:ss,SSS";
 	
+	public static final long TIME_UNKNOWN = Long.MIN_VALUE;	// 时间缺失或格式不正确
+	
+	// 每个线程一个时间解码器，缓存当前小时的时间戳
+	private static final ThreadLocal<TimestampDecoder> TIME_DECODER = new ThreadLocal<TimestampDecoder>(){
+		@Override
+		protected TimestampDecoder initialValue(){
+			return new TimestampDecoder();
+		}
+	};
+	
 	public static FileAccessLog parse(String logLine){
 		
 		FileAccessLog log = new FileAccessLog();
@@ -87,19 +100,49 @@ public class FileAccessLog {
 	    return sb.toString();
 	}
 
+	/**
+	 * 获取客户端访问文件的毫秒时间戳，第一次调用时解码time，不使用SimpleDateFormat
+	 * @return	时间缺失或格式不正确时返回TIME_UNKNOWN
+	 */
+	public long getTimeMillis(){
+		if(!timeDecoded && time != null){
+			timeDecoded = true;
+			try {
+				timeMillis = TIME_DECODER.get().decode(time, 0);
+			} 
+			catch (IllegalArgumentException e) {
+				timeMillis = TIME_UNKNOWN;
+			}
+		}
+		return timeMillis;
+	}
+	
+	/**
+	 * 根据字段名获取日志字段的值，字段名与日志中的一致：time|ugi|ip|cmd|src|dst|perm
+	 * @param name
+	 * @return
+	 */
+	public String getField(String name){
+		switch(name){
+		case "time":	return time;
+		case "ugi":		return ugi;
+		case "ip":		return ip;
+		case "cmd":		return cmd;
+		case "src":		return src;
+		case "dst":		return dst;
+		case "perm":	return perm;
+		default:
+			throw new IllegalArgumentException("Unknown log field: " + name);
+		}
+	}
+	
 	public Date getTimeDate(){
 		if(timeDate == null){
-			if(time == null){
+			long millis = getTimeMillis();
+			if(millis == TIME_UNKNOWN){
 				return null;
 			}
-			
-			try {
-				SimpleDateFormat df = new SimpleDateFormat(timeFormat);
-				timeDate = df.parse(time);
-			} 
-			catch (ParseException e) {
-				e.printStackTrace();
-			}
+			timeDate = new Date(millis);
 		}
 		return timeDate;
 	}
@@ -110,6 +153,9 @@ public class FileAccessLog {
 	
 	public void setTime(String time) {
 		this.time = time;
+		this.timeMillis = TIME_UNKNOWN;
+		this.timeDecoded = false;
+		this.timeDate = null;
 	}
 	
 	public String getUgi() {
@@ -0,0 +1,71 @@
+package cn.edu.zju.lau.cminer.model.hdfs;
+
+import java.util.Comparator;
+
+/**
+ * 关联规则 history -> prediction 中的一个prediction，及其support、confidence。
+ * 同一个history可以有多个prediction，在HDFSRule中按RANK_ORDER排序。
+ *
+ * @author yuki
+ * @date 2013-12-14
+ */
+public class HDFSPrediction {
+
+	private String prediction;
+	private int support;		// 可以生成 history -> prediction 的所有closed frequent subsequence中的最大support
+	private float confidence;	// support(prediction)/support(history)
+
+	/**
+	 * 排名顺序：confidence高的在前，相同时support高的在前，再相同时按文件路径排序
+	 */
+	public static final Comparator<HDFSPrediction> RANK_ORDER = new Comparator<HDFSPrediction>() {
+		@Override
+		public int compare(HDFSPrediction a, HDFSPrediction b) {
+			if(a.confidence != b.confidence){
+				return a.confidence > b.confidence ? -1 : 1;
+			}
+			if(a.support != b.support){
+				return a.support > b.support ? -1 : 1;
+			}
+			return a.prediction.compareTo(b.prediction);
+		}
+	};
+
+	public HDFSPrediction(){
+
+	}
+
+	public HDFSPrediction(String prediction, int support, float confidence){
+		this.prediction = prediction;
+		this.support = support;
+		this.confidence = confidence;
+	}
+
+	public String toString(){
+		return prediction + "(support=" + support + ", confidence=" + confidence + ")";
+	}
+
+	public String getPrediction() {
+		return prediction;
+	}
+
+	public void setPrediction(String prediction) {
+		this.prediction = prediction;
+	}
+
+	public int getSupport() {
+		return support;
+	}
+
+	public void setSupport(int support) {
+		this.support = support;
+	}
+
+	public float getConfidence() {
+		return confidence;
+	}
+
+	public void setConfidence(float confidence) {
+		this.confidence = confidence;
+	}
+}
@@ -1,11 +1,14 @@
 package cn.edu.zju.lau.cminer.model.hdfs;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * HDFS访问日志的关联规则对象：
  * 		history -> prediction，并包含其发生的权重confidence。
  * 		closed frequent subsequence拆分为history和prediction，它们也都是frequent subsequence。
+ * 		同一个history可以有多个prediction，按排名（HDFSPrediction.RANK_ORDER）保存在predictions中，
+ * 		prediction、confidence为排名第一的prediction。
  * 
  * @author yuki lau
  * @date 2013-11-22
@@ -16,9 +19,10 @@ public class HDFSRule {
 	private String prediction;
 	private int support;		// 可以生成该规则的所有closed frequent subsequence中的最大support
 	private float confidence;	// support(prediction)/support(history)
+	private List<HDFSPrediction> predictions;	// 所有的prediction，按排名排序
 	
 	public HDFSRule(){
-		
+		this.predictions = new ArrayList<HDFSPrediction>(1);
 	}
 	
 	public HDFSRule(List<String> history, String prediction, int support, float confidence){
@@ -26,6 +30,63 @@ public class HDFSRule {
 		this.prediction = prediction;
 		this.support = support;
 		this.confidence = confidence;
+		this.predictions = new ArrayList<HDFSPrediction>(1);
+		this.predictions.add(new HDFSPrediction(prediction, support, confidence));
+	}
+	
+	/**
+	 * 加入history的另一个prediction，已存在时取最大support，之后按排名重新排序
+	 * @param prediction
+	 * @param support
+	 * @param confidence
+	 */
+	public void addPrediction(String prediction, int support, float confidence){
+		
+		if(this.support < support){
+			this.support = support;
+		}
+		
+		HDFSPrediction current = null;
+		for(HDFSPrediction p: predictions){
+			if(p.getPrediction().equals(prediction)){
+				current = p;
+				break;
+			}
+		}
+		if(current == null){
+			current = new HDFSPrediction(prediction, support, confidence);
+			predictions.add(current);
+		}
+		else if(current.getSupport() < support){
+			current.setSupport(support);
+		}
+		else{
+			return;
+		}
+		
+		// 规则的prediction通常只有几个，插入排序即可
+		int i = predictions.indexOf(current);
+		while(i > 0 && HDFSPrediction.RANK_ORDER.compare(predictions.get(i - 1), current) > 0){
+			predictions.set(i, predictions.get(i - 1));
+			i--;
+		}
+		while(i < predictions.size() - 1 && HDFSPrediction.RANK_ORDER.compare(predictions.get(i + 1), current) < 0){
+			predictions.set(i, predictions.get(i + 1));
+			i++;
+		}
+		predictions.set(i, current);
+		
+		this.prediction = predictions.get(0).getPrediction();
+		this.confidence = predictions.get(0).getConfidence();
+	}
+	
+	/**
+	 * 排名前topK的prediction
+	 * @param topK
+	 * @return
+	 */
+	public List<HDFSPrediction> getPredictions(int topK){
+		return topK >= predictions.size() ? predictions : predictions.subList(0, topK);
 	}
 
 	public String toString(){
@@ -34,6 +95,9 @@ public class HDFSRule {
 		sb.append("rule=").append(history).append("->").append(prediction);
 		sb.append(", support=").append(support);
 		sb.append(", confidence=").append(confidence);
+		if(predictions.size() > 1){
+			sb.append(", predictions=").append(predictions);
+		}
 		sb.append("}");
 		
 		return sb.toString();
@@ -70,4 +134,8 @@ public class HDFSRule {
 	public void setConfidence(float confidence) {
 		this.confidence = confidence;
 	}
+
+	public List<HDFSPrediction> getPredictions() {
+		return predictions;
+	}
 }
@@ -0,0 +1,128 @@
+package cn.edu.zju.lau.cminer.model.hdfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import cn.edu.zju.lau.utils.FileDictionary;
+
+/**
+ * 由文件ID组成的访问子序列，不可变，可以直接作为Map的Key使用。
+ * 用于替代 "a|b|c" 形式的字符串子序列，只有在输出规则时才通过FileDictionary还原为文件路径。
+ * 排序规则：先按长度，再按文件ID逐个比较。
+ *
+ * @author yuki
+ * @date 2013-12-02
+ */
+public class IntSequence implements Comparable<IntSequence> {
+
+	private final int[] files;
+	private final int hash;
+
+	public IntSequence(int... files){
+		this.files = files;
+		this.hash = Arrays.hashCode(files);
+	}
+
+	public int length(){
+		return files.length;
+	}
+
+	public int get(int index){
+		return files[index];
+	}
+
+	public int last(){
+		return files[files.length - 1];
+	}
+
+	/**
+	 * 在当前序列末尾追加一个文件，返回新序列
+	 * @param file
+	 * @return
+	 */
+	public IntSequence append(int file){
+
+		int[] newFiles = Arrays.copyOf(files, files.length + 1);
+		newFiles[files.length] = file;
+		return new IntSequence(newFiles);
+	}
+
+	/**
+	 * 截取[start, end)区间的子序列
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public IntSequence subSequence(int start, int end){
+		return new IntSequence(Arrays.copyOfRange(files, start, end));
+	}
+
+	/**
+	 * 通过文件字典还原为文件路径列表
+	 * @param dictionary
+	 * @return
+	 */
+	public List<String> toPathList(FileDictionary dictionary){
+
+		List<String> paths = new ArrayList<String>(files.length);
+		for(int file: files){
+			paths.add(dictionary.getName(file));
+		}
+		return paths;
+	}
+
+	/**
+	 * 通过文件字典还原为 "a|b|c" 形式的字符串，与CMinerHDFS中的子序列格式一致
+	 * @param dictionary
+	 * @return
+	 */
+	public String toPathString(FileDictionary dictionary){
+
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < files.length; i++){
+			if(i > 0){
+				sb.append("|");
+			}
+			sb.append(dictionary.getName(files[i]));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public int compareTo(IntSequence other){
+
+		if(files.length != other.files.length){
+			return files.length < other.files.length ? -1 : 1;
+		}
+		for(int i = 0; i < files.length; i++){
+			if(files[i] != other.files[i]){
+				return files[i] < other.files[i] ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public int hashCode(){
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj){
+
+		if(this == obj){
+			return true;
+		}
+		if(!(obj instanceof IntSequence)){
+			return false;
+		}
+		IntSequence other = (IntSequence) obj;
+		return hash == other.hash && Arrays.equals(files, other.files);
+	}
+
+	@Override
+	public String toString(){
+		return Arrays.toString(files);
+	}
+}
@@ -0,0 +1,77 @@
+package cn.edu.zju.lau.cminer.model.hdfs;
+
+import java.util.Arrays;
+
+/**
+ * 候选频繁序列（文件ID序列）的伪投影数据库（pseudo-projection，与PrefixSpan相同）：
+ * 不复制后缀内容，每个后缀只记录为 (segment, offset) 两个int，指向SegmentedSequence中的位置。
+ * 后缀为 segment 片段中从 offset 开始直到片段结束的部分，offset可以等于片段长度，表示空后缀。
+ *
+ * @author yuki
+ * @date 2013-12-03
+ */
+public class ProjectedDatabase {
+
+	private IntSequence subsequence;
+	private int occurTimes;
+	private int[] entries;		// [segment0, offset0, segment1, offset1, ...]
+	private int size;			// 后缀的个数
+
+	public ProjectedDatabase(){
+		this(null, 0, 4);
+	}
+
+	public ProjectedDatabase(IntSequence subsequence, int occurTimes, int capacity){
+		this.subsequence = subsequence;
+		this.occurTimes = occurTimes;
+		this.entries = new int[Math.max(capacity, 1) * 2];
+		this.size = 0;
+	}
+
+	/**
+	 * 添加一个后缀
+	 * @param segment
+	 * @param offset
+	 */
+	public void addSuffix(int segment, int offset){
+
+		if(size * 2 == entries.length){
+			entries = Arrays.copyOf(entries, entries.length * 2);
+		}
+		entries[size * 2] = segment;
+		entries[size * 2 + 1] = offset;
+		size++;
+	}
+
+	public int getSegment(int index){
+		return entries[index * 2];
+	}
+
+	public int getOffset(int index){
+		return entries[index * 2 + 1];
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public String toString(){
+		return subsequence + "(" + occurTimes + ")";
+	}
+
+	public IntSequence getSubsequence() {
+		return subsequence;
+	}
+
+	public void setSubsequence(IntSequence subsequence) {
+		this.subsequence = subsequence;
+	}
+
+	public int getOccurTimes() {
+		return occurTimes;
+	}
+
+	public void setOccurTimes(int occurTimes) {
+		this.occurTimes = occurTimes;
+	}
+}
@@ -0,0 +1,183 @@
+package cn.edu.zju.lau.cminer.model.hdfs;
+
+import java.util.Arrays;
+
+/**
+ * 分段后的文件ID访问序列，所有片段连续存放在一个int数组中：
+ * 		files:			[a b c | d a b | c e]
+ * 		segmentStarts:	[0, 3, 6, 8]
+ * 第i个片段为 files[segmentStarts[i], segmentStarts[i + 1])。
+ *
+ * @author yuki
+ * @date 2013-12-03
+ */
+public class SegmentedSequence {
+
+	private int[] files;			// 所有片段中的文件ID
+	private int size;				// 文件ID的个数
+	private int[] segmentStarts;	// 每个片段在files中的起始位置，最后一项为size
+	private int segmentNum;			// 片段的个数
+
+	public SegmentedSequence(){
+		this(1024);
+	}
+
+	public SegmentedSequence(int initialCapacity){
+		this.files = new int[Math.max(initialCapacity, 16)];
+		this.segmentStarts = new int[Math.max(initialCapacity / 4, 16)];
+		this.size = 0;
+		this.segmentNum = 0;
+	}
+
+	/**
+	 * 开始一个新片段，之后add的文件都属于该片段
+	 */
+	public void startSegment(){
+
+		// 上一个片段为空，直接复用
+		if(segmentNum > 0 && segmentStarts[segmentNum - 1] == size){
+			return;
+		}
+		if(segmentNum + 1 >= segmentStarts.length){
+			segmentStarts = Arrays.copyOf(segmentStarts, segmentStarts.length * 2);
+		}
+		segmentStarts[segmentNum++] = size;
+		segmentStarts[segmentNum] = size;
+	}
+
+	/**
+	 * 在当前片段末尾追加一个文件
+	 * @param file
+	 */
+	public void add(int file){
+
+		if(segmentNum == 0){
+			startSegment();
+		}
+		if(size == files.length){
+			files = Arrays.copyOf(files, files.length * 2);
+		}
+		files[size++] = file;
+		segmentStarts[segmentNum] = size;
+	}
+
+	/**
+	 * 将other中的所有片段依次追加到末尾，作为新的片段
+	 * @param other
+	 */
+	public void append(SegmentedSequence other){
+
+		if(other.segmentNum == 0){
+			return;
+		}
+
+		// 最后一个片段为空，被other的第一个片段取代
+		if(segmentNum > 0 && segmentStarts[segmentNum - 1] == size){
+			segmentNum--;
+		}
+		if(size + other.size > files.length){
+			files = Arrays.copyOf(files, Math.max(files.length * 2, size + other.size));
+		}
+		if(segmentNum + other.segmentNum + 1 > segmentStarts.length){
+			segmentStarts = Arrays.copyOf(segmentStarts, Math.max(segmentStarts.length * 2, segmentNum + other.segmentNum + 1));
+		}
+
+		System.arraycopy(other.files, 0, files, size, other.size);
+		for(int i = 0; i < other.segmentNum; i++){
+			segmentStarts[segmentNum + i] = size + other.segmentStarts[i];
+		}
+		segmentNum += other.segmentNum;
+		size += other.size;
+		segmentStarts[segmentNum] = size;
+	}
+
+	/**
+	 * 删除前removeNum个片段，之后的片段依次前移，下标减少removeNum
+	 * @param removeNum
+	 */
+	public void removeFirstSegments(int removeNum){
+
+		if(removeNum <= 0){
+			return;
+		}
+		if(removeNum >= segmentNum){
+			clear();
+			return;
+		}
+
+		int removedSize = segmentStarts[removeNum];
+		System.arraycopy(files, removedSize, files, 0, size - removedSize);
+		for(int i = removeNum; i <= segmentNum; i++){
+			segmentStarts[i - removeNum] = segmentStarts[i] - removedSize;
+		}
+		segmentNum -= removeNum;
+		size -= removedSize;
+	}
+
+	/**
+	 * 重新排列从fromSegment开始的片段：重排后的第fromSegment + k个片段为原来的第fromSegment + order[k]个片段
+	 * @param fromSegment
+	 * @param order	0 .. segmentNum - fromSegment - 1 的一个排列
+	 */
+	public void reorderSegments(int fromSegment, int[] order){
+
+		if(fromSegment >= segmentNum){
+			return;
+		}
+
+		int base = segmentStarts[fromSegment];
+		int[] oldFiles = Arrays.copyOfRange(files, base, size);
+		int[] oldStarts = Arrays.copyOfRange(segmentStarts, fromSegment, segmentNum + 1);
+
+		int position = base;
+		for(int k = 0; k < order.length; k++){
+			int start = oldStarts[order[k]] - base;
+			int length = oldStarts[order[k] + 1] - oldStarts[order[k]];
+			segmentStarts[fromSegment + k] = position;
+			System.arraycopy(oldFiles, start, files, position, length);
+			position += length;
+		}
+	}
+
+	public int get(int position){
+		return files[position];
+	}
+
+	public int segmentStart(int segment){
+		return segmentStarts[segment];
+	}
+
+	public int segmentEnd(int segment){
+		return segmentStarts[segment + 1];
+	}
+
+	public int segmentLength(int segment){
+		return segmentStarts[segment + 1] - segmentStarts[segment];
+	}
+
+	public int getSegmentNum(){
+		return segmentNum;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public void clear(){
+		size = 0;
+		segmentNum = 0;
+	}
+
+	@Override
+	public String toString(){
+
+		StringBuilder sb = new StringBuilder("[");
+		for(int segment = 0; segment < segmentNum; segment++){
+			if(segment > 0){
+				sb.append(", ");
+			}
+			sb.append(Arrays.toString(Arrays.copyOfRange(files, segmentStart(segment), segmentEnd(segment))));
+		}
+		return sb.append("]").toString();
+	}
+}
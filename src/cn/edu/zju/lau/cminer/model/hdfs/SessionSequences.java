@@ -0,0 +1,85 @@
+package cn.edu.zju.lau.cminer.model.hdfs;
+
+import java.util.List;
+
+import cn.edu.zju.lau.utils.FileDictionary;
+import cn.edu.zju.lau.utils.IntList;
+import cn.edu.zju.lau.utils.LongList;
+
+/**
+ * 按会话（客户端）拆分后的文件访问序列数据库：
+ * 所有会话的文件ID序列依次存储在同一个数组中，sessionStarts记录每个会话的起始位置，
+ * 第i个会话为 fileIds[sessionStart(i), sessionEnd(i))，timestamps与fileIds一一对应。
+ *
+ * @author yuki
+ * @date 2013-12-09
+ */
+public class SessionSequences {
+
+	private FileDictionary dictionary;		// 文件路径 <-> 文件ID
+	private List<String> sessionKeys;		// 每个会话的标识，如 "root\t/127.0.0.1"
+	private IntList sessionStarts;			// 每个会话在fileIds中的起始位置
+	private IntList fileIds;
+	private LongList timestamps;
+
+	public SessionSequences(FileDictionary dictionary, List<String> sessionKeys, IntList sessionStarts, IntList fileIds, LongList timestamps){
+		this.dictionary = dictionary;
+		this.sessionKeys = sessionKeys;
+		this.sessionStarts = sessionStarts;
+		this.fileIds = fileIds;
+		this.timestamps = timestamps;
+	}
+
+	public int getSessionNum(){
+		return sessionStarts.size();
+	}
+
+	public int sessionStart(int session){
+		return sessionStarts.get(session);
+	}
+
+	public int sessionEnd(int session){
+		return session + 1 < sessionStarts.size() ? sessionStarts.get(session + 1) : fileIds.size();
+	}
+
+	public int sessionLength(int session){
+		return sessionEnd(session) - sessionStart(session);
+	}
+
+	public String getSessionKey(int session){
+		return sessionKeys.get(session);
+	}
+
+	/**
+	 * 所有会话的访问总数
+	 * @return
+	 */
+	public int size(){
+		return fileIds.size();
+	}
+
+	public FileDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public List<String> getSessionKeys() {
+		return sessionKeys;
+	}
+
+	public IntList getSessionStarts() {
+		return sessionStarts;
+	}
+
+	public IntList getFileIds() {
+		return fileIds;
+	}
+
+	public LongList getTimestamps() {
+		return timestamps;
+	}
+
+	@Override
+	public String toString(){
+		return "SessionSequences[sessions=" + getSessionNum() + ", accesses=" + size() + ", files=" + dictionary.size() + "]";
+	}
+}
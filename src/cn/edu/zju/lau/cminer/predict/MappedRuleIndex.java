@@ -0,0 +1,111 @@
+package cn.edu.zju.lau.cminer.predict;
+
+import cn.edu.zju.lau.cminer.io.hdfs.MappedRuleSet;
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+
+/**
+ * 直接在MappedRuleSet上预测，不把规则读入堆中（不调用toRules）。
+ *
+ * 规则记录按history排序，以某个上下文为前缀的记录相邻，因此上下文可以用
+ * (第一条以它为前缀的记录, 上下文长度) 表示，节点编号为 记录下标 * (H + 1) + 上下文长度：
+ * 		1. 走一步：在上下文后追加文件ID，二分查找第一条不小于它的记录，检查该记录是否以它为前缀；
+ * 		2. 是否为规则：短的history排在前面，第一条记录的history长度恰好等于上下文长度；
+ * 		3. 是否为更长history的前缀：在上下文后追加最小的文件ID 0 再二分查找，跳过history恰好是上下文的记录。
+ * 每步为两次O(log 记录条数)的二分查找，只有上下文恰好是某条规则时才还原HDFSRule。
+ * 规则集文件小于2GB，每条记录至少 4 * (H + 3) 字节，节点编号不会超出int的范围。
+ *
+ * @author yuki
+ * @date 2013-12-13
+ */
+public class MappedRuleIndex implements RuleIndex {
+
+	private MappedRuleSet ruleSet;
+	private int maxHistoryLength;
+
+	public MappedRuleIndex(MappedRuleSet ruleSet){
+		this.ruleSet = ruleSet;
+		this.maxHistoryLength = ruleSet.getMaxHistoryLength();
+	}
+
+	@Override
+	public int child(int node, String file) {
+
+		if(node == NONE || depth(node) == maxHistoryLength){
+			return NONE;
+		}
+		int fileId = ruleSet.findString(file);
+		if(fileId < 0){
+			return NONE;
+		}
+		int depth = depth(node);
+		int[] prefix = prefix(node, fileId);
+		int index = ruleSet.lowerBound(prefix, depth + 1);
+		return startsWith(index, prefix, depth + 1) ? index * (maxHistoryLength + 1) + depth + 1 : NONE;
+	}
+
+	@Override
+	public HDFSRule getRule(int node) {
+
+		if(node == NONE || depth(node) == 0){
+			return null;
+		}
+		int index = index(node);
+		return ruleSet.getHistoryLength(index) == depth(node) ? ruleSet.getRule(index) : null;
+	}
+
+	@Override
+	public boolean hasChildren(int node) {
+
+		if(node == NONE || depth(node) == maxHistoryLength){
+			return false;
+		}
+		int[] prefix = prefix(node, 0);
+		return startsWith(ruleSet.lowerBound(prefix, depth(node) + 1), prefix, depth(node));
+	}
+
+	/**
+	 * node对应的上下文（第一条记录history的前depth个文件ID）后追加fileId
+	 */
+	private int[] prefix(int node, int fileId){
+
+		int depth = depth(node);
+		int index = index(node);
+		int[] prefix = new int[depth + 1];
+		for(int i = 0; i < depth; i++){
+			prefix[i] = ruleSet.getHistoryId(index, i);
+		}
+		prefix[depth] = fileId;
+		return prefix;
+	}
+
+	/**
+	 * 第index条记录的history是否以prefix的前length个文件ID开头
+	 */
+	private boolean startsWith(int index, int[] prefix, int length){
+
+		if(index >= ruleSet.size()){
+			return false;
+		}
+		for(int i = 0; i < length; i++){
+			if(ruleSet.getHistoryId(index, i) != prefix[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int index(int node){
+		return node / (maxHistoryLength + 1);
+	}
+
+	private int depth(int node){
+		return node % (maxHistoryLength + 1);
+	}
+
+
+	/* getters */
+
+	public MappedRuleSet getRuleSet() {
+		return ruleSet;
+	}
+}
@@ -0,0 +1,40 @@
+package cn.edu.zju.lau.cminer.predict;
+
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+
+/**
+ * RulePredictor使用的规则索引：从根节点开始，每访问一个文件走一步，
+ * 节点回答 "当前上下文是否为某条规则的history，或某条规则history的前缀"。
+ *
+ * 节点是int，只由索引解释；索引构建完成后只读，可以被多个RulePredictor共享。
+ *
+ * @author yuki
+ * @date 2013-12-13
+ */
+public interface RuleIndex {
+
+	int ROOT = 0;
+	int NONE = -1;		// 不存在的节点
+
+	/**
+	 * 从node沿文件file走一步
+	 * @param node
+	 * @param file
+	 * @return	子节点，不存在时（包括node为NONE）返回NONE
+	 */
+	int child(int node, String file);
+
+	/**
+	 * 以node结束的history对应的规则
+	 * @param node
+	 * @return	规则，不存在时返回null
+	 */
+	HDFSRule getRule(int node);
+
+	/**
+	 * node是否为某条更长的规则history的前缀
+	 * @param node
+	 * @return
+	 */
+	boolean hasChildren(int node);
+}
@@ -0,0 +1,134 @@
+package cn.edu.zju.lau.cminer.predict;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSPrediction;
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+
+/**
+ * 根据文件访问的上下文，在RuleIndex（堆中的RuleTrie，或映射的规则集文件上的MappedRuleIndex）中查找关联规则，
+ * 给出之后可能访问的文件。
+ *
+ * 上下文为从某个文件开始的连续访问，每访问一个文件在RuleIndex中走一步：
+ * 		1. 上下文恰好是某条规则的history：预测该规则的prediction；
+ * 		2. 上下文只有一个文件，且不是任何规则history的前缀：丢弃，从下一个文件重新开始；
+ * 		3. 上下文不再是任何规则history的前缀，且已连续maxGap次以上没有匹配：以当前文件作为新上下文的开头；
+ * 		4. 否则继续扩展上下文。
+ *
+ * 使用RuleTrie时，每次预测的开销只与上下文的长度有关（每步O(1)），与规则条数无关。
+ * 保存了访问上下文，非线程安全，每个访问流（如每个客户端会话）使用自己的实例，RuleIndex可以共享。
+ *
+ * @author yuki
+ * @date 2013-12-13
+ */
+public class RulePredictor {
+
+	private RuleIndex index;
+	private int maxGap;
+
+	private int currentNode;		// 当前上下文在index中的节点，上下文已不是任何history的前缀时为NONE
+	private int contextLength;		// 当前上下文中的文件个数，0为没有上下文
+	private int currentGap;			// 上下文连续没有匹配的次数
+
+	public RulePredictor(RuleIndex index, int maxGap){
+		this.index = index;
+		this.maxGap = maxGap;
+		reset();
+	}
+
+	/**
+	 * 将当前访问的文件加入上下文，获取预测的后续文件（排名第一的prediction）
+	 * @param currentFile
+	 * @return	预测的后续文件，没有时为空列表
+	 */
+	public List<String> predict(String currentFile){
+		return predict(currentFile, 1);
+	}
+
+	/**
+	 * 将当前访问的文件加入上下文，获取排名前topK的预测文件，一次查找即可得到需要批量预取的所有文件
+	 * @param currentFile
+	 * @param topK
+	 * @return	预测的后续文件，按排名排序，没有时为空列表
+	 */
+	public List<String> predict(String currentFile, int topK){
+
+		List<String> predictFiles = new ArrayList<String>();
+		HDFSRule rule = next(currentFile);
+		if(rule != null){
+			for(HDFSPrediction prediction: rule.getPredictions(topK)){
+				predictFiles.add(prediction.getPrediction());
+			}
+		}
+		return predictFiles;
+	}
+
+	/**
+	 * 将当前访问的文件加入上下文
+	 * @param currentFile
+	 * @return	上下文恰好匹配的规则，没有时返回null
+	 */
+	public HDFSRule next(String currentFile){
+
+		// 将当前读取的文件考虑到上下文中
+		currentNode = contextLength == 0 ? index.child(RuleIndex.ROOT, currentFile) : index.child(currentNode, currentFile);
+		contextLength++;
+
+		HDFSRule rule = index.getRule(currentNode);
+		boolean starts = index.hasChildren(currentNode);
+
+		if(contextLength == 1){
+			// 1. 上下文仅包含一个文件，且不是任何history的前缀：跳过，从下一个文件重新开始
+			if(!starts){
+				reset();
+			}
+			// 2. 是某个history的前缀：以当前上下文为基础，继续扩展
+			else{
+				currentGap = 0;
+			}
+		}
+		else{
+			// 1. 不是任何history的前缀，且超过maxGap：以当前文件作为新上下文的开头
+			if(!starts && currentGap > maxGap){
+				currentNode = index.child(RuleIndex.ROOT, currentFile);
+				contextLength = 1;
+				currentGap = 0;
+			}
+			// 2. 是某个history的前缀：以当前上下文为基础，继续扩展
+			else if(starts){
+				currentGap = 0;
+			}
+			// 3. 不是任何history的前缀，Gap也没有超过：在gap范围内继续扩展一层
+			else{
+				currentGap++;
+			}
+		}
+
+		return rule;
+	}
+
+	/**
+	 * 清除访问上下文
+	 */
+	public void reset(){
+		currentNode = RuleIndex.NONE;
+		contextLength = 0;
+		currentGap = 0;
+	}
+
+
+	/* getters and setters */
+
+	public RuleIndex getIndex() {
+		return index;
+	}
+
+	public int getMaxGap() {
+		return maxGap;
+	}
+
+	public void setMaxGap(int maxGap) {
+		this.maxGap = maxGap;
+	}
+}
@@ -0,0 +1,231 @@
+package cn.edu.zju.lau.cminer.predict;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+import cn.edu.zju.lau.utils.FileDictionary;
+
+/**
+ * 以HDFSRule.history为键的前缀树（trie），回答 "当前上下文是否为某条规则的history，或某条规则history的前缀"：
+ * 从根节点开始，每访问一个文件沿对应的边走一步，每步O(1)，与规则条数无关。
+ *
+ * 节点以从0开始的int编号，根节点为ROOT；文件路径通过FileDictionary映射为int ID，
+ * 所有的边 (父节点, 文件ID) -> 子节点 存放在一个开放寻址表中，不为每个节点创建Map。
+ *
+ * 构建完成后只读，可以被多个线程共享。规则集已写入文件时，可以用MappedRuleIndex直接在映射的文件上预测。
+ *
+ * @author yuki
+ * @date 2013-12-13
+ */
+public class RuleTrie implements RuleIndex {
+
+	private FileDictionary dictionary;		// 文件路径 <-> 文件ID
+
+	// 节点
+	private List<HDFSRule> nodeRules;		// 以该节点结束的history对应的规则，没有时为null
+	private int[] childNums;				// 子节点的个数
+	private int nodeNum;
+
+	// 边：(父节点 << 32 | 文件ID) -> 子节点，edgeChildren中存储 子节点 + 1，0表示空位
+	private long[] edgeKeys;
+	private int[] edgeChildren;
+	private int edgeNum;
+
+	public RuleTrie(){
+		this.dictionary = new FileDictionary();
+		this.nodeRules = new ArrayList<HDFSRule>();
+		this.childNums = new int[16];
+		this.nodeNum = 0;
+		this.edgeKeys = new long[1024];
+		this.edgeChildren = new int[1024];
+		this.edgeNum = 0;
+
+		newNode();
+	}
+
+	/**
+	 * 由CMinerHDFS.getRules()构建
+	 * @param rules
+	 */
+	public RuleTrie(Map<String, HDFSRule> rules){
+		this(rules.values());
+	}
+
+	public RuleTrie(Collection<HDFSRule> rules){
+		this();
+		for(HDFSRule rule: rules){
+			add(rule);
+		}
+	}
+
+	/**
+	 * 加入一条规则，history相同的规则会覆盖之前的规则
+	 * @param rule
+	 */
+	public void add(HDFSRule rule){
+
+		int node = ROOT;
+		for(String file: rule.getHistory()){
+			int fileId = dictionary.intern(file);
+			int next = getChild(node, fileId);
+			if(next == NONE){
+				next = newNode();
+				putChild(node, fileId, next);
+				childNums[node]++;
+			}
+			node = next;
+		}
+		nodeRules.set(node, rule);
+	}
+
+	/**
+	 * 从node沿文件file走一步
+	 * @param node
+	 * @param file
+	 * @return	子节点，不存在时（包括node为NONE）返回NONE
+	 */
+	@Override
+	public int child(int node, String file){
+
+		if(node == NONE){
+			return NONE;
+		}
+		int fileId = dictionary.getId(file);
+		return fileId < 0 ? NONE : getChild(node, fileId);
+	}
+
+	/**
+	 * 查找history对应的节点
+	 * @param history
+	 * @return	节点，history不是任何规则history的前缀时返回NONE
+	 */
+	public int find(List<String> history){
+
+		int node = ROOT;
+		for(int i = 0; i < history.size() && node != NONE; i++){
+			node = child(node, history.get(i));
+		}
+		return node;
+	}
+
+	/**
+	 * 查找history对应的规则
+	 * @param history
+	 * @return	规则，不存在时返回null
+	 */
+	public HDFSRule getRule(List<String> history){
+		return getRule(find(history));
+	}
+
+	/**
+	 * 以node结束的history对应的规则
+	 * @param node
+	 * @return	规则，不存在时返回null
+	 */
+	@Override
+	public HDFSRule getRule(int node){
+		return node == NONE ? null : nodeRules.get(node);
+	}
+
+	/**
+	 * node是否为某条更长的规则history的前缀
+	 * @param node
+	 * @return
+	 */
+	@Override
+	public boolean hasChildren(int node){
+		return node != NONE && childNums[node] > 0;
+	}
+
+	private int newNode(){
+
+		if(nodeNum == childNums.length){
+			childNums = Arrays.copyOf(childNums, childNums.length * 2);
+		}
+		nodeRules.add(null);
+		return nodeNum++;
+	}
+
+	private int getChild(int node, int fileId){
+
+		long key = edgeKey(node, fileId);
+		int mask = edgeKeys.length - 1;
+		int slot = hash(key) & mask;
+		while(edgeChildren[slot] != 0){
+			if(edgeKeys[slot] == key){
+				return edgeChildren[slot] - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return NONE;
+	}
+
+	private void putChild(int node, int fileId, int child){
+
+		if((edgeNum + 1) * 2 > edgeKeys.length){
+			rehash();
+		}
+
+		long key = edgeKey(node, fileId);
+		int mask = edgeKeys.length - 1;
+		int slot = hash(key) & mask;
+		while(edgeChildren[slot] != 0){
+			slot = (slot + 1) & mask;
+		}
+		edgeKeys[slot] = key;
+		edgeChildren[slot] = child + 1;
+		edgeNum++;
+	}
+
+	/**
+	 * 扩大开放寻址表
+	 */
+	private void rehash(){
+
+		long[] oldKeys = edgeKeys;
+		int[] oldChildren = edgeChildren;
+
+		edgeKeys = new long[oldKeys.length * 2];
+		edgeChildren = new int[oldKeys.length * 2];
+
+		int mask = edgeKeys.length - 1;
+		for(int i = 0; i < oldKeys.length; i++){
+			if(oldChildren[i] == 0){
+				continue;
+			}
+			int slot = hash(oldKeys[i]) & mask;
+			while(edgeChildren[slot] != 0){
+				slot = (slot + 1) & mask;
+			}
+			edgeKeys[slot] = oldKeys[i];
+			edgeChildren[slot] = oldChildren[i];
+		}
+	}
+
+	private static long edgeKey(int node, int fileId){
+		return ((long) node << 32) | (fileId & 0xFFFFFFFFL);
+	}
+
+	private static int hash(long key){
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+
+	/* getters */
+
+	public FileDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * 节点个数，包括根节点
+	 */
+	public int getNodeNum() {
+		return nodeNum;
+	}
+}
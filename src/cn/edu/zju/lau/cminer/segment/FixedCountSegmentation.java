@@ -0,0 +1,25 @@
+package cn.edu.zju.lau.cminer.segment;
+
+/**
+ * 默认的分段策略：non-overlapped cutting，每windowSize个访问为一个分段，不需要时间戳。
+ *
+ * @author yuki
+ * @date 2013-12-08
+ */
+public class FixedCountSegmentation implements SegmentationStrategy {
+
+	@Override
+	public boolean isSegmentBoundary(int segmentLength, int windowSize, long segmentStartTime, long previousTime, long currentTime) {
+		return segmentLength >= windowSize;
+	}
+
+	@Override
+	public boolean requiresTimestamps() {
+		return false;
+	}
+
+	@Override
+	public String toString(){
+		return "FixedCount";
+	}
+}
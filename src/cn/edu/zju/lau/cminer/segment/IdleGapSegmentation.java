@@ -0,0 +1,51 @@
+package cn.edu.zju.lau.cminer.segment;
+
+import cn.edu.zju.lau.cminer.model.hdfs.FileAccessLog;
+
+/**
+ * 空闲间隔分段：与前一个访问的时间间隔大于maxIdleMillis时开始新的分段，
+ * 连续访问超过windowSize个时，同样开始新的分段。
+ *
+ * @author yuki
+ * @date 2013-12-08
+ */
+public class IdleGapSegmentation implements SegmentationStrategy {
+
+	private long maxIdleMillis;		// 同一分段中相邻访问的最大时间间隔（毫秒）
+
+	public IdleGapSegmentation(long maxIdleMillis){
+
+		if(maxIdleMillis < 0){
+			throw new IllegalArgumentException("maxIdleMillis must not be negative: " + maxIdleMillis);
+		}
+		this.maxIdleMillis = maxIdleMillis;
+	}
+
+	@Override
+	public boolean isSegmentBoundary(int segmentLength, int windowSize, long segmentStartTime, long previousTime, long currentTime) {
+
+		if(segmentLength >= windowSize){
+			return true;
+		}
+
+		// 时间未知的访问归入当前分段
+		if(previousTime == FileAccessLog.TIME_UNKNOWN || currentTime == FileAccessLog.TIME_UNKNOWN){
+			return false;
+		}
+		return currentTime - previousTime > maxIdleMillis;
+	}
+
+	@Override
+	public boolean requiresTimestamps() {
+		return true;
+	}
+
+	public long getMaxIdleMillis() {
+		return maxIdleMillis;
+	}
+
+	@Override
+	public String toString(){
+		return "IdleGap(" + maxIdleMillis + "ms)";
+	}
+}
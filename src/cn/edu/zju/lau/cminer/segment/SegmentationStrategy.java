@@ -0,0 +1,28 @@
+package cn.edu.zju.lau.cminer.segment;
+
+/**
+ * 文件访问序列的分段策略，cutAccessSequence依次对每个访问判断是否开始一个新的分段。
+ * 所有策略都保证每个分段的长度不超过windowSize。
+ *
+ * @author yuki
+ * @date 2013-12-08
+ */
+public interface SegmentationStrategy {
+
+	/**
+	 * 判断当前访问是否开始一个新的分段
+	 * @param segmentLength		当前分段已有的访问数，大于0
+	 * @param windowSize		分段的最大长度
+	 * @param segmentStartTime	当前分段第一个访问的时间
+	 * @param previousTime		前一个访问的时间
+	 * @param currentTime		当前访问的时间
+	 * @return
+	 */
+	boolean isSegmentBoundary(int segmentLength, int windowSize, long segmentStartTime, long previousTime, long currentTime);
+
+	/**
+	 * 是否需要每个访问的时间戳
+	 * @return
+	 */
+	boolean requiresTimestamps();
+}
@@ -0,0 +1,51 @@
+package cn.edu.zju.lau.cminer.segment;
+
+import cn.edu.zju.lau.cminer.model.hdfs.FileAccessLog;
+
+/**
+ * 固定时间窗口分段：按windowMillis对齐的时间窗口划分访问序列，
+ * 同一个时间窗口内的访问超过windowSize个时，同样开始新的分段。
+ *
+ * @author yuki
+ * @date 2013-12-08
+ */
+public class TimeWindowSegmentation implements SegmentationStrategy {
+
+	private long windowMillis;		// 时间窗口的长度（毫秒）
+
+	public TimeWindowSegmentation(long windowMillis){
+
+		if(windowMillis <= 0){
+			throw new IllegalArgumentException("windowMillis must be positive: " + windowMillis);
+		}
+		this.windowMillis = windowMillis;
+	}
+
+	@Override
+	public boolean isSegmentBoundary(int segmentLength, int windowSize, long segmentStartTime, long previousTime, long currentTime) {
+
+		if(segmentLength >= windowSize){
+			return true;
+		}
+
+		// 时间未知的访问归入当前分段
+		if(segmentStartTime == FileAccessLog.TIME_UNKNOWN || currentTime == FileAccessLog.TIME_UNKNOWN){
+			return false;
+		}
+		return currentTime / windowMillis != segmentStartTime / windowMillis;
+	}
+
+	@Override
+	public boolean requiresTimestamps() {
+		return true;
+	}
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	@Override
+	public String toString(){
+		return "TimeWindow(" + windowMillis + "ms)";
+	}
+}
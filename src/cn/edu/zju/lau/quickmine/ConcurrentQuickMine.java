@@ -0,0 +1,196 @@
+package cn.edu.zju.lau.quickmine;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cn.edu.zju.lau.quickmine.model.ConcurrentRuleCache;
+import cn.edu.zju.lau.quickmine.model.Suffix;
+
+/**
+ * 可以被多个线程（如NameNode的RPC handler线程）同时调用的QuickMine：
+ * 		1. 每个客户端（或每个线程）有自己的访问窗口，只在自己的窗口上生成规则，不同客户端互不等待；
+ * 		2. 规则存放在ConcurrentRuleCache中，按prefix分段加锁，替换采用CLOCK（近似LRU）。
+ *
+ * 规则的生成方式与QuickMine.miningByStep相同：Ai & Aj -> Ak, i < j < k, j - i <= maxGap, k - j <= maxGap，
+ * 但窗口按客户端区分，交错到达的不同客户端的访问不会组成规则。
+ *
+ * @author yuki
+ * @date 2013-12-15
+ */
+public class ConcurrentQuickMine {
+
+	private int maxGap;					// 关联序列间的最大间隔为maxGap j - i <= maxGap
+	private int maxPrefixNum;			// Rule Cache中对多的prefix数量
+	private int maxSuffixNum;			// Rule Cache中每个prefix对应的最多的suffix数量
+	private ConcurrentRuleCache ruleCache;	// 存放生成的关联规则
+
+	private ConcurrentHashMap<String, HistoryWindow> clientWindows;	// 客户端 -> 访问窗口
+	private ThreadLocal<HistoryWindow> threadWindow;					// 不区分客户端时，每个线程的访问窗口
+
+	/**
+	 * maxPrefixNum、maxSuffixNum、maxGap都必须在构造时指定，没有setters，因为需要用来创建RuleCache和访问窗口。
+	 */
+	public ConcurrentQuickMine(){
+		this(1024, 16, 5);
+	}
+
+	public ConcurrentQuickMine(int maxPrefixNum, int maxSuffixNum, int maxGap){
+		this.maxPrefixNum = maxPrefixNum;
+		this.maxSuffixNum = maxSuffixNum;
+		this.maxGap = maxGap;
+		this.ruleCache = new ConcurrentRuleCache(maxPrefixNum, maxSuffixNum);
+		this.clientWindows = new ConcurrentHashMap<String, HistoryWindow>();
+		this.threadWindow = new ThreadLocal<HistoryWindow>();
+	}
+
+	/**
+	 * 增量挖掘关联规则：在当前线程的访问窗口中添加一个新的访问记录，同时生成新rule
+	 * @param log
+	 */
+	public void miningByStep(String log){
+
+		HistoryWindow window = threadWindow.get();
+		if(window == null){
+			window = new HistoryWindow(2 * maxGap + 1);
+			threadWindow.set(window);
+		}
+		miningByStep(window, log);
+	}
+
+	/**
+	 * 增量挖掘关联规则：在客户端clientId的访问窗口中添加一个新的访问记录，同时生成新rule
+	 * @param clientId	客户端标识，如ugi、ip
+	 * @param log
+	 */
+	public void miningByStep(String clientId, String log){
+
+		HistoryWindow window = clientWindows.get(clientId);
+		if(window == null){
+			HistoryWindow newWindow = new HistoryWindow(2 * maxGap + 1);
+			window = clientWindows.putIfAbsent(clientId, newWindow);
+			if(window == null){
+				window = newWindow;
+			}
+		}
+
+		// 同一个客户端的访问可能由不同的线程处理，只锁住该客户端的窗口
+		synchronized(window){
+			miningByStep(window, log);
+		}
+	}
+
+	private void miningByStep(HistoryWindow window, String log){
+
+		window.add(log);
+
+		// 根据规则 Ai & Aj -> Ak, i < j < k, j - i <= maxGap, k - j <= maxGap 生成新规则
+		// 从后向前，确定maxGap的区间找prefix
+		int lastPos = window.size() - 1;
+		for(int j = lastPos - 1; j >= lastPos - maxGap && j >= 1; j --){
+			// 类似  a|b -> b 这种规则不生成
+			if(window.get(j).equals(log)){
+				continue;
+			}
+
+			for(int i = j - 1; i >= j - maxGap && i >= 0; i--){
+
+				// 类似 a|b -> a 这种规则不生成
+				if(window.get(i).equals(log)){
+					continue;
+				}
+
+				ruleCache.addRule(window.get(i) + "|" + window.get(j), log);
+			}
+		}
+	}
+
+	/**
+	 * 根据prefix返回预测的后缀列表
+	 * @param prefix
+	 * @return
+	 */
+	public List<Suffix> getPredictSuffix(String prefix){
+		return ruleCache.getSuffixes(prefix);
+	}
+
+	/**
+	 * 客户端最近两次访问构成的prefix
+	 * @param clientId
+	 * @return	"a|b"，访问少于两次时返回null
+	 */
+	public String getClientPrefix(String clientId){
+
+		HistoryWindow window = clientWindows.get(clientId);
+		if(window == null){
+			return null;
+		}
+		synchronized(window){
+			int size = window.size();
+			return size < 2 ? null : window.get(size - 2) + "|" + window.get(size - 1);
+		}
+	}
+
+	/**
+	 * 客户端断开时，丢弃其访问窗口
+	 * @param clientId
+	 */
+	public void removeClient(String clientId){
+		clientWindows.remove(clientId);
+	}
+
+	/**
+	 * 长度固定的环形访问窗口，满了之后覆盖最老的访问
+	 */
+	private static class HistoryWindow {
+
+		private String[] logs;
+		private int start;		// 最老的访问的位置
+		private int size;
+
+		HistoryWindow(int capacity){
+			this.logs = new String[capacity];
+			this.start = 0;
+			this.size = 0;
+		}
+
+		void add(String log){
+			if(size < logs.length){
+				logs[(start + size++) % logs.length] = log;
+			}
+			else{
+				logs[start] = log;
+				start = (start + 1) % logs.length;
+			}
+		}
+
+		/**
+		 * 第i个访问，0为最老的访问
+		 */
+		String get(int i){
+			return logs[(start + i) % logs.length];
+		}
+
+		int size(){
+			return size;
+		}
+	}
+
+
+	/* getters and setters */
+
+	public int getMaxGap() {
+		return maxGap;
+	}
+
+	public int getMaxPrefixNum() {
+		return maxPrefixNum;
+	}
+
+	public int getMaxSuffixNum() {
+		return maxSuffixNum;
+	}
+
+	public ConcurrentRuleCache getRuleCache() {
+		return ruleCache;
+	}
+}
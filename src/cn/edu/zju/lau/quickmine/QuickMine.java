@@ -1,14 +1,31 @@
 package cn.edu.zju.lau.quickmine;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import cn.edu.zju.lau.cminer.io.hdfs.AuditLogReader;
+import cn.edu.zju.lau.cminer.io.hdfs.ParallelAuditLogLoader;
 import cn.edu.zju.lau.quickmine.model.RuleCache;
 import cn.edu.zju.lau.quickmine.model.Suffix;
 import cn.edu.zju.lau.quickmine.model.SuffixList;
+import cn.edu.zju.lau.utils.FileDictionary;
+import cn.edu.zju.lau.utils.IntList;
 
 /**
  * 实现论文《Context-Aware Prefetching at the Storage Server》中阐述的挖掘Block访问关联性的方法。
+ * 文件名映射为int ID，on-the-fly挖掘时最近的访问保存在长度固定的环形数组中，prefix为两个ID拼接的long，
+ * 每次访问不移动窗口、不拼接字符串。
+ * 批量挖掘也通过长度为 2 * maxGap + 1 的窗口顺序进行，可以直接流式读取Audit Log，或按文件范围多线程挖掘后合并。
+ * on-the-fly挖掘时字典会不断增长，字典大小超过上次压缩后的两倍（至少为RuleCache容量的两倍）时压缩字典，
+ * 只保留仍在RuleCache中的prefix和窗口中的文件，长期运行时占用的内存与RuleCache的容量成正比。
+ * 批量挖掘不压缩字典，字典大小与输入中不同文件的个数成正比。
  * @author yuki
  * @date 2013-11-26
  */
@@ -18,7 +35,11 @@ public class QuickMine {
 	private int maxPrefixNum;			// Rule Cache中对多的prefix数量
 	private int maxSuffixNum;			// Rule Cache中每个prefix对应的最多的suffix数量
 	private List<String> accessLogs;  	// 待挖掘的访问序列
-	private List<String> currentLogs;	// on-the-fly生成规则的过程中，需要保存的日志
+	private int[] currentLogs;			// on-the-fly生成规则的过程中，需要保存的日志（文件ID），环形数组
+	private int currentStart;			// currentLogs中最老的日志的位置
+	private int currentSize;			// currentLogs中日志的个数
+	private FileDictionary dictionary;	// 文件名 <-> 文件ID
+	private int compactThreshold;		// on-the-fly挖掘时，字典大小超过该值则压缩
 	private RuleCache ruleCache;		// 存放生成的关联规则
 	
 	/**
@@ -29,8 +50,9 @@ public class QuickMine {
 		this.maxPrefixNum = 1024;
 		this.maxSuffixNum = 16;
 		this.accessLogs = new ArrayList<String>();
-		this.currentLogs = new ArrayList<String>();
-		this.ruleCache = new RuleCache(this.maxPrefixNum, this.maxSuffixNum);
+		this.dictionary = new FileDictionary();
+		this.ruleCache = new RuleCache(this.maxPrefixNum, this.maxSuffixNum, this.dictionary);
+		resetCurrentLogs();
 	}
 	
 	public QuickMine(int maxPrefixNum, int maxSuffixNum){
@@ -38,8 +60,9 @@ public class QuickMine {
 		this.maxSuffixNum = maxSuffixNum;
 		this.maxGap = 5;
 		this.accessLogs = new ArrayList<String>();
-		this.currentLogs = new ArrayList<String>();
-		this.ruleCache = new RuleCache(this.maxPrefixNum, this.maxSuffixNum);
+		this.dictionary = new FileDictionary();
+		this.ruleCache = new RuleCache(this.maxPrefixNum, this.maxSuffixNum, this.dictionary);
+		resetCurrentLogs();
 	}
 	
 	public QuickMine(int maxPrefixNum, int maxSuffixNum, int maxGap){
@@ -47,8 +70,9 @@ public class QuickMine {
 		this.maxSuffixNum = maxSuffixNum;
 		this.maxGap = maxGap;
 		this.accessLogs = new ArrayList<String>();
-		this.currentLogs = new ArrayList<String>();
-		this.ruleCache = new RuleCache(this.maxPrefixNum, this.maxSuffixNum);
+		this.dictionary = new FileDictionary();
+		this.ruleCache = new RuleCache(this.maxPrefixNum, this.maxSuffixNum, this.dictionary);
+		resetCurrentLogs();
 	}
 
 	/**
@@ -63,19 +87,134 @@ public class QuickMine {
 		}
 		
 		// 根据规则 Ai & Aj -> Ak, i < j < k, j - i <= maxGap, k - j <= maxGap 生成规则
-		for(int i = 0; i < accessLogs.size() - 2; i++){
+		BatchWindow window = new BatchWindow(ruleCache, maxGap);
+		for(String log: accessLogs){
+			window.add(dictionary.intern(log));
+		}
+		window.flush();
+	}
+	
+	/**
+	 * 批量挖掘关联规则：顺序读取Audit Log中的所有访问，生成所有的规则，只保存 2 * maxGap + 1 个访问。
+	 * 生成的规则及其顺序与将所有访问放入accessLogs后调用miningByBatch()相同。
+	 * 
+	 * @param reader	其FileDictionary与本QuickMine不同时，按文件名转换ID
+	 * @throws IOException
+	 */
+	public void miningByBatch(AuditLogReader reader) throws IOException{
+		
+		FileDictionary readerDictionary = reader.getDictionary();
+		IntList local2Global = new IntList();
+		
+		BatchWindow window = new BatchWindow(ruleCache, maxGap);
+		for(int file = reader.next(); file >= 0; file = reader.next()){
 			
-			for(int j = i + 1; j <= maxGap + i && j < accessLogs.size() - 1; j++){
-				
-				String prefix = accessLogs.get(i) + "|" + accessLogs.get(j);
-				
-				for(int k = j + 1; k <= maxGap + j && k < accessLogs.size(); k++){
-					
-					String suffix = accessLogs.get(k);
-					ruleCache.addRule(prefix, suffix);
+			if(readerDictionary != dictionary){
+				while(local2Global.size() <= file){
+					local2Global.add(-1);
+				}
+				if(local2Global.get(file) < 0){
+					local2Global.set(file, dictionary.intern(readerDictionary.getName(file)));
 				}
+				file = local2Global.get(file);
+			}
+			window.add(file);
+		}
+		window.flush();
+	}
+	
+	/**
+	 * 多线程批量挖掘一个Audit Log：
+	 * 		1. 按字节将文件划分为threadNum个范围（见ParallelAuditLogLoader.splitRanges）；
+	 * 		2. 每个线程挖掘一个范围，规则存入线程自己的RuleCache，Ai在本范围内的规则都由本线程生成，
+	 * 		   为此读完本范围后再读取下一个范围的前 2 * maxGap 个访问；
+	 * 		3. 按范围顺序将各线程的RuleCache合并到本QuickMine的RuleCache中。
+	 * 
+	 * 不发生替换时，合并后每条规则的support与单线程挖掘相同；suffix在相同support中的先后顺序可能不同。
+	 * 每个线程的RuleCache容量都为maxPrefixNum、maxSuffixNum，线程内发生替换时，被替换的部分不会参与合并，
+	 * 结果与单线程挖掘不完全相同。
+	 * 
+	 * @param filePath
+	 * @param cutCommonPrefix	需要截断的文件名公共前缀
+	 * @param threadNum
+	 * @throws IOException
+	 */
+	public void miningByBatch(final String filePath, final String cutCommonPrefix, int threadNum) throws IOException{
+		
+		long[] boundaries = new ParallelAuditLogLoader(filePath, cutCommonPrefix, threadNum).splitRanges();
+		int rangeNum = boundaries.length - 1;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadNum, rangeNum)));
+		try{
+			List<Future<RuleCache>> futures = new ArrayList<Future<RuleCache>>();
+			for(int i = 0; i < rangeNum; i++){
+				final long rangeStart = boundaries[i];
+				final long rangeEnd = boundaries[i + 1];
+				
+				futures.add(executor.submit(new Callable<RuleCache>() {
+					@Override
+					public RuleCache call() throws IOException {
+						return miningRange(filePath, cutCommonPrefix, rangeStart, rangeEnd);
+					}
+				}));
+			}
+			
+			// 按范围顺序合并
+			for(Future<RuleCache> future: futures){
+				ruleCache.merge(future.get());
+			}
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while mining " + filePath);
+		}
+		catch(ExecutionException e){
+			if(e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException("Failed to mine " + filePath, e.getCause());
+		}
+		finally{
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * 挖掘[rangeStart, rangeEnd)中的访问作为Ai的所有规则，使用局部的FileDictionary和RuleCache
+	 */
+	private RuleCache miningRange(String filePath, String cutCommonPrefix, long rangeStart, long rangeEnd) throws IOException{
+		
+		FileDictionary localDictionary = new FileDictionary();
+		RuleCache localCache = new RuleCache(maxPrefixNum, maxSuffixNum, localDictionary);
+		BatchWindow window = new BatchWindow(localCache, maxGap);
+		
+		AuditLogReader reader = new AuditLogReader(filePath, localDictionary, cutCommonPrefix,
+				AuditLogReader.DEFAULT_CHUNK_SIZE, rangeStart, rangeEnd);
+		try{
+			for(int file = reader.next(); file >= 0; file = reader.next()){
+				window.add(file);
+			}
+		}
+		finally{
+			reader.close();
+		}
+		
+		// 下一个范围的前 2 * maxGap 个访问只作为Aj、Ak
+		window.endOwnRange();
+		reader = new AuditLogReader(filePath, localDictionary, cutCommonPrefix,
+				AuditLogReader.DEFAULT_CHUNK_SIZE, rangeEnd, -1);
+		try{
+			int file;
+			for(int i = 0; i < 2 * maxGap && (file = reader.next()) >= 0; i++){
+				window.add(file);
 			}
 		}
+		finally{
+			reader.close();
+		}
+		window.flush();
+		
+		return localCache;
 	}
 	
 	/**
@@ -85,64 +224,192 @@ public class QuickMine {
 	 */
 	public synchronized void miningByStep(String log){
 		
-		int maxSize = 2 * maxGap + 1;
-				
-		// 如果currentLogs.size < maxSize, 则直接添加新log
-		if(currentLogs.size() < maxSize){
-			currentLogs.add(log);
+		int file = dictionary.intern(log);
+		if(dictionary.size() > compactThreshold){
+			file = compactDictionary(file);
+		}
+		
+		// 如果currentLogs未满, 则直接添加新log；否则覆盖最老的log
+		if(currentSize < currentLogs.length){
+			currentLogs[(currentStart + currentSize++) % currentLogs.length] = file;
 		}
-		// 如果currentLogs.size >= maxSize, 则需要剔除最老的log，再添加新log
 		else{
-			currentLogs.remove(0);
-			currentLogs.add(log);
+			currentLogs[currentStart] = file;
+			currentStart = (currentStart + 1) % currentLogs.length;
 		}
 		
 		// 根据规则 Ai & Aj -> Ak, i < j < k, j - i <= maxGap, k - j <= maxGap 生成新规则
 		// 从后向前，确定maxGap的区间找prefix
-		int lastPos = currentLogs.size() - 1;
+		int lastPos = currentSize - 1;
 		for(int j = lastPos - 1; j >= lastPos - maxGap && j >= 1; j --){
 			// 类似  a|b -> b 这种规则不生成
-			if(currentLogs.get(j).equals(log)){
+			int prefixSecond = getCurrentLog(j);
+			if(prefixSecond == file){
 				continue;
 			}
 			
 			for(int i = j - 1; i >= j - maxGap && i >= 0; i--){
 				
 				// 类似 a|b -> a 这种规则不生成
-				if(currentLogs.get(i).equals(log)){
+				int prefixFirst = getCurrentLog(i);
+				if(prefixFirst == file){
 					continue;
 				}
 				
-				ruleCache.addRule(currentLogs.get(i) + "|" + currentLogs.get(j), log);
+				ruleCache.addRule(RuleCache.prefixKey(prefixFirst, prefixSecond), log);
 			}
 		}
 	}
 	
+	/**
+	 * 压缩字典，保留窗口中的文件及新加入的文件，窗口中的文件ID随之转换
+	 * @param file	新加入的文件
+	 * @return	新加入的文件的新ID
+	 */
+	private int compactDictionary(int file){
+		
+		int[] pinned = new int[currentSize + 1];
+		for(int i = 0; i < currentSize; i++){
+			pinned[i] = getCurrentLog(i);
+		}
+		pinned[currentSize] = file;
+		
+		int[] old2New = ruleCache.compactDictionary(pinned);
+		for(int i = 0; i < currentSize; i++){
+			int position = (currentStart + i) % currentLogs.length;
+			currentLogs[position] = old2New[currentLogs[position]];
+		}
+		
+		updateCompactThreshold();
+		return old2New[file];
+	}
+	
+	private void updateCompactThreshold(){
+		compactThreshold = 2 * Math.max(dictionary.size(), ruleCache.getMaxCapacity() + currentLogs.length);
+	}
+	
+	/**
+	 * currentLogs中第i个日志的文件ID，0为最老的日志
+	 */
+	private int getCurrentLog(int i){
+		return currentLogs[(currentStart + i) % currentLogs.length];
+	}
+	
+	/**
+	 * 清空on-the-fly挖掘时保存的日志，窗口大小为 2 * maxGap + 1
+	 */
+	private void resetCurrentLogs(){
+		this.currentLogs = new int[2 * maxGap + 1];
+		this.currentStart = 0;
+		this.currentSize = 0;
+		updateCompactThreshold();
+	}
+	
 	/**
 	 * 根据prefix返回预测的后缀列表
 	 * @param prefix
 	 * @return
 	 */
-	public List<Suffix> getPredictSuffix(String prefix){
+	public synchronized List<Suffix> getPredictSuffix(String prefix){
 		
 		List<Suffix> suffixList = new ArrayList<Suffix>();
-		SuffixList suffixes = ruleCache.getRules().get(prefix);
+		SuffixList suffixes = ruleCache.getSuffixList(prefix);
 		
+		// SuffixList中的Suffix会被原地修改，返回副本
 		if(suffixes != null){
-			suffixList.addAll(suffixes.getSuffixList());
+			for(Suffix suffix: suffixes.getSuffixList()){
+				suffixList.add(new Suffix(suffix.getSuffix(), suffix.getSupport()));
+			}
 		}
 		
 		return suffixList;
 	}
 	
+	/**
+	 * 批量挖掘时的访问窗口：保存最近的 2 * maxGap + 1 个访问，窗口满时生成以最老的访问为Ai的所有规则，然后将其移出。
+	 * 生成规则的顺序与在整个访问序列上按i、j、k三重循环相同。
+	 */
+	private static class BatchWindow {
+		
+		private RuleCache ruleCache;
+		private FileDictionary dictionary;
+		private int maxGap;
+		
+		private int[] files;		// 环形数组
+		private int start;			// 最老的访问的位置
+		private int size;
+		private long removed;		// 已移出窗口的访问数
+		private long limit;			// 只有前limit个访问作为Ai生成规则
+		
+		BatchWindow(RuleCache ruleCache, int maxGap){
+			this.ruleCache = ruleCache;
+			this.dictionary = ruleCache.getDictionary();
+			this.maxGap = maxGap;
+			this.files = new int[2 * maxGap + 1];
+			this.start = 0;
+			this.size = 0;
+			this.removed = 0;
+			this.limit = Long.MAX_VALUE;
+		}
+		
+		void add(int file){
+			files[(start + size++) % files.length] = file;
+			if(size == files.length){
+				removeOldest();
+			}
+		}
+		
+		/**
+		 * 访问序列结束，依次移出剩余的访问
+		 */
+		void flush(){
+			while(size > 0){
+				removeOldest();
+			}
+		}
+		
+		/**
+		 * 之后加入的访问只作为Aj、Ak，不再作为Ai
+		 */
+		void endOwnRange(){
+			limit = removed + size;
+		}
+		
+		private void removeOldest(){
+			
+			if(removed < limit){
+				int first = files[start];
+				for(int j = 1; j <= maxGap && j < size - 1; j++){
+					
+					long prefix = RuleCache.prefixKey(first, get(j));
+					
+					for(int k = j + 1; k <= maxGap + j && k < size; k++){
+						ruleCache.addRule(prefix, dictionary.getName(get(k)));
+					}
+				}
+			}
+			start = (start + 1) % files.length;
+			size--;
+			removed++;
+		}
+		
+		private int get(int i){
+			return files[(start + i) % files.length];
+		}
+	}
+	
 	/* getters and setters */
 	
 	public int getMaxGap() {
 		return maxGap;
 	}
 
-	public void setMaxGap(int maxGap) {
+	/**
+	 * 窗口大小随maxGap改变，on-the-fly挖掘保存的日志被清空
+	 */
+	public synchronized void setMaxGap(int maxGap) {
 		this.maxGap = maxGap;
+		resetCurrentLogs();
 	}
 
 	public List<String> getAccessLogs() {
@@ -153,8 +420,15 @@ public class QuickMine {
 		this.accessLogs = accessLogs;
 	}
 
-	public List<String> getCurrentLogs() {
-		return currentLogs;
+	/**
+	 * on-the-fly挖掘时保存的日志，从最老到最新
+	 */
+	public synchronized List<String> getCurrentLogs() {
+		List<String> logs = new ArrayList<String>(currentSize);
+		for(int i = 0; i < currentSize; i++){
+			logs.add(dictionary.getName(getCurrentLog(i)));
+		}
+		return logs;
 	}
 	
 	public int getMaxPrefixNum() {
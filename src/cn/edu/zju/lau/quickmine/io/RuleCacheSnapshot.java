@@ -0,0 +1,233 @@
+package cn.edu.zju.lau.quickmine.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import cn.edu.zju.lau.quickmine.model.RuleCache;
+import cn.edu.zju.lau.quickmine.model.Suffix;
+import cn.edu.zju.lau.utils.FileDictionary;
+
+/**
+ * RuleCache的快照：将一个QuickMine挖掘出的规则编码为紧凑的字节序列，在其他节点（或线程）上合并到另一个RuleCache中，
+ * 不需要重放访问日志。格式：
+ * 		1. 头部：MAGIC、VERSION、maxCapacity、maxSuffixCapacity，各为一个int；
+ * 		2. 字符串字典：个数，之后每个文件路径为 UTF-8字节数 + UTF-8字节，只包含规则中出现的路径，按第一次出现的顺序编号；
+ * 		3. 规则：prefix个数，之后按从最久未使用到最近使用的顺序，每个prefix为
+ * 		   A的编号、B的编号、suffix个数，以及按排名排序的 (suffix的编号, support)。
+ * 除头部外，所有整数都是变长编码（每字节7位，最高位表示后面还有字节）。
+ *
+ * 合并时相同prefix的support相加、重新排序，超出maxSuffixCapacity的suffix被移除（见RuleCache.merge）。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class RuleCacheSnapshot {
+
+	static final int MAGIC = 0x514D5243;	// "QMRC"
+	static final int VERSION = 1;
+
+	private RuleCacheSnapshot(){
+
+	}
+
+	/**
+	 * 将RuleCache编码为快照
+	 * @param cache
+	 * @return
+	 */
+	public static byte[] encode(RuleCache cache){
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try{
+			write(cache, bytes);
+		}
+		catch(IOException e){
+			throw new IllegalStateException("Failed to encode rule cache", e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * 将RuleCache的快照写入out，不关闭out
+	 * @param cache
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void write(RuleCache cache, OutputStream out) throws IOException{
+
+		FileDictionary dictionary = cache.getDictionary();
+		FileDictionary strings = new FileDictionary();
+
+		// 先编码规则，同时为出现的文件路径编号
+		ByteArrayOutputStream ruleBytes = new ByteArrayOutputStream();
+		DataOutputStream rules = new DataOutputStream(ruleBytes);
+
+		long[] keys = cache.getRules().keys();
+		writeVarInt(rules, keys.length);
+		for(int i = keys.length - 1; i >= 0; i--){
+
+			writeVarInt(rules, strings.intern(dictionary.getName((int) (keys[i] >>> 32))));
+			writeVarInt(rules, strings.intern(dictionary.getName((int) keys[i])));
+
+			List<Suffix> suffixes = cache.getRules().peek(keys[i]).getSuffixList();
+			writeVarInt(rules, suffixes.size());
+			for(Suffix suffix: suffixes){
+				writeVarInt(rules, strings.intern(suffix.getSuffix()));
+				writeVarInt(rules, suffix.getSupport());
+			}
+		}
+		rules.flush();
+
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(cache.getMaxCapacity());
+		data.writeInt(cache.getMaxSuffixCapacity());
+
+		writeVarInt(data, strings.size());
+		for(int id = 0; id < strings.size(); id++){
+			byte[] path = strings.getName(id).getBytes(StandardCharsets.UTF_8);
+			writeVarInt(data, path.length);
+			data.write(path);
+		}
+		ruleBytes.writeTo(data);
+		data.flush();
+	}
+
+	/**
+	 * 由快照创建RuleCache，容量与快照中的相同
+	 * @param snapshot
+	 * @return
+	 * @throws IOException	快照格式不正确
+	 */
+	public static RuleCache decode(byte[] snapshot) throws IOException{
+		return read(new ByteArrayInputStream(snapshot));
+	}
+
+	/**
+	 * 读取快照，创建RuleCache，容量与快照中的相同
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static RuleCache read(InputStream in) throws IOException{
+
+		DataInputStream data = new DataInputStream(in);
+		readHeader(data);
+		RuleCache cache = new RuleCache(data.readInt(), data.readInt());
+		readRules(data, cache);
+		return cache;
+	}
+
+	/**
+	 * 将快照合并到target中
+	 * @param snapshot
+	 * @param target
+	 * @throws IOException	快照格式不正确
+	 */
+	public static void merge(byte[] snapshot, RuleCache target) throws IOException{
+		merge(new ByteArrayInputStream(snapshot), target);
+	}
+
+	/**
+	 * 读取快照，合并到target中：prefix按快照中从最久未使用到最近使用的顺序加入，
+	 * 每个prefix的suffix按排名从后到前加入，support相同时保持快照中的先后顺序
+	 * @param in
+	 * @param target
+	 * @throws IOException
+	 */
+	public static void merge(InputStream in, RuleCache target) throws IOException{
+
+		DataInputStream data = new DataInputStream(in);
+		readHeader(data);
+		data.readInt();		// maxCapacity
+		data.readInt();		// maxSuffixCapacity
+		readRules(data, target);
+	}
+
+	private static void readHeader(DataInputStream data) throws IOException{
+
+		if(data.readInt() != MAGIC){
+			throw new IOException("Not a rule cache snapshot");
+		}
+		int version = data.readInt();
+		if(version != VERSION){
+			throw new IOException("Unsupported rule cache snapshot version " + version);
+		}
+	}
+
+	private static void readRules(DataInputStream data, RuleCache target) throws IOException{
+
+		FileDictionary dictionary = target.getDictionary();
+
+		// 快照中的编号 -> target中的文件ID
+		int stringNum = readVarInt(data);
+		int[] id2File = new int[stringNum];
+		String[] id2Name = new String[stringNum];
+		for(int id = 0; id < stringNum; id++){
+			byte[] path = new byte[readVarInt(data)];
+			data.readFully(path);
+			id2Name[id] = new String(path, StandardCharsets.UTF_8);
+			id2File[id] = dictionary.intern(id2Name[id]);
+		}
+
+		int prefixNum = readVarInt(data);
+		int[] suffixIds = new int[0];
+		int[] supports = new int[0];
+		for(int i = 0; i < prefixNum; i++){
+
+			long prefixKey = RuleCache.prefixKey(id2File[readId(data, stringNum)], id2File[readId(data, stringNum)]);
+
+			int suffixNum = readVarInt(data);
+			if(suffixIds.length < suffixNum){
+				suffixIds = new int[suffixNum];
+				supports = new int[suffixNum];
+			}
+			for(int j = 0; j < suffixNum; j++){
+				suffixIds[j] = readId(data, stringNum);
+				supports[j] = readVarInt(data);
+			}
+			for(int j = suffixNum - 1; j >= 0; j--){
+				target.addRule(prefixKey, id2Name[suffixIds[j]], supports[j]);
+			}
+		}
+	}
+
+	private static int readId(DataInputStream data, int stringNum) throws IOException{
+
+		int id = readVarInt(data);
+		if(id >= stringNum){
+			throw new IOException("Corrupt rule cache snapshot: string id " + id + " >= " + stringNum);
+		}
+		return id;
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException{
+
+		while((value & ~0x7F) != 0){
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException{
+
+		int value = 0;
+		for(int shift = 0; shift < 35; shift += 7){
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0){
+				return value;
+			}
+		}
+		throw new IOException("Corrupt rule cache snapshot: varint too long");
+	}
+}
@@ -0,0 +1,218 @@
+package cn.edu.zju.lau.quickmine.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 可以被多个线程同时读写的RuleCache：prefix分散到多个分段（stripe）中，每个分段独立加锁、独立替换。
+ * 		1. 查找prefix：分段中的ConcurrentHashMap，不加锁，只设置访问位；
+ * 		2. 添加新prefix：只锁住prefix所在的分段，分段满时用CLOCK算法（近似LRU）替换：
+ * 		   时钟指针依次扫过分段中的prefix，访问位为1的清零后跳过，替换第一个访问位为0的prefix；
+ * 		3. 更新、读取某个prefix的SuffixList：只锁住该SuffixList。
+ *
+ * 与RuleCache相比，不再有全局的锁，也不再在每次get时调整LinkedHashMap的顺序，不同prefix的操作可以并行。
+ * 替换是近似LRU，且只在分段内进行：每个分段最多保存 maxCapacity / 分段数（向上取整）个prefix。
+ * 一个prefix被替换的同时，正在其SuffixList上添加的suffix可能丢失，这与替换本身一样是可以接受的近似。
+ *
+ * @author yuki
+ * @date 2013-12-15
+ */
+public class ConcurrentRuleCache {
+
+	private static final int DEFAULT_STRIPE_NUM = 64;
+
+	private Stripe[] stripes;
+	private int maxCapacity;					// Cache的容量
+	private int maxSuffixCapacity;				// 每个Prefix的SuffixList的容量
+
+	public ConcurrentRuleCache(int maxCapacity, int maxSuffixCapacity){
+		this(maxCapacity, maxSuffixCapacity, DEFAULT_STRIPE_NUM);
+	}
+
+	/**
+	 * @param maxCapacity
+	 * @param maxSuffixCapacity
+	 * @param stripeNum	分段数，向上取整为2的幂，且不超过maxCapacity
+	 */
+	public ConcurrentRuleCache(int maxCapacity, int maxSuffixCapacity, int stripeNum){
+
+		this.maxCapacity = maxCapacity;
+		this.maxSuffixCapacity = maxSuffixCapacity;
+
+		int num = 1;
+		while(num < stripeNum && num * 2 <= maxCapacity){
+			num *= 2;
+		}
+		int stripeCapacity = (maxCapacity + num - 1) / num;
+		this.stripes = new Stripe[num];
+		for(int i = 0; i < num; i++){
+			stripes[i] = new Stripe(stripeCapacity);
+		}
+	}
+
+	/**
+	 * 添加规则 prefix -> suffix
+	 * @param prefix
+	 * @param suffix
+	 * @return	prefix是否为新加入的
+	 */
+	public boolean addRule(String prefix, String suffix){
+
+		Stripe stripe = stripeFor(prefix);
+		boolean isNewRule = false;
+
+		Entry entry = stripe.rules.get(prefix);
+		if(entry == null){
+			stripe.lock.lock();
+			try{
+				entry = stripe.rules.get(prefix);
+				if(entry == null){
+					entry = stripe.insert(prefix, new SuffixList(maxSuffixCapacity));
+					isNewRule = true;
+				}
+			}
+			finally{
+				stripe.lock.unlock();
+			}
+		}
+
+		entry.referenced = true;
+		synchronized(entry.suffixes){
+			entry.suffixes.add(suffix);
+		}
+		return isNewRule;
+	}
+
+	/**
+	 * 获取prefix对应的后缀列表的副本，按support由大到小排序
+	 * @param prefix
+	 * @return	后缀列表，prefix不存在时为空列表
+	 */
+	public List<Suffix> getSuffixes(String prefix){
+
+		List<Suffix> suffixes = new ArrayList<Suffix>();
+		Entry entry = stripeFor(prefix).rules.get(prefix);
+		if(entry != null){
+			entry.referenced = true;
+			synchronized(entry.suffixes){
+				for(Suffix suffix: entry.suffixes.getSuffixList()){
+					suffixes.add(new Suffix(suffix.getSuffix(), suffix.getSupport()));
+				}
+			}
+		}
+		return suffixes;
+	}
+
+	/**
+	 * 当前保存的prefix个数
+	 */
+	public int size(){
+
+		int size = 0;
+		for(Stripe stripe: stripes){
+			size += stripe.rules.size();
+		}
+		return size;
+	}
+
+	@Override
+	public String toString(){
+
+		StringBuilder sb = new StringBuilder();
+		for(Stripe stripe: stripes){
+			for(Map.Entry<String, Entry> entry: stripe.rules.entrySet()){
+				synchronized(entry.getValue().suffixes){
+					sb.append(entry.getKey()).append("->").append(entry.getValue().suffixes).append("\n");
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	private Stripe stripeFor(String prefix){
+
+		int h = prefix.hashCode();
+		h ^= (h >>> 16);
+		h *= 0x85EBCA6B;
+		h ^= (h >>> 13);
+		return stripes[h & (stripes.length - 1)];
+	}
+
+	/**
+	 * 一个prefix及其后缀列表，referenced为CLOCK算法的访问位
+	 */
+	private static class Entry {
+
+		private final String prefix;
+		private final SuffixList suffixes;
+		private volatile boolean referenced;
+
+		Entry(String prefix, SuffixList suffixes){
+			this.prefix = prefix;
+			this.suffixes = suffixes;
+			this.referenced = true;
+		}
+	}
+
+	/**
+	 * 一个分段：prefix -> Entry，以及CLOCK算法的环形槽位
+	 */
+	private static class Stripe {
+
+		private final ConcurrentHashMap<String, Entry> rules;
+		private final ReentrantLock lock;		// 只在插入、替换时使用
+		private final Entry[] clock;			// 环形槽位，依次存放分段中的Entry
+		private int hand;						// 时钟指针
+		private int used;						// 已使用的槽位数
+
+		Stripe(int capacity){
+			this.rules = new ConcurrentHashMap<String, Entry>(capacity * 2);
+			this.lock = new ReentrantLock();
+			this.clock = new Entry[Math.max(capacity, 1)];
+			this.hand = 0;
+			this.used = 0;
+		}
+
+		/**
+		 * 插入新的prefix，分段已满时替换时钟指针扫到的第一个访问位为0的prefix。调用时必须持有lock。
+		 */
+		Entry insert(String prefix, SuffixList suffixes){
+
+			Entry entry = new Entry(prefix, suffixes);
+			if(used < clock.length){
+				clock[used++] = entry;
+				rules.put(prefix, entry);
+				return entry;
+			}
+
+			// 访问位为1的清零，给它第二次机会
+			while(clock[hand].referenced){
+				clock[hand].referenced = false;
+				hand = (hand + 1) % clock.length;
+			}
+			rules.remove(clock[hand].prefix);
+			clock[hand] = entry;
+			hand = (hand + 1) % clock.length;
+			rules.put(prefix, entry);
+			return entry;
+		}
+	}
+
+
+	/* getters */
+
+	public int getMaxCapacity() {
+		return maxCapacity;
+	}
+
+	public int getMaxSuffixCapacity() {
+		return maxSuffixCapacity;
+	}
+
+	public int getStripeNum() {
+		return stripes.length;
+	}
+}
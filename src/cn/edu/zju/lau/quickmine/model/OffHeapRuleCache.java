@@ -0,0 +1,481 @@
+package cn.edu.zju.lau.quickmine.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import cn.edu.zju.lau.utils.FileDictionary;
+
+/**
+ * 存放在堆外内存（direct ByteBuffer）中的RuleCache，用于保存千万级的prefix：
+ * 		1. 每个prefix占用一个固定大小的槽位：状态、suffix个数、prefix键（见RuleCache.prefixKey），
+ * 		   以及maxSuffixCapacity个 (suffix文件ID, support)；
+ * 		2. 槽位组成开放寻址（线性探测）表，删除时后移填补空位；
+ * 		3. prefix个数达到maxCapacity后，用CLOCK算法（近似LRU）替换：时钟指针依次扫过槽位，
+ * 		   访问位为1的清零后跳过，替换第一个访问位为0的prefix。
+ *
+ * 槽位内suffix的顺序与SuffixList相同：按support由大到小，新增或support增加的suffix排在相同support的第一个位置，
+ * 超出maxSuffixCapacity时移除最后一个。每个prefix只占 16 + 8 * maxSuffixCapacity 字节，
+ * 堆中只有FileDictionary，不产生需要GC的对象。
+ *
+ * 需要的堆外内存约为 4/3 * maxCapacity * 槽位大小，受JVM参数-XX:MaxDirectMemorySize限制。
+ * 非线程安全，多线程使用时由调用者加锁。
+ *
+ * FileDictionary只增不减，被替换的prefix中的文件名仍留在字典中；与RuleCache相同，
+ * 调用者可以在字典过大时调用compactDictionary，只保留仍在使用的文件名。
+ * 与RuleCache没有共同的接口，QuickMine不使用它，需要时单独使用。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class OffHeapRuleCache {
+
+	private static final int STATE_OFFSET = 0;		// 状态：USED、REFERENCED
+	private static final int COUNT_OFFSET = 4;		// suffix个数
+	private static final int KEY_OFFSET = 8;		// prefix键
+	private static final int SUFFIX_OFFSET = 16;	// (suffix文件ID, support) * maxSuffixCapacity
+
+	private static final int USED = 1;
+	private static final int REFERENCED = 2;
+	private static final int PENDING = 4;			// 压缩字典时，文件ID已改写、还没有放到新位置的槽位
+
+	private static final int MAX_BUFFER_SIZE = 1 << 30;	// 单个ByteBuffer的最大字节数
+
+	private ByteBuffer[] buffers;
+	private int slotSize;			// 每个槽位的字节数
+	private int bufferShift;		// 槽位 -> ByteBuffer：slot >>> bufferShift
+	private int slotMask;			// 表大小 - 1
+	private int hand;				// 时钟指针
+	private int size;				// 已保存的prefix个数
+
+	private FileDictionary dictionary;	// 文件名 <-> 文件ID
+	private int maxCapacity;			// Cache的容量
+	private int maxSuffixCapacity;		// 每个Prefix的后缀的容量
+
+	public OffHeapRuleCache(int maxCapacity, int maxSuffixCapacity){
+		this(maxCapacity, maxSuffixCapacity, new FileDictionary());
+	}
+
+	public OffHeapRuleCache(int maxCapacity, int maxSuffixCapacity, FileDictionary dictionary){
+
+		this.maxCapacity = Math.max(maxCapacity, 1);
+		this.maxSuffixCapacity = Math.max(maxSuffixCapacity, 0);
+		this.dictionary = dictionary;
+		this.slotSize = SUFFIX_OFFSET + 8 * this.maxSuffixCapacity;
+
+		// 装载因子不超过3/4
+		long tableSize = 2;
+		while(tableSize * 3 < (long) this.maxCapacity * 4){
+			tableSize *= 2;
+		}
+		if(tableSize > (1 << 30)){
+			throw new IllegalArgumentException("maxCapacity too large: " + maxCapacity);
+		}
+		this.slotMask = (int) tableSize - 1;
+
+		int slotsPerBuffer = 1;
+		while(slotsPerBuffer < tableSize && (long) slotsPerBuffer * 2 * slotSize <= MAX_BUFFER_SIZE){
+			slotsPerBuffer *= 2;
+		}
+		this.bufferShift = Integer.numberOfTrailingZeros(slotsPerBuffer);
+		this.buffers = new ByteBuffer[(int) (tableSize / slotsPerBuffer)];
+		for(int i = 0; i < buffers.length; i++){
+			buffers[i] = ByteBuffer.allocateDirect(slotsPerBuffer * slotSize).order(ByteOrder.nativeOrder());
+		}
+
+		this.hand = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * 添加规则 prefix -> suffix
+	 * @param prefix	A|B 形式的prefix
+	 * @param suffix
+	 * @return	prefix是否为新加入的
+	 */
+	public boolean addRule(String prefix, String suffix){
+
+		int separator = prefix.indexOf('|');
+		int first = dictionary.intern(prefix.substring(0, separator));
+		int second = dictionary.intern(prefix.substring(separator + 1));
+		return addRule(RuleCache.prefixKey(first, second), suffix);
+	}
+
+	/**
+	 * 添加规则 prefix -> suffix
+	 * @param prefixKey	RuleCache.prefixKey(A, B)
+	 * @param suffix
+	 * @return	prefix是否为新加入的
+	 */
+	public boolean addRule(long prefixKey, String suffix){
+
+		boolean isNewRule = false;
+
+		int slot = findSlot(prefixKey);
+		if(slot < 0){
+			if(size == maxCapacity){
+				evict();
+			}
+			slot = insertSlot(prefixKey);
+			isNewRule = true;
+		}
+		else{
+			setState(slot, USED | REFERENCED);
+		}
+		addSuffix(slot, dictionary.intern(suffix));
+
+		return isNewRule;
+	}
+
+	/**
+	 * 获取prefix对应的后缀列表，按support由大到小排序，并将prefix标记为最近使用
+	 * @param prefix	A|B 形式的prefix
+	 * @return	后缀列表，prefix不存在时为空列表
+	 */
+	public List<Suffix> getSuffixes(String prefix){
+
+		int separator = prefix.indexOf('|');
+		if(separator < 0){
+			return new ArrayList<Suffix>();
+		}
+		int first = dictionary.getId(prefix.substring(0, separator));
+		int second = dictionary.getId(prefix.substring(separator + 1));
+		if(first < 0 || second < 0){
+			return new ArrayList<Suffix>();
+		}
+		return getSuffixes(RuleCache.prefixKey(first, second));
+	}
+
+	/**
+	 * 获取prefix对应的后缀列表，按support由大到小排序，并将prefix标记为最近使用
+	 * @param prefixKey	RuleCache.prefixKey(A, B)
+	 * @return	后缀列表，prefix不存在时为空列表
+	 */
+	public List<Suffix> getSuffixes(long prefixKey){
+
+		int slot = findSlot(prefixKey);
+		if(slot < 0){
+			return new ArrayList<Suffix>();
+		}
+		setState(slot, USED | REFERENCED);
+		return readSuffixes(slot);
+	}
+
+	/**
+	 * 当前保存的prefix个数
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * 占用的堆外内存字节数
+	 */
+	public long getOffHeapBytes(){
+		return (long) (slotMask + 1) * slotSize;
+	}
+
+	@Override
+	public String toString(){
+
+		StringBuilder sb = new StringBuilder();
+
+		for(int slot = 0; slot <= slotMask; slot++){
+			if((getState(slot) & USED) == 0){
+				continue;
+			}
+			long key = getKey(slot);
+			sb.append(dictionary.getName((int) (key >>> 32))).append("|").append(dictionary.getName((int) key))
+			  .append("->").append(readSuffixes(slot)).append("\n");
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * 压缩字典：只保留pinned以及仍在Cache中的prefix、suffix的文件名，改写槽位中的文件ID，
+	 * prefix键改变后重新放到对应的槽位，不需要额外的堆外内存。
+	 * @param pinned	调用者仍在使用的文件ID，压缩后依次为 0, 1, 2...（重复的只保留第一个）
+	 * @return	旧文件ID -> 新文件ID，已移除的为-1
+	 */
+	public int[] compactDictionary(int[] pinned){
+
+		int[] old2New = new int[dictionary.size()];
+		Arrays.fill(old2New, -1);
+		List<String> names = new ArrayList<String>();
+
+		for(int file: pinned){
+			retain(file, old2New, names);
+		}
+		for(int slot = 0; slot <= slotMask; slot++){
+			if((getState(slot) & USED) == 0){
+				continue;
+			}
+			ByteBuffer buffer = bufferOf(slot);
+			int offset = offsetOf(slot);
+			long key = buffer.getLong(offset + KEY_OFFSET);
+			long newKey = RuleCache.prefixKey(retain((int) (key >>> 32), old2New, names), retain((int) key, old2New, names));
+			buffer.putLong(offset + KEY_OFFSET, newKey);
+			int count = buffer.getInt(offset + COUNT_OFFSET);
+			for(int i = 0; i < count; i++){
+				int position = offset + SUFFIX_OFFSET + 8 * i;
+				buffer.putInt(position, retain(buffer.getInt(position), old2New, names));
+			}
+			setState(slot, getState(slot) | PENDING);
+		}
+
+		dictionary.clear();
+		for(String name: names){
+			dictionary.intern(name);
+		}
+
+		rehash();
+		return old2New;
+	}
+
+	private int retain(int file, int[] old2New, List<String> names){
+
+		if(old2New[file] < 0){
+			old2New[file] = names.size();
+			names.add(dictionary.getName(file));
+		}
+		return old2New[file];
+	}
+
+	/**
+	 * 原地重新放置PENDING的槽位：取出后沿探测链找到第一个空位或PENDING的槽位，
+	 * 遇到PENDING的槽位时与之交换，继续放置换出的槽位。已放置的槽位不再移动，探测链上不会出现空位。
+	 */
+	private void rehash(){
+
+		long[] entry = new long[slotSize / 8];
+		long[] swap = new long[slotSize / 8];
+
+		for(int slot = 0; slot <= slotMask; slot++){
+			if((getState(slot) & PENDING) == 0){
+				continue;
+			}
+			readSlot(slot, entry);
+			setState(slot, 0);
+
+			while(true){
+				int target = slotOf(entry[KEY_OFFSET / 8]);
+				int state;
+				while(((state = getState(target)) & USED) != 0 && (state & PENDING) == 0){
+					target = (target + 1) & slotMask;
+				}
+				if((state & PENDING) == 0){
+					writeSlot(target, entry);
+					break;
+				}
+				readSlot(target, swap);
+				writeSlot(target, entry);
+				long[] next = entry;
+				entry = swap;
+				swap = next;
+			}
+		}
+	}
+
+	/**
+	 * 读出整个槽位（包括状态），槽位大小是8的倍数
+	 */
+	private void readSlot(int slot, long[] entry){
+
+		ByteBuffer buffer = bufferOf(slot);
+		int offset = offsetOf(slot);
+		for(int i = 0; i < entry.length; i++){
+			entry[i] = buffer.getLong(offset + 8 * i);
+		}
+	}
+
+	/**
+	 * 写入整个槽位，去掉PENDING标记
+	 */
+	private void writeSlot(int slot, long[] entry){
+
+		ByteBuffer buffer = bufferOf(slot);
+		int offset = offsetOf(slot);
+		for(int i = 0; i < entry.length; i++){
+			buffer.putLong(offset + 8 * i, entry[i]);
+		}
+		setState(slot, getState(slot) & ~PENDING);
+	}
+
+	/**
+	 * 向槽位中添加suffix：已存在时support加1，否则support为1；之后移到相同support的第一个位置
+	 */
+	private void addSuffix(int slot, int file){
+
+		if(maxSuffixCapacity == 0){
+			return;
+		}
+
+		ByteBuffer buffer = bufferOf(slot);
+		int base = offsetOf(slot) + SUFFIX_OFFSET;
+		int count = buffer.getInt(offsetOf(slot) + COUNT_OFFSET);
+
+		int pos = 0;
+		while(pos < count && buffer.getInt(base + 8 * pos) != file){
+			pos++;
+		}
+
+		int support = pos < count ? buffer.getInt(base + 8 * pos + 4) + 1 : 1;
+
+		// 相同support的第一个位置
+		int target = 0;
+		while(target < pos && buffer.getInt(base + 8 * target + 4) > support){
+			target++;
+		}
+
+		// suffix不存在：列表已满时移除最后一个，新suffix本身就是最后一个时不添加
+		if(pos == count){
+			if(count == maxSuffixCapacity){
+				if(target == count){
+					return;
+				}
+				pos = count - 1;
+			}
+			else{
+				buffer.putInt(offsetOf(slot) + COUNT_OFFSET, count + 1);
+			}
+		}
+
+		for(int i = pos; i > target; i--){
+			buffer.putLong(base + 8 * i, buffer.getLong(base + 8 * (i - 1)));
+		}
+		buffer.putInt(base + 8 * target, file);
+		buffer.putInt(base + 8 * target + 4, support);
+	}
+
+	private List<Suffix> readSuffixes(int slot){
+
+		ByteBuffer buffer = bufferOf(slot);
+		int base = offsetOf(slot) + SUFFIX_OFFSET;
+		int count = buffer.getInt(offsetOf(slot) + COUNT_OFFSET);
+
+		List<Suffix> suffixes = new ArrayList<Suffix>(count);
+		for(int i = 0; i < count; i++){
+			suffixes.add(new Suffix(dictionary.getName(buffer.getInt(base + 8 * i)), buffer.getInt(base + 8 * i + 4)));
+		}
+		return suffixes;
+	}
+
+	/**
+	 * @return	prefixKey所在的槽位，不存在时返回-1
+	 */
+	private int findSlot(long prefixKey){
+
+		for(int slot = slotOf(prefixKey); (getState(slot) & USED) != 0; slot = (slot + 1) & slotMask){
+			if(getKey(slot) == prefixKey){
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	private int insertSlot(long prefixKey){
+
+		int slot = slotOf(prefixKey);
+		while((getState(slot) & USED) != 0){
+			slot = (slot + 1) & slotMask;
+		}
+		setState(slot, USED | REFERENCED);
+		bufferOf(slot).putInt(offsetOf(slot) + COUNT_OFFSET, 0);
+		bufferOf(slot).putLong(offsetOf(slot) + KEY_OFFSET, prefixKey);
+		size++;
+		return slot;
+	}
+
+	/**
+	 * CLOCK：访问位为1的清零后跳过，替换第一个访问位为0的prefix
+	 */
+	private void evict(){
+
+		while(true){
+			int state = getState(hand);
+			if((state & USED) != 0){
+				if((state & REFERENCED) == 0){
+					break;
+				}
+				setState(hand, USED);
+			}
+			hand = (hand + 1) & slotMask;
+		}
+
+		// 删除后，后面的槽位前移到hand，时钟指针停在原地以便下次检查它
+		removeSlot(hand);
+	}
+
+	/**
+	 * 删除槽位，之后同一探测链上的槽位依次前移填补空位
+	 */
+	private void removeSlot(int hole){
+
+		for(int slot = (hole + 1) & slotMask; (getState(slot) & USED) != 0; slot = (slot + 1) & slotMask){
+			int home = slotOf(getKey(slot));
+
+			// home不在(hole, slot]之间时，该槽位可以移到hole
+			if(((slot - home) & slotMask) >= ((slot - hole) & slotMask)){
+				copySlot(slot, hole);
+				hole = slot;
+			}
+		}
+		setState(hole, 0);
+		size--;
+	}
+
+	private void copySlot(int from, int to){
+
+		ByteBuffer src = bufferOf(from);
+		ByteBuffer dst = bufferOf(to);
+		int srcOffset = offsetOf(from);
+		int dstOffset = offsetOf(to);
+		int count = src.getInt(srcOffset + COUNT_OFFSET);
+		for(int i = 0; i < SUFFIX_OFFSET + 8 * count; i += 8){
+			dst.putLong(dstOffset + i, src.getLong(srcOffset + i));
+		}
+	}
+
+	private int getState(int slot){
+		return bufferOf(slot).getInt(offsetOf(slot) + STATE_OFFSET);
+	}
+
+	private void setState(int slot, int state){
+		bufferOf(slot).putInt(offsetOf(slot) + STATE_OFFSET, state);
+	}
+
+	private long getKey(int slot){
+		return bufferOf(slot).getLong(offsetOf(slot) + KEY_OFFSET);
+	}
+
+	private ByteBuffer bufferOf(int slot){
+		return buffers[slot >>> bufferShift];
+	}
+
+	private int offsetOf(int slot){
+		return (slot & ((1 << bufferShift) - 1)) * slotSize;
+	}
+
+	private int slotOf(long prefixKey){
+		long h = prefixKey * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & slotMask;
+	}
+
+
+	/* getters */
+
+	public FileDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public int getMaxCapacity() {
+		return maxCapacity;
+	}
+
+	public int getMaxSuffixCapacity() {
+		return maxSuffixCapacity;
+	}
+}
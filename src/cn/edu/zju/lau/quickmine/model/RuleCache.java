@@ -1,61 +1,229 @@
 package cn.edu.zju.lau.quickmine.model;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
-import cn.edu.zju.lau.utils.LRUCache;
+import cn.edu.zju.lau.utils.FileDictionary;
+import cn.edu.zju.lau.utils.LongLRUCache;
 
 /**
- * 存放关联规则，prefix采用LRU替换策略，suffix采用LFU替换策略
+ * 存放关联规则，prefix采用LRU替换策略，suffix采用LFU替换策略。
+ * 文件名通过FileDictionary映射为int ID，prefix A|B 的两个ID拼接为一个long作为键（见prefixKey），
+ * 查找prefix时只需在LongLRUCache中探测一个long，不拼接字符串。
+ *
+ * 非线程安全，多线程使用时由调用者加锁（或使用ConcurrentRuleCache）。
+ *
  * @author yuki
  * @date 2013-11-26
  */
 public class RuleCache {
-	
-	private LRUCache<String, SuffixList> rules;	// 存储Rules：Key为A|B形式的prefix，Value为预测的后缀列表
+
+	private LongLRUCache<SuffixList> rules;		// 存储Rules：Key为A|B两个文件ID拼接的prefix，Value为预测的后缀列表
+	private FileDictionary dictionary;			// 文件名 <-> 文件ID
 	private int maxCapacity;					// Cache的容量
 	private int maxSuffixCapacity;				// 每个Prefix的SuffixList的容量
-	
+
 	public RuleCache(int maxCapacity, int maxSuffixCapacity){
+		this(maxCapacity, maxSuffixCapacity, new FileDictionary());
+	}
+
+	public RuleCache(int maxCapacity, int maxSuffixCapacity, FileDictionary dictionary){
 		this.maxCapacity = maxCapacity;
 		this.maxSuffixCapacity = maxSuffixCapacity;
-		rules = new LRUCache<String, SuffixList>(this.maxCapacity);
+		this.dictionary = dictionary;
+		rules = new LongLRUCache<SuffixList>(this.maxCapacity);
 	}
-	
+
+	/**
+	 * prefix A|B 的键：A的ID为高32位，B的ID为低32位
+	 * @param first
+	 * @param second
+	 * @return
+	 */
+	public static long prefixKey(int first, int second){
+		return ((long) first << 32) | (second & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * 按从最久未使用到最近使用的顺序输出规则
+	 */
 	@Override
 	public String toString(){
-		
+
 		StringBuilder sb = new StringBuilder();
-		
-		for(Map.Entry<String, SuffixList> entry: rules.entrySet()){
-			sb.append(entry.getKey()).append("->").append(entry.getValue()).append("\n");
+
+		long[] keys = rules.keys();
+		for(int i = keys.length - 1; i >= 0; i--){
+			long key = keys[i];
+			sb.append(dictionary.getName((int) (key >>> 32))).append("|").append(dictionary.getName((int) key))
+			  .append("->").append(rules.peek(key)).append("\n");
 		}
-		
+
 		return sb.toString();
 	}
-	
+
+	/**
+	 * 添加规则 prefix -> suffix
+	 * @param prefix	A|B 形式的prefix
+	 * @param suffix
+	 * @return	prefix是否为新加入的
+	 */
 	public boolean addRule(String prefix, String suffix){
-		
-		boolean isNewRule = true;
-		
-		SuffixList suffixeList = rules.get(prefix);
+
+		int separator = prefix.indexOf('|');
+		int first = dictionary.intern(prefix.substring(0, separator));
+		int second = dictionary.intern(prefix.substring(separator + 1));
+		return addRule(prefixKey(first, second), suffix);
+	}
+
+	/**
+	 * 添加规则 prefix -> suffix
+	 * @param prefixKey	prefixKey(A, B)
+	 * @param suffix
+	 * @return	prefix是否为新加入的
+	 */
+	public boolean addRule(long prefixKey, String suffix){
+		return addRule(prefixKey, suffix, 1);
+	}
+
+	/**
+	 * 添加规则 prefix -> suffix，support增加support（见SuffixList.add(suffixName, delta)）
+	 * @param prefixKey	prefixKey(A, B)
+	 * @param suffix
+	 * @param support
+	 * @return	prefix是否为新加入的
+	 */
+	public boolean addRule(long prefixKey, String suffix, int support){
+
+		boolean isNewRule = false;
+
+		SuffixList suffixeList = rules.get(prefixKey);
 		if(suffixeList == null){
 			suffixeList = new SuffixList(maxSuffixCapacity);
+			rules.put(prefixKey, suffixeList);
+			isNewRule = true;
 		}
-		else{
-			isNewRule = false;
-		}
-		suffixeList.add(suffix);
-		rules.put(prefix, suffixeList);
-		
+		suffixeList.add(suffix, support);
+
 		return isNewRule;
 	}
 
+	/**
+	 * 获取prefix对应的后缀列表，并将prefix标记为最近使用
+	 * @param prefix	A|B 形式的prefix
+	 * @return	不存在时返回null
+	 */
+	public SuffixList getSuffixList(String prefix){
+
+		int separator = prefix.indexOf('|');
+		if(separator < 0){
+			return null;
+		}
+		int first = dictionary.getId(prefix.substring(0, separator));
+		int second = dictionary.getId(prefix.substring(separator + 1));
+		if(first < 0 || second < 0){
+			return null;
+		}
+		return rules.get(prefixKey(first, second));
+	}
+
+	/**
+	 * 获取prefix对应的后缀列表，并将prefix标记为最近使用
+	 * @param prefixKey	prefixKey(A, B)
+	 * @return	不存在时返回null
+	 */
+	public SuffixList getSuffixList(long prefixKey){
+		return rules.get(prefixKey);
+	}
+
+	/**
+	 * 合并另一个RuleCache：相同prefix的SuffixList合并（support相加，重新排序，超出容量的部分移除），
+	 * 不存在的prefix加入本Cache。other的prefix按从最久未使用到最近使用的顺序加入，保持LRU的相对顺序。
+	 * 两者的FileDictionary不同时，按文件名转换ID。
+	 *
+	 * 不发生替换时，合并只是support相加，与合并的顺序、分组无关（满足交换律、结合律），
+	 * 多个节点或线程的RuleCache可以按任意方式两两归并；发生替换时，较早被移除的规则不再参与之后的合并，结果是近似的。
+	 * 跨节点合并时可以通过RuleCacheSnapshot传输。
+	 * @param other
+	 */
+	public void merge(RuleCache other){
+
+		long[] keys = other.rules.keys();
+		for(int i = keys.length - 1; i >= 0; i--){
+
+			long key = keys[i];
+			if(other.dictionary != dictionary){
+				int first = dictionary.intern(other.dictionary.getName((int) (key >>> 32)));
+				int second = dictionary.intern(other.dictionary.getName((int) key));
+				key = prefixKey(first, second);
+			}
+
+			SuffixList suffixList = rules.get(key);
+			if(suffixList == null){
+				suffixList = new SuffixList(maxSuffixCapacity);
+				rules.put(key, suffixList);
+			}
+			suffixList.merge(other.rules.peek(keys[i]));
+		}
+	}
+
+	/**
+	 * 压缩字典：FileDictionary只增不减，prefix被替换后其文件路径仍留在字典中。
+	 * 重建字典，只保留仍在Cache中的prefix用到的文件以及pinned中的文件，文件ID重新分配，prefix的键随之改变，LRU顺序不变。
+	 * 字典对象不变（原地重建），suffix保存的是文件路径，不受影响。
+	 * @param pinned	需要保留的文件ID，如挖掘窗口中的文件
+	 * @return	旧ID -> 新ID，未保留的文件为-1
+	 */
+	public int[] compactDictionary(int[] pinned){
+
+		int[] old2New = new int[dictionary.size()];
+		Arrays.fill(old2New, -1);
+		List<String> names = new ArrayList<String>();
+
+		for(int file: pinned){
+			retain(file, old2New, names);
+		}
+		long[] keys = rules.keys();
+		for(int i = keys.length - 1; i >= 0; i--){
+			retain((int) (keys[i] >>> 32), old2New, names);
+			retain((int) keys[i], old2New, names);
+		}
+
+		dictionary.clear();
+		for(String name: names){
+			dictionary.intern(name);
+		}
+
+		// 按从最久未使用到最近使用的顺序放入，保持LRU顺序
+		LongLRUCache<SuffixList> compacted = new LongLRUCache<SuffixList>(maxCapacity);
+		for(int i = keys.length - 1; i >= 0; i--){
+			long key = prefixKey(old2New[(int) (keys[i] >>> 32)], old2New[(int) keys[i]]);
+			compacted.put(key, rules.peek(keys[i]));
+		}
+		rules = compacted;
+
+		return old2New;
+	}
+
+	private void retain(int file, int[] old2New, List<String> names){
+
+		if(old2New[file] < 0){
+			old2New[file] = names.size();
+			names.add(dictionary.getName(file));
+		}
+	}
+
 	/* getters and setters */
-	
-	public LRUCache<String, SuffixList> getRules() {
+
+	public LongLRUCache<SuffixList> getRules() {
 		return rules;
 	}
 
+	public FileDictionary getDictionary() {
+		return dictionary;
+	}
+
 	public int getMaxCapacity() {
 		return maxCapacity;
 	}
@@ -10,131 +10,297 @@ import java.util.Map;
  * 		1. 可以快速判断一个suffix是否在列表中；
  * 		2. 列表按照support由大到小保持顺序；
  * 		3. 具有大小，列表满时，移除最近最少使用的suffix（LFU）。
+ *
+ * 采用O(1)的LFU结构：support相同的suffix组成一个桶（Bucket），桶按support由大到小连成双向链表，
+ * 桶内的suffix也是双向链表。support加1时只需把suffix从原桶移到support + 1的桶（即前一个桶，不存在时新建）的头部，
+ * 不需要扫描列表、移动其他元素的位置，Suffix.support原地修改。
+ *
+ * 替换出的节点和空桶会被复用，列表满了之后添加新的suffix不再创建节点。
+ *
  * @author yuki
  * @date 2013-11-26
  */
-public class SuffixList {  
-	
-	private Map<String, Integer> key2Position;
-	private List<Suffix> suffixList;
+public class SuffixList {
+
+	private Map<String, Node> key2Node;		// suffix -> 节点
+	private Bucket head;					// support最大的桶
+	private Bucket tail;					// support最小的桶
+	private Bucket freeBuckets;				// 空闲的桶，通过next相连
+	private int size;
 	private int maxSuffixSize;
-	
+
 	public SuffixList(){
-		this.key2Position = new HashMap<String, Integer>();
-		this.suffixList = new ArrayList<Suffix>();
-		this.maxSuffixSize = 16;
+		this(16);
 	}
-	
+
 	public SuffixList(int maxSuffixSize){
-		this.key2Position = new HashMap<String, Integer>();
-		this.suffixList = new ArrayList<Suffix>();
+		this.key2Node = new HashMap<String, Node>();
 		this.maxSuffixSize = maxSuffixSize;
 	}
-	
+
 	@Override
 	public String toString(){
-		
-		return suffixList.toString();
+
+		return getSuffixList().toString();
 	}
-	
+
 	/**
 	 * 向SuffixList中添加Suffix元素，如果：
 	 * 1. 该suffix已存在：增加suffix.support
 	 * 2. 该suffix不存在：添加suffix，support = 1
-	 * 最后，移动suffix到相同support元素的第一个位置，更新位置映射。
-	 * 
+	 * 最后，移动suffix到相同support元素的第一个位置。
+	 * 列表超出大小时，移除最后一个元素（support最小的桶中最早进入该桶的suffix）。
+	 *
 	 * @param suffixName
 	 */
 	public void add(String suffixName){
-		
-		// 初始：添加第一个suffix
-		if(suffixList.size() == 0){
-			suffixList.add(new Suffix(suffixName, 1));
-			key2Position.put(suffixName, 0);
+		add(suffixName, 1);
+	}
+
+	/**
+	 * 向SuffixList中添加Suffix元素，support增加delta（不存在时为delta），规则同add(suffixName)
+	 * @param suffixName
+	 * @param delta	大于0
+	 */
+	public void add(String suffixName, int delta){
+
+		Node node = key2Node.get(suffixName);
+
+		// suffixName非第一次添加
+		if(node != null){
+			Bucket bucket = node.bucket;
+			int newSupport = bucket.support + delta;
+			node.suffix.setSupport(newSupport);
+
+			// 桶中只有这一个suffix，且仍排在前一个桶之后：直接修改桶的support
+			if(bucket.first == bucket.last && (bucket.prev == null || bucket.prev.support > newSupport)){
+				bucket.support = newSupport;
+				return;
+			}
+			bucket.remove(node);
+			place(node, bucket.prev);
+			if(bucket.first == null){
+				removeBucket(bucket);
+			}
 			return;
 		}
-		
-		
-		Integer posObj = key2Position.get(suffixName);
 
 		// suffixName第一次添加
-		if(posObj == null){
-			int tailPos = suffixList.size() - 1;
-			boolean insert = false;
-			for(int i = tailPos; i >= 0; i--){
-				if(1 < suffixList.get(i).getSupport()){
-					insert = true;
-					suffixList.add(i + 1, new Suffix(suffixName, 1));
-					updateKey2Pos(suffixName, Integer.MAX_VALUE, i + 1);
-					break;
-				}
-			}
-			if(!insert){
-				suffixList.add(0, new Suffix(suffixName, 1));
-				updateKey2Pos(suffixName, Integer.MAX_VALUE, 0);
-			}
-			
+		if(maxSuffixSize <= 0){
+			return;
+		}
+		if(size < maxSuffixSize){
+			node = new Node(new Suffix(suffixName, delta));
+			size++;
+			place(node, tail);
 		}
-		// suffixName非第一次添加
 		else{
-			// important! pos is an Integer Object, if we do not cast it to int.
-			// then, it will use pos as an List element when we use List.remove(pos).
-			int pos = posObj.intValue();
-			
-			
-			int newSupport = suffixList.get(pos).getSupport() + 1;
-			boolean insert = false;
-			for(int i = pos; i >= 0; i--){
-				if(newSupport < suffixList.get(i).getSupport()){
-					insert = true;
-					suffixList.remove(pos);
-					suffixList.add(i + 1, new Suffix(suffixName, newSupport));
-					updateKey2Pos(suffixName, pos, i + 1);
-					break;
-				}
+			// 列表已满：最后一个元素的support大于delta时，新suffix会排在最后，添加后立即被移除
+			Bucket bucket = tail;
+			if(bucket.support > delta){
+				return;
+			}
+			// 否则移除最后一个元素，复用其节点
+			node = bucket.last;
+			key2Node.remove(node.suffix.getSuffix());
+			bucket.remove(node);
+			node.suffix.setSuffix(suffixName);
+			node.suffix.setSupport(delta);
+			place(node, bucket);
+			if(bucket.first == null){
+				removeBucket(bucket);
 			}
-			if(!insert){
-				suffixList.remove(pos);
-				suffixList.add(0, new Suffix(suffixName, newSupport));
-				updateKey2Pos(suffixName, pos, 0);
+		}
+		key2Node.put(suffixName, node);
+	}
+
+	/**
+	 * 合并另一个SuffixList：support相加，重新排序，超出大小的部分移除。
+	 * other按从后到前的顺序加入，support相同时保持other中的先后顺序。
+	 * @param other
+	 */
+	public void merge(SuffixList other){
+
+		for(Bucket bucket = other.tail; bucket != null; bucket = bucket.prev){
+			for(Node node = bucket.last; node != null; node = node.prev){
+				add(node.suffix.getSuffix(), node.suffix.getSupport());
 			}
 		}
-		
-		// 如果超出规定的List大小，移除最后一个元素
-		if(suffixList.size() > maxSuffixSize){
-			String key = suffixList.get(maxSuffixSize).getSuffix();
-			suffixList.remove(maxSuffixSize);
-			key2Position.remove(key);
+	}
+
+	/**
+	 * 将节点放到support等于其support的桶的头部，从from开始向前（support增大的方向）查找，不存在时新建
+	 * @param node
+	 * @param from	查找的起点，其后的桶的support都小于node的support；为null时从表头开始
+	 */
+	private void place(Node node, Bucket from){
+
+		int support = node.suffix.getSupport();
+		Bucket bucket = from;
+		while(bucket != null && bucket.support < support){
+			bucket = bucket.prev;
+		}
+		if(bucket == null || bucket.support != support){
+			bucket = newBucket(support, bucket, bucket == null ? head : bucket.next);
+		}
+		bucket.addFirst(node);
+	}
+
+	/**
+	 * 在prev和next之间插入一个新桶
+	 */
+	private Bucket newBucket(int support, Bucket prev, Bucket next){
+
+		Bucket bucket = freeBuckets;
+		if(bucket != null){
+			freeBuckets = bucket.next;
+		}
+		else{
+			bucket = new Bucket();
+		}
+		bucket.support = support;
+		bucket.prev = prev;
+		bucket.next = next;
+		if(prev != null){
+			prev.next = bucket;
+		}
+		else{
+			head = bucket;
+		}
+		if(next != null){
+			next.prev = bucket;
+		}
+		else{
+			tail = bucket;
+		}
+		return bucket;
+	}
+
+	/**
+	 * 移除空桶，放入空闲链表
+	 */
+	private void removeBucket(Bucket bucket){
+
+		if(bucket.prev != null){
+			bucket.prev.next = bucket.next;
+		}
+		else{
+			head = bucket.next;
+		}
+		if(bucket.next != null){
+			bucket.next.prev = bucket.prev;
+		}
+		else{
+			tail = bucket.prev;
+		}
+		bucket.prev = null;
+		bucket.next = freeBuckets;
+		freeBuckets = bucket;
+	}
+
+	/**
+	 * 移除最后一个元素
+	 */
+	private void removeLast(){
+
+		Node node = tail.last;
+		key2Node.remove(node.suffix.getSuffix());
+		tail.remove(node);
+		if(tail.first == null){
+			removeBucket(tail);
 		}
+		size--;
+	}
+
+	public boolean contains(String suffixName){
+		return key2Node.containsKey(suffixName);
 	}
-	
+
 	/**
-	 * 更新key2position中文件名与位置的映射关系，将newPos之后的元素都依次后移一位
 	 * @param suffixName
-	 * @param oldPos
-	 * @param newPos
+	 * @return	suffix的support，不在列表中时为0
 	 */
-	private void updateKey2Pos(String suffixName, int oldPos, int newPos){
-		
-		if(oldPos == newPos){
-			return;
+	public int getSupport(String suffixName){
+
+		Node node = key2Node.get(suffixName);
+		return node == null ? 0 : node.suffix.getSupport();
+	}
+
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * support相同的suffix组成的桶，桶内按进入该桶的时间由新到旧排列
+	 */
+	private static class Bucket {
+
+		private int support;
+		private Node first;
+		private Node last;
+		private Bucket prev;		// support更大的桶
+		private Bucket next;		// support更小的桶
+
+		void addFirst(Node node){
+			node.bucket = this;
+			node.prev = null;
+			node.next = first;
+			if(first != null){
+				first.prev = node;
+			}
+			else{
+				last = node;
+			}
+			first = node;
 		}
-		for(Map.Entry<String, Integer> entry: key2Position.entrySet()){
-			if(entry.getValue() >= newPos && entry.getValue() < oldPos){
-				key2Position.put(entry.getKey(), entry.getValue() + 1);
+
+		void remove(Node node){
+			if(node.prev != null){
+				node.prev.next = node.next;
+			}
+			else{
+				first = node.next;
+			}
+			if(node.next != null){
+				node.next.prev = node.prev;
+			}
+			else{
+				last = node.prev;
 			}
+			node.prev = null;
+			node.next = null;
+			node.bucket = null;
 		}
-		key2Position.put(suffixName, newPos);
 	}
-	
-	
-	/* getters and setters */
 
-	public Map<String, Integer> getKey2Position() {
-		return key2Position;
+	private static class Node {
+
+		private final Suffix suffix;
+		private Bucket bucket;
+		private Node prev;
+		private Node next;
+
+		Node(Suffix suffix){
+			this.suffix = suffix;
+		}
 	}
 
+
+	/* getters and setters */
+
+	/**
+	 * 按support由大到小排列的suffix。返回的Suffix对象为列表中的对象，之后的add会原地修改其support，
+	 * 需要保留结果时应复制。
+	 * @return
+	 */
 	public List<Suffix> getSuffixList() {
+
+		List<Suffix> suffixList = new ArrayList<Suffix>(size);
+		for(Bucket bucket = head; bucket != null; bucket = bucket.next){
+			for(Node node = bucket.first; node != null; node = node.next){
+				suffixList.add(node.suffix);
+			}
+		}
 		return suffixList;
 	}
 
@@ -142,16 +308,23 @@ public class SuffixList {
 		return maxSuffixSize;
 	}
 
+	/**
+	 * 列表缩小时，立即移除超出的元素
+	 * @param maxSuffixSize
+	 */
 	public void setMaxSuffixSize(int maxSuffixSize) {
 		this.maxSuffixSize = maxSuffixSize;
+		while(size > Math.max(maxSuffixSize, 0)){
+			removeLast();
+		}
 	}
-	
-	
+
+
 	/* test */
 	public static void main(String[] args){
-		
+
 		SuffixList list = new SuffixList();
-		
+
 		for(int i = 0; i < 20; i++){
 			list.add((i % 10) + "");
 			System.out.println(list.getSuffixList());
@@ -0,0 +1,271 @@
+package cn.edu.zju.lau.test.simulate;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步预取：访问线程只把预测的文件放入队列，由后台的预取线程读取文件放入Cache，预取不再增加访问的延迟。
+ * 		1. 提交时去重：已在Cache中、或正在队列中/正在预取的文件不再提交；
+ * 		2. 队列有界，满时丢弃队列中最老的预测（背压），为新的预测腾出位置；
+ * 		3. 预取线程取出预测时，等待超过maxDelay的预测已经过时，直接丢弃；
+ * 		4. 统计提交、去重、丢弃、完成的个数，以及队列长度。
+ *
+ * 多个访问线程可以同时提交，预取线程数由workerNum指定。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class PrefetchPipeline {
+
+	/**
+	 * 实际执行预取的对象
+	 */
+	public interface Loader {
+
+		/**
+		 * 文件是否已在Cache中，必须是线程安全的
+		 */
+		boolean isCached(String file);
+
+		/**
+		 * 读取文件，放入Cache，必须是线程安全的
+		 */
+		void load(String file) throws Exception;
+	}
+
+	private Loader loader;
+	private long maxDelayNanos;						// 预测在队列中等待的最长时间，超过则丢弃
+	private BlockingQueue<Request> queue;
+	private Set<String> inFlight;					// 在队列中或正在预取的文件
+	private Thread[] workers;
+	private volatile boolean running;
+
+	// 统计
+	private AtomicLong submitted = new AtomicLong();		// 提交的预测数
+	private AtomicLong cachedSkipped = new AtomicLong();	// 已在Cache中而忽略的预测数
+	private AtomicLong inFlightSkipped = new AtomicLong();	// 正在预取而忽略的预测数
+	private AtomicLong enqueued = new AtomicLong();			// 放入队列的预测数
+	private AtomicLong fullDropped = new AtomicLong();		// 队列满时丢弃的预测数
+	private AtomicLong staleDropped = new AtomicLong();		// 过时丢弃的预测数
+	private AtomicLong completed = new AtomicLong();		// 完成预取的文件数
+	private AtomicLong failed = new AtomicLong();			// 预取失败的文件数
+	private volatile int maxQueueDepth;						// 队列的最大长度
+
+	/**
+	 * @param loader
+	 * @param queueCapacity	队列容量
+	 * @param workerNum	预取线程数
+	 * @param maxDelayMillis	预测在队列中等待的最长时间（毫秒）
+	 */
+	public PrefetchPipeline(Loader loader, int queueCapacity, int workerNum, long maxDelayMillis){
+
+		this.loader = loader;
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+		this.queue = new ArrayBlockingQueue<Request>(Math.max(queueCapacity, 1));
+		this.inFlight = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		this.running = true;
+
+		this.workers = new Thread[Math.max(workerNum, 1)];
+		for(int i = 0; i < workers.length; i++){
+			workers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work();
+				}
+			}, "prefetch-worker-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * 提交一个预测的文件，不等待预取完成
+	 * @param file
+	 * @return	是否放入了队列
+	 */
+	public boolean submit(String file){
+
+		submitted.incrementAndGet();
+		if(!running){
+			return false;
+		}
+		if(loader.isCached(file)){
+			cachedSkipped.incrementAndGet();
+			return false;
+		}
+		if(!inFlight.add(file)){
+			inFlightSkipped.incrementAndGet();
+			return false;
+		}
+
+		Request request = new Request(file, System.nanoTime());
+
+		// 队列满：丢弃最老的预测
+		while(!queue.offer(request)){
+			Request oldest = queue.poll();
+			if(oldest != null){
+				inFlight.remove(oldest.file);
+				fullDropped.incrementAndGet();
+			}
+		}
+		enqueued.incrementAndGet();
+
+		int depth = queue.size();
+		if(depth > maxQueueDepth){
+			maxQueueDepth = depth;
+		}
+		return true;
+	}
+
+	private void work(){
+
+		while(running || !queue.isEmpty()){
+			Request request;
+			try{
+				request = queue.poll(100, TimeUnit.MILLISECONDS);
+			}
+			catch(InterruptedException e){
+				break;
+			}
+			if(request == null){
+				continue;
+			}
+
+			try{
+				if(System.nanoTime() - request.time > maxDelayNanos){
+					staleDropped.incrementAndGet();
+				}
+				else if(loader.isCached(request.file)){
+					cachedSkipped.incrementAndGet();
+				}
+				else{
+					loader.load(request.file);
+					completed.incrementAndGet();
+				}
+			}
+			catch(Exception e){
+				failed.incrementAndGet();
+			}
+			finally{
+				inFlight.remove(request.file);
+			}
+		}
+	}
+
+	/**
+	 * 等待队列中的预测都处理完
+	 * @param timeoutMillis
+	 * @return	是否在超时前处理完
+	 */
+	public boolean awaitIdle(long timeoutMillis) throws InterruptedException{
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while(!inFlight.isEmpty()){
+			if(System.nanoTime() > deadline){
+				return false;
+			}
+			Thread.sleep(1);
+		}
+		return true;
+	}
+
+	/**
+	 * 不再接受新的预测，处理完队列中的预测后结束预取线程
+	 */
+	public void shutdown() throws InterruptedException{
+
+		running = false;
+		for(Thread worker: workers){
+			worker.join();
+		}
+	}
+
+	/**
+	 * 丢弃的预测（队列满、过时）占放入队列的预测的比例
+	 */
+	public double getDropRate(){
+
+		long total = enqueued.get();
+		return total == 0 ? 0 : (fullDropped.get() + staleDropped.get()) * 1.0 / total;
+	}
+
+	@Override
+	public String toString(){
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("submitted=").append(submitted.get())
+		  .append(", cachedSkipped=").append(cachedSkipped.get())
+		  .append(", inFlightSkipped=").append(inFlightSkipped.get())
+		  .append(", enqueued=").append(enqueued.get())
+		  .append(", fullDropped=").append(fullDropped.get())
+		  .append(", staleDropped=").append(staleDropped.get())
+		  .append(", completed=").append(completed.get())
+		  .append(", failed=").append(failed.get())
+		  .append(", queueDepth=").append(queue.size())
+		  .append(", maxQueueDepth=").append(maxQueueDepth)
+		  .append(", dropRate=").append(getDropRate());
+		return sb.toString();
+	}
+
+	/**
+	 * 队列中的一个预测
+	 */
+	private static class Request {
+
+		private final String file;
+		private final long time;		// 放入队列的时间
+
+		Request(String file, long time){
+			this.file = file;
+			this.time = time;
+		}
+	}
+
+
+	/* getters */
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	public int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+
+	public long getSubmitted() {
+		return submitted.get();
+	}
+
+	public long getCachedSkipped() {
+		return cachedSkipped.get();
+	}
+
+	public long getInFlightSkipped() {
+		return inFlightSkipped.get();
+	}
+
+	public long getEnqueued() {
+		return enqueued.get();
+	}
+
+	public long getFullDropped() {
+		return fullDropped.get();
+	}
+
+	public long getStaleDropped() {
+		return staleDropped.get();
+	}
+
+	public long getCompleted() {
+		return completed.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+}
@@ -1,36 +1,56 @@
 package cn.edu.zju.lau.test.simulate;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.lang.StringUtils;
-
-import cn.edu.zju.lau.cminer.model.hdfs.FileAccessLog;
-import cn.edu.zju.lau.utils.LRUCache;
+import cn.edu.zju.lau.cminer.io.hdfs.AuditLogReader;
+import cn.edu.zju.lau.cminer.io.hdfs.SessionDemultiplexer;
+import cn.edu.zju.lau.cminer.model.hdfs.SessionSequences;
+import cn.edu.zju.lau.test.simulate.cache.FileCache;
+import cn.edu.zju.lau.test.simulate.cache.FileSizeTable;
+import cn.edu.zju.lau.test.simulate.cache.LRUFileCache;
+import cn.edu.zju.lau.utils.FileDictionary;
 
 /**
  * 模拟带PredictCache使用过程的抽象类，包含：
- * 		LRUCache：模拟文件缓存
+ * 		FileCache：模拟文件缓存，默认为LRU，可以指定其他替换策略（见FileCaches）
  * 		抽象方法 getPredictFiles：获取预测的后续文件，根据子类选用的挖掘关联规则的算法而实现。
+ * 		prefetch：将预测的文件放入Cache，默认在访问线程中直接完成，enableAsyncPrefetch之后交给PrefetchPipeline异步完成。
+ * 		统计：访问、命中的文件个数和字节数，预取（实际读取）的文件个数和字节数，字节数由FileSizeTable给出，
+ * 		默认每个文件为1字节，即字节命中率等于命中率；FileCache按字节计算容量时（见FileCaches.createWeighted）应使用同一个FileSizeTable。
  * 
  * @author yuki
  * @date 2013-11-27
  */
 public abstract class Simulator {
 
-	protected LRUCache<String, String> FILE_CACHE;
+	protected FileCache FILE_CACHE;
+	protected PrefetchPipeline prefetchPipeline;	// 异步预取，为null时在访问线程中直接预取
+	protected FileSizeTable fileSizes = new FileSizeTable(1);
+	
+	// 统计，预取可能在预取线程中完成
+	private long accessCount;
+	private long hitCount;
+	private long accessBytes;
+	private long hitBytes;
+	private AtomicLong prefetchCount = new AtomicLong();
+	private AtomicLong prefetchBytes = new AtomicLong();
 	
 	protected Simulator(int fileCacheSize){
 		
-		this.FILE_CACHE = new LRUCache<String, String>(fileCacheSize);
+		this(new LRUFileCache(fileCacheSize));
+	}
+	
+	protected Simulator(FileCache fileCache){
+		
+		this.FILE_CACHE = fileCache;
 	}
 	
 	/**
-	 * 从指定的文件中读取文件访问日志数据集
+	 * 从指定的文件中读取文件访问日志数据集，通过AuditLogReader流式读取OPEN操作访问的文件。
+	 * 相同的文件路径只保存一个字符串对象。
 	 * @param filePath
 	 * @param cutCommonPrefix	需要截断的文件名公共前缀
 	 * @return	文件访问序列的文件名列表
@@ -38,23 +58,14 @@ public abstract class Simulator {
  	protected List<String> getDataSet(String filePath, String cutCommonPrefix){
 		
 		List<String> logs = new ArrayList<String>();
-
-		File file = new File(filePath);
-        BufferedReader reader = null;
+		FileDictionary dictionary = new FileDictionary();
+        AuditLogReader reader = null;
         
         try {
-            reader = new BufferedReader(new FileReader(file));
-            String logLine = null;
-            while ((logLine = reader.readLine()) != null) {
-            	FileAccessLog log = FileAccessLog.parse(logLine);
-            	if(log.isValid()){
-            		if(!StringUtils.isEmpty(cutCommonPrefix)){
-            			logs.add(log.getSrc().split(cutCommonPrefix)[1]);
-            		}
-            		else{
-            			logs.add(log.getSrc());
-            		}
-            	}
+            reader = new AuditLogReader(filePath, dictionary, cutCommonPrefix);
+            int fileId;
+            while ((fileId = reader.next()) >= 0) {
+            	logs.add(dictionary.getName(fileId));
             }
         } 
         catch (IOException ioe) {
@@ -74,6 +85,46 @@ public abstract class Simulator {
 		return logs;
 	}
 	
+	/**
+	 * 从指定的文件中读取文件访问日志数据集，按 ugi + ip 拆分为每个客户端的访问序列，
+	 * 可通过 CMinerHDFS.setInputSessions 输入挖掘算法，避免不同客户端交错的访问破坏关联关系。
+	 * @param filePath
+	 * @param cutCommonPrefix	需要截断的文件名公共前缀
+	 * @return	按会话拆分的文件访问序列，读取失败返回NULL
+	 */
+	protected SessionSequences getSessionDataSet(String filePath, String cutCommonPrefix){
+		
+		try {
+			return new SessionDemultiplexer().demultiplex(filePath, cutCommonPrefix);
+		} 
+		catch (IOException ioe) {
+			ioe.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * 读取文件大小表，按字节计算容量、统计字节命中率时使用（见FileSizeTable）。
+	 * filePath为null或读取失败时，每个文件按1字节计算，即按文件个数统计。
+	 * @param filePath	每行为 "文件路径 字节数" 或 hdfs dfs -ls -R 的输出，可以为null
+	 * @param cutCommonPrefix	需要截断的文件名公共前缀，与读取访问日志时的相同
+	 * @param defaultSize	表中没有的文件的字节数
+	 * @return
+	 */
+	protected static FileSizeTable loadFileSizes(String filePath, String cutCommonPrefix, long defaultSize){
+		
+		if(filePath == null){
+			return new FileSizeTable(1);
+		}
+		try {
+			return FileSizeTable.load(filePath, cutCommonPrefix, defaultSize);
+		} 
+		catch (IOException ioe) {
+			ioe.printStackTrace();
+			return new FileSizeTable(1);
+		}
+	}
+	
 	/**
 	 * 从File Cache中读取文件，同时将文件加入Cache。
 	 * @param fileName
@@ -81,20 +132,145 @@ public abstract class Simulator {
 	 */
 	protected String getFileFromCache(String fileName){
 		
-		String targetFile = FILE_CACHE.get(fileName);
-		if(targetFile == null){
-			FILE_CACHE.put(fileName, fileName);
+		long size = fileSizes.getSize(fileName);
+		accessCount++;
+		accessBytes += size;
+		if(FILE_CACHE.access(fileName)){
+			hitCount++;
+			hitBytes += size;
+			return fileName;
 		}
-		return targetFile;
+		return null;
 	}
 	
 	/**
-	 * 将fileName代表的文件放入Cache
+	 * 将fileName代表的文件预取到Cache中，放入的位置由替换策略决定
 	 * @param fileName
 	 * @param file
 	 */
 	protected void putFileIntoCache(String fileName, String file){
-		FILE_CACHE.put(fileName, file);
+		
+		if(FILE_CACHE.prefetch(fileName)){
+			prefetchCount.incrementAndGet();
+			prefetchBytes.addAndGet(fileSizes.getSize(fileName));
+		}
+	}
+	
+	/**
+	 * 预取预测的文件：同步预取时直接放入Cache，异步预取时提交给PrefetchPipeline后立即返回
+	 * @param files	预测的文件，可以为null
+	 * @return	直接放入Cache或放入预取队列的文件个数
+	 */
+	protected int prefetch(List<String> files){
+		
+		if(files == null){
+			return 0;
+		}
+		
+		int count = 0;
+		for(String file: files){
+			if(prefetchPipeline == null){
+				putFileIntoCache(file, file);
+				count++;
+			}
+			else if(prefetchPipeline.submit(file)){
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * 开启异步预取，预取线程将文件放入FILE_CACHE
+	 * @param queueCapacity	预取队列的容量
+	 * @param workerNum	预取线程数
+	 * @param maxDelayMillis	预测在队列中等待超过该时间即丢弃
+	 */
+	public void enableAsyncPrefetch(int queueCapacity, int workerNum, long maxDelayMillis){
+		
+		this.prefetchPipeline = new PrefetchPipeline(new PrefetchPipeline.Loader() {
+			@Override
+			public boolean isCached(String file) {
+				return FILE_CACHE.contains(file);
+			}
+			
+			@Override
+			public void load(String file) {
+				putFileIntoCache(file, file);
+			}
+		}, queueCapacity, workerNum, maxDelayMillis);
+	}
+	
+	/**
+	 * 结束异步预取，等待队列中的预测处理完
+	 */
+	public void shutdownPrefetch(){
+		
+		if(prefetchPipeline == null){
+			return;
+		}
+		try {
+			prefetchPipeline.shutdown();
+		} 
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * 命中的文件个数占访问的文件个数的比例
+	 */
+	public double getHitRatio(){
+		return accessCount == 0 ? 0 : hitCount * 1.0 / accessCount;
+	}
+	
+	/**
+	 * 命中的字节数占访问的字节数的比例，即Cache节省的读取量
+	 */
+	public double getByteHitRatio(){
+		return accessBytes == 0 ? 0 : hitBytes * 1.0 / accessBytes;
+	}
+	
+	public PrefetchPipeline getPrefetchPipeline() {
+		return prefetchPipeline;
+	}
+	
+	public FileSizeTable getFileSizes() {
+		return fileSizes;
+	}
+	
+	public void setFileSizes(FileSizeTable fileSizes) {
+		this.fileSizes = fileSizes;
+	}
+	
+	public long getAccessCount() {
+		return accessCount;
+	}
+	
+	public long getHitCount() {
+		return hitCount;
+	}
+	
+	public long getAccessBytes() {
+		return accessBytes;
+	}
+	
+	public long getHitBytes() {
+		return hitBytes;
+	}
+	
+	/**
+	 * 实际读取到Cache中的预取文件个数（已在Cache中的预测不计）
+	 */
+	public long getPrefetchCount() {
+		return prefetchCount.get();
+	}
+	
+	/**
+	 * 实际读取到Cache中的预取文件字节数
+	 */
+	public long getPrefetchBytes() {
+		return prefetchBytes.get();
 	}
 	
 	/**
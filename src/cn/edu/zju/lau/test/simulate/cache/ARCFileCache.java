@@ -0,0 +1,126 @@
+package cn.edu.zju.lau.test.simulate.cache;
+
+/**
+ * ARC（Megiddo & Modha, FAST'03）：
+ * 		1. T1：只被读取过一次的文件，T2：被读取过至少两次的文件，两者都是LRU；
+ * 		2. B1、B2：分别从T1、T2中被替换的文件名（不缓存文件本身）；
+ * 		3. 目标值p为T1应占的容量：在B1中命中说明T1太小，p增大；在B2中命中说明T2太小，p减小。
+ * 预取的文件与第一次读取的文件一样放入T1，但不调整p。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class ARCFileCache implements FileCache {
+
+	private KeyList t1 = new KeyList();
+	private KeyList t2 = new KeyList();
+	private KeyList b1 = new KeyList();
+	private KeyList b2 = new KeyList();
+	private int capacity;
+	private int p;				// T1的目标大小
+
+	public ARCFileCache(int capacity){
+		this.capacity = Math.max(capacity, 1);
+		this.p = 0;
+	}
+
+	@Override
+	public synchronized boolean access(String file) {
+
+		// 命中：移到T2的最近使用位置
+		if(t1.remove(file) || t2.contains(file)){
+			if(!t2.moveToFirst(file)){
+				t2.addFirst(file);
+			}
+			return true;
+		}
+
+		// 在B1中：增大T1的目标大小
+		if(b1.contains(file)){
+			p = Math.min(capacity, p + Math.max(b2.size() / b1.size(), 1));
+			replace(false);
+			b1.remove(file);
+			t2.addFirst(file);
+			return false;
+		}
+
+		// 在B2中：减小T1的目标大小
+		if(b2.contains(file)){
+			p = Math.max(0, p - Math.max(b1.size() / b2.size(), 1));
+			replace(true);
+			b2.remove(file);
+			t2.addFirst(file);
+			return false;
+		}
+
+		insertNew(file);
+		return false;
+	}
+
+	@Override
+	public synchronized boolean prefetch(String file) {
+
+		if(t1.contains(file) || t2.contains(file)){
+			return false;
+		}
+		b1.remove(file);
+		b2.remove(file);
+		insertNew(file);
+		return true;
+	}
+
+	/**
+	 * 不在T1、T2、B1、B2中的文件放入T1
+	 */
+	private void insertNew(String file){
+
+		if(t1.size() + b1.size() >= capacity){
+			if(t1.size() < capacity){
+				b1.removeLast();
+				replace(false);
+			}
+			else{
+				t1.removeLast();
+			}
+		}
+		else if(t1.size() + t2.size() + b1.size() + b2.size() >= capacity){
+			if(t1.size() + t2.size() + b1.size() + b2.size() >= 2 * capacity){
+				b2.removeLast();
+			}
+			replace(false);
+		}
+		t1.addFirst(file);
+	}
+
+	/**
+	 * 缓存已满时，替换T1或T2中最久未使用的文件，文件名移入B1或B2
+	 * @param inB2	要放入的文件是否在B2中
+	 */
+	private void replace(boolean inB2){
+
+		if(t1.size() + t2.size() < capacity){
+			return;
+		}
+		if(!t1.isEmpty() && (t1.size() > p || (inB2 && t1.size() == p) || t2.isEmpty())){
+			b1.addFirst(t1.removeLast());
+		}
+		else{
+			b2.addFirst(t2.removeLast());
+		}
+	}
+
+	@Override
+	public synchronized boolean contains(String file) {
+		return t1.contains(file) || t2.contains(file);
+	}
+
+	@Override
+	public synchronized int size() {
+		return t1.size() + t2.size();
+	}
+
+	@Override
+	public long getCapacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,45 @@
+package cn.edu.zju.lau.test.simulate.cache;
+
+/**
+ * 模拟的文件缓存，只记录缓存了哪些文件。区分两种放入方式：
+ * 		1. access：客户端读取文件（demand read），未命中时将文件放入缓存；
+ * 		2. prefetch：根据预测预取文件，不算作一次访问，各替换策略可以把预取的文件放在不同的位置。
+ *
+ * 预取线程和访问线程可能同时调用，实现必须是线程安全的。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+public interface FileCache {
+
+	/**
+	 * 读取文件：命中时更新替换信息，未命中时将文件放入缓存
+	 * @param file
+	 * @return	是否命中
+	 */
+	boolean access(String file);
+
+	/**
+	 * 预取文件，已在缓存中时不做任何事
+	 * @param file
+	 * @return	是否需要读取文件（不在缓存中）
+	 */
+	boolean prefetch(String file);
+
+	/**
+	 * 文件是否在缓存中，不改变替换信息
+	 * @param file
+	 * @return
+	 */
+	boolean contains(String file);
+
+	/**
+	 * 缓存中的文件个数
+	 */
+	int size();
+
+	/**
+	 * 缓存的容量：按文件个数计算时为文件个数，按字节计算时（如WeightedLRUFileCache）为字节数
+	 */
+	long getCapacity();
+}
@@ -0,0 +1,65 @@
+package cn.edu.zju.lau.test.simulate.cache;
+
+/**
+ * 按名称创建FileCache
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class FileCaches {
+
+	public static final String LRU = "lru";
+	public static final String TWO_QUEUE = "2q";
+	public static final String ARC = "arc";
+	public static final String TINY_LFU = "w-tinylfu";
+	public static final String PREFETCH_AWARE = "prefetch-aware";
+
+	public static final String[] POLICIES = {LRU, TWO_QUEUE, ARC, TINY_LFU, PREFETCH_AWARE};
+
+	private FileCaches(){
+
+	}
+
+	/**
+	 * @param policy	替换策略，见POLICIES
+	 * @param capacity	缓存的文件个数
+	 * @return
+	 */
+	public static FileCache create(String policy, int capacity){
+
+		if(LRU.equals(policy)){
+			return new LRUFileCache(capacity);
+		}
+		if(TWO_QUEUE.equals(policy)){
+			return new TwoQueueFileCache(capacity);
+		}
+		if(ARC.equals(policy)){
+			return new ARCFileCache(capacity);
+		}
+		if(TINY_LFU.equals(policy)){
+			return new TinyLFUFileCache(capacity);
+		}
+		if(PREFETCH_AWARE.equals(policy)){
+			return new PrefetchAwareFileCache(capacity);
+		}
+		throw new IllegalArgumentException("Unknown cache policy: " + policy);
+	}
+
+	/**
+	 * 按字节计算容量的FileCache，只支持LRU和PREFETCH_AWARE
+	 * @param policy	替换策略
+	 * @param capacityBytes	缓存的字节数
+	 * @param sizes	文件大小表
+	 * @return
+	 */
+	public static FileCache createWeighted(String policy, long capacityBytes, FileSizeTable sizes){
+
+		if(LRU.equals(policy)){
+			return new WeightedLRUFileCache(capacityBytes, sizes);
+		}
+		if(PREFETCH_AWARE.equals(policy)){
+			return new WeightedLRUFileCache(capacityBytes, sizes, true);
+		}
+		throw new IllegalArgumentException("Unsupported weighted cache policy: " + policy);
+	}
+}
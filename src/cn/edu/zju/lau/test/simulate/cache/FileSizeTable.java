@@ -0,0 +1,112 @@
+package cn.edu.zju.lau.test.simulate.cache;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 文件大小表：文件名 -> 字节数，供按字节计算容量的FileCache和Simulator的字节命中率使用。
+ * HDFS的审计日志中没有文件大小，需要从单独的文件中读取，支持两种格式的行：
+ * 		1. "文件路径 字节数"（以空白分隔）；
+ * 		2. hdfs dfs -ls -R 的输出：第5列为字节数，最后一列为文件路径，目录（权限以d开头）被忽略。
+ * 表中没有的文件按defaultSize计算。defaultSize为1且表为空时，字节数即文件个数。
+ *
+ * 加载完成后只读，可以被多个线程同时使用。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class FileSizeTable {
+
+	private Map<String, Long> sizes = new HashMap<String, Long>();
+	private long defaultSize;				// 表中没有的文件的字节数
+
+	public FileSizeTable(long defaultSize){
+		this.defaultSize = Math.max(defaultSize, 1);
+	}
+
+	/**
+	 * 从文件中读取文件大小表
+	 * @param filePath
+	 * @param cutCommonPrefix	需要截断的文件名公共前缀，与读取审计日志时的相同
+	 * @param defaultSize	表中没有的文件的字节数
+	 * @return
+	 * @throws IOException
+	 */
+	public static FileSizeTable load(String filePath, String cutCommonPrefix, long defaultSize) throws IOException{
+
+		FileSizeTable table = new FileSizeTable(defaultSize);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8));
+		try{
+			String line;
+			while((line = reader.readLine()) != null){
+				table.parseLine(line, cutCommonPrefix);
+			}
+		}
+		finally{
+			reader.close();
+		}
+		return table;
+	}
+
+	private void parseLine(String line, String cutCommonPrefix){
+
+		String[] tokens = line.trim().split("\\s+");
+		String file;
+		String size;
+		if(tokens.length >= 8){
+			// hdfs dfs -ls -R：权限 副本数 用户 组 字节数 日期 时间 路径
+			if(tokens[0].startsWith("d")){
+				return;
+			}
+			file = tokens[tokens.length - 1];
+			size = tokens[4];
+		}
+		else if(tokens.length == 2){
+			file = tokens[0];
+			size = tokens[1];
+		}
+		else{
+			return;
+		}
+
+		if(cutCommonPrefix != null && !cutCommonPrefix.isEmpty() && file.startsWith(cutCommonPrefix)){
+			file = file.substring(cutCommonPrefix.length());
+		}
+		try{
+			put(file, Long.parseLong(size));
+		}
+		catch(NumberFormatException e){
+			// 标题行等，忽略
+		}
+	}
+
+	public void put(String file, long size){
+		sizes.put(file, Math.max(size, 1));
+	}
+
+	/**
+	 * @param file
+	 * @return	文件的字节数，表中没有时为defaultSize
+	 */
+	public long getSize(String file){
+
+		Long size = sizes.get(file);
+		return size == null ? defaultSize : size;
+	}
+
+	public int size(){
+		return sizes.size();
+	}
+
+
+	/* getters */
+
+	public long getDefaultSize() {
+		return defaultSize;
+	}
+}
@@ -0,0 +1,125 @@
+package cn.edu.zju.lau.test.simulate.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 文件名组成的双向链表，可以O(1)地查找、移动、删除任意文件。
+ * 表头为最近放入（最近使用）的文件，表尾为最早放入（最久未使用）的文件。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+class KeyList {
+
+	private Map<String, Node> nodes = new HashMap<String, Node>();
+	private Node head;
+	private Node tail;
+
+	boolean contains(String key){
+		return nodes.containsKey(key);
+	}
+
+	int size(){
+		return nodes.size();
+	}
+
+	boolean isEmpty(){
+		return nodes.isEmpty();
+	}
+
+	/**
+	 * 放到表头，key必须不在表中
+	 */
+	void addFirst(String key){
+
+		Node node = new Node(key);
+		nodes.put(key, node);
+		node.next = head;
+		if(head != null){
+			head.prev = node;
+		}
+		else{
+			tail = node;
+		}
+		head = node;
+	}
+
+	/**
+	 * 移到表头
+	 * @return	key是否在表中
+	 */
+	boolean moveToFirst(String key){
+
+		Node node = nodes.get(key);
+		if(node == null){
+			return false;
+		}
+		if(node != head){
+			unlink(node);
+			node.prev = null;
+			node.next = head;
+			head.prev = node;
+			head = node;
+		}
+		return true;
+	}
+
+	/**
+	 * @return	key是否在表中
+	 */
+	boolean remove(String key){
+
+		Node node = nodes.remove(key);
+		if(node == null){
+			return false;
+		}
+		unlink(node);
+		return true;
+	}
+
+	/**
+	 * 删除表尾
+	 * @return	表尾的key，表为空时返回null
+	 */
+	String removeLast(){
+
+		if(tail == null){
+			return null;
+		}
+		String key = tail.key;
+		remove(key);
+		return key;
+	}
+
+	String peekLast(){
+		return tail == null ? null : tail.key;
+	}
+
+	private void unlink(Node node){
+
+		if(node.prev != null){
+			node.prev.next = node.next;
+		}
+		else{
+			head = node.next;
+		}
+		if(node.next != null){
+			node.next.prev = node.prev;
+		}
+		else{
+			tail = node.prev;
+		}
+	}
+
+	private static class Node {
+
+		private final String key;
+		private Node prev;
+		private Node next;
+
+		Node(String key){
+			this.key = key;
+		}
+	}
+}
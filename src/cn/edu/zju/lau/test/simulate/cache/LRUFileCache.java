@@ -0,0 +1,60 @@
+package cn.edu.zju.lau.test.simulate.cache;
+
+/**
+ * LRU：预取的文件与读取的文件一样放到最近使用的位置（与utils.LRUCache相同）。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class LRUFileCache implements FileCache {
+
+	private KeyList files = new KeyList();
+	private int capacity;
+
+	public LRUFileCache(int capacity){
+		this.capacity = Math.max(capacity, 1);
+	}
+
+	@Override
+	public synchronized boolean access(String file) {
+
+		if(files.moveToFirst(file)){
+			return true;
+		}
+		insert(file);
+		return false;
+	}
+
+	@Override
+	public synchronized boolean prefetch(String file) {
+
+		if(files.moveToFirst(file)){
+			return false;
+		}
+		insert(file);
+		return true;
+	}
+
+	private void insert(String file){
+
+		files.addFirst(file);
+		if(files.size() > capacity){
+			files.removeLast();
+		}
+	}
+
+	@Override
+	public synchronized boolean contains(String file) {
+		return files.contains(file);
+	}
+
+	@Override
+	public synchronized int size() {
+		return files.size();
+	}
+
+	@Override
+	public long getCapacity() {
+		return capacity;
+	}
+}
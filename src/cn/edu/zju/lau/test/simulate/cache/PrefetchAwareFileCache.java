@@ -0,0 +1,79 @@
+package cn.edu.zju.lau.test.simulate.cache;
+
+/**
+ * 区分预取的LRU：预取的文件先放在试用区（probation），第一次被读取时才提升到LRU链表的最近使用位置。
+ * 替换时先替换试用区中最早预取的文件，试用区为空时才替换LRU链表中最久未使用的文件，
+ * 错误的预测最多挤掉其他预取的文件，不会挤掉经常读取的文件。
+ *
+ * 相当于把预取的文件插入到LRU链表最久未使用的一端（多个预取的文件之间按预取的先后顺序）。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class PrefetchAwareFileCache implements FileCache {
+
+	private KeyList probation = new KeyList();		// 预取后还没有被读取的文件
+	private KeyList main = new KeyList();			// 读取过的文件，LRU
+	private int capacity;
+
+	public PrefetchAwareFileCache(int capacity){
+		this.capacity = Math.max(capacity, 1);
+	}
+
+	@Override
+	public synchronized boolean access(String file) {
+
+		if(main.moveToFirst(file)){
+			return true;
+		}
+		// 预取的文件第一次命中，提升
+		if(probation.remove(file)){
+			main.addFirst(file);
+			return true;
+		}
+		evict();
+		main.addFirst(file);
+		return false;
+	}
+
+	@Override
+	public synchronized boolean prefetch(String file) {
+
+		if(main.contains(file) || probation.contains(file)){
+			return false;
+		}
+		evict();
+		probation.addFirst(file);
+		return true;
+	}
+
+	/**
+	 * 放入新文件之前腾出一个位置：先替换试用区中最早预取的文件，试用区为空时替换最久未使用的文件
+	 */
+	private void evict(){
+
+		if(main.size() + probation.size() >= capacity){
+			if(!probation.isEmpty()){
+				probation.removeLast();
+			}
+			else{
+				main.removeLast();
+			}
+		}
+	}
+
+	@Override
+	public synchronized boolean contains(String file) {
+		return main.contains(file) || probation.contains(file);
+	}
+
+	@Override
+	public synchronized int size() {
+		return main.size() + probation.size();
+	}
+
+	@Override
+	public long getCapacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,157 @@
+package cn.edu.zju.lau.test.simulate.cache;
+
+/**
+ * W-TinyLFU（Einziger et al., TOS'17）：
+ * 		1. 窗口（window）：1%的容量，LRU，新文件先进入窗口；
+ * 		2. 主区：其余容量，分段LRU（SLRU）：试用段（probation，20%）和保护段（protected，80%），
+ * 		   试用段中的文件再次被读取时进入保护段，保护段满时最久未使用的文件降回试用段；
+ * 		3. 准入：窗口中被替换出的文件与试用段中最久未使用的文件比较读取频率（Count-Min Sketch估计），
+ * 		   频率更高的留在主区，另一个被替换。
+ * 频率每记录 10 * 容量 次读取后减半，使旧的频率逐渐失效。
+ * 预取的文件与新文件一样进入窗口，但不计入读取频率，错误的预测很难通过准入挤掉主区中经常读取的文件。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class TinyLFUFileCache implements FileCache {
+
+	private static final int SKETCH_DEPTH = 4;
+	private static final int[] SEEDS = {0x97CB3127, 0xB3D8CA25, 0xC17A7D3F, 0x8F1BBCDC};
+
+	private KeyList window = new KeyList();
+	private KeyList probation = new KeyList();
+	private KeyList protect = new KeyList();
+	private int capacity;
+	private int maxWindow;
+	private int maxMain;
+	private int maxProtected;
+
+	// Count-Min Sketch
+	private int[] sketch;
+	private int sketchMask;
+	private int sampleSize;		// 记录这么多次读取后，所有频率减半
+	private int sampleCount;
+
+	public TinyLFUFileCache(int capacity){
+
+		this.capacity = Math.max(capacity, 1);
+		this.maxWindow = Math.max(this.capacity / 100, 1);
+		this.maxMain = this.capacity - maxWindow;
+		this.maxProtected = maxMain * 8 / 10;
+
+		int width = 16;
+		while(width < this.capacity * 4){
+			width *= 2;
+		}
+		this.sketch = new int[SKETCH_DEPTH * width];
+		this.sketchMask = width - 1;
+		this.sampleSize = 10 * this.capacity;
+		this.sampleCount = 0;
+	}
+
+	@Override
+	public synchronized boolean access(String file) {
+
+		increment(file);
+
+		if(window.moveToFirst(file) || protect.moveToFirst(file)){
+			return true;
+		}
+		if(probation.remove(file)){
+			protect.addFirst(file);
+			if(protect.size() > maxProtected){
+				probation.addFirst(protect.removeLast());
+			}
+			return true;
+		}
+
+		insert(file);
+		return false;
+	}
+
+	@Override
+	public synchronized boolean prefetch(String file) {
+
+		if(contains(file)){
+			return false;
+		}
+		insert(file);
+		return true;
+	}
+
+	/**
+	 * 新文件放入窗口，窗口满时窗口中最久未使用的文件与主区的替换对象竞争
+	 */
+	private void insert(String file){
+
+		window.addFirst(file);
+		if(window.size() <= maxWindow){
+			return;
+		}
+
+		String candidate = window.removeLast();
+		if(probation.size() + protect.size() < maxMain){
+			probation.addFirst(candidate);
+			return;
+		}
+		if(maxMain == 0){
+			return;
+		}
+
+		KeyList victims = probation.isEmpty() ? protect : probation;
+		String victim = victims.peekLast();
+		if(frequency(candidate) > frequency(victim)){
+			victims.removeLast();
+			probation.addFirst(candidate);
+		}
+	}
+
+	private void increment(String file){
+
+		int hash = spread(file.hashCode());
+		for(int i = 0; i < SKETCH_DEPTH; i++){
+			int index = i * (sketchMask + 1) + (spread(hash ^ SEEDS[i]) & sketchMask);
+			if(sketch[index] < Integer.MAX_VALUE){
+				sketch[index]++;
+			}
+		}
+
+		// 老化：所有频率减半
+		if(++sampleCount >= sampleSize){
+			for(int i = 0; i < sketch.length; i++){
+				sketch[i] >>>= 1;
+			}
+			sampleCount /= 2;
+		}
+	}
+
+	private int frequency(String file){
+
+		int hash = spread(file.hashCode());
+		int frequency = Integer.MAX_VALUE;
+		for(int i = 0; i < SKETCH_DEPTH; i++){
+			frequency = Math.min(frequency, sketch[i * (sketchMask + 1) + (spread(hash ^ SEEDS[i]) & sketchMask)]);
+		}
+		return frequency;
+	}
+
+	private static int spread(int h){
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public synchronized boolean contains(String file) {
+		return window.contains(file) || probation.contains(file) || protect.contains(file);
+	}
+
+	@Override
+	public synchronized int size() {
+		return window.size() + probation.size() + protect.size();
+	}
+
+	@Override
+	public long getCapacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,94 @@
+package cn.edu.zju.lau.test.simulate.cache;
+
+/**
+ * 2Q（Johnson & Shasha, VLDB'94 的完整版本）：
+ * 		1. A1in：第一次进入缓存的文件，FIFO，占容量的1/4；
+ * 		2. A1out：从A1in中被替换的文件名（不缓存文件本身），最多为容量的1/2；
+ * 		3. Am：在A1out中时又被读取的文件，LRU。
+ * 只被读取一次的文件在A1in中就被替换，不会挤掉Am中经常读取的文件。
+ * 预取的文件与第一次读取的文件一样放入A1in。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class TwoQueueFileCache implements FileCache {
+
+	private KeyList a1in = new KeyList();
+	private KeyList a1out = new KeyList();
+	private KeyList am = new KeyList();
+	private int capacity;
+	private int maxIn;			// A1in的容量
+	private int maxOut;			// A1out的容量
+
+	public TwoQueueFileCache(int capacity){
+		this.capacity = Math.max(capacity, 1);
+		this.maxIn = Math.max(this.capacity / 4, 1);
+		this.maxOut = Math.max(this.capacity / 2, 1);
+	}
+
+	@Override
+	public synchronized boolean access(String file) {
+
+		if(am.moveToFirst(file)){
+			return true;
+		}
+		if(a1in.contains(file)){
+			return true;
+		}
+
+		reclaim();
+		if(a1out.remove(file)){
+			am.addFirst(file);
+		}
+		else{
+			a1in.addFirst(file);
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized boolean prefetch(String file) {
+
+		if(am.contains(file) || a1in.contains(file)){
+			return false;
+		}
+		reclaim();
+		a1out.remove(file);
+		a1in.addFirst(file);
+		return true;
+	}
+
+	/**
+	 * 缓存已满时腾出一个位置：A1in超过容量时替换A1in中最早进入的文件（文件名移入A1out），否则替换Am中最久未使用的文件
+	 */
+	private void reclaim(){
+
+		if(a1in.size() + am.size() < capacity){
+			return;
+		}
+		if(a1in.size() > maxIn || am.isEmpty()){
+			a1out.addFirst(a1in.removeLast());
+			if(a1out.size() > maxOut){
+				a1out.removeLast();
+			}
+		}
+		else{
+			am.removeLast();
+		}
+	}
+
+	@Override
+	public synchronized boolean contains(String file) {
+		return am.contains(file) || a1in.contains(file);
+	}
+
+	@Override
+	public synchronized int size() {
+		return am.size() + a1in.size();
+	}
+
+	@Override
+	public long getCapacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,112 @@
+package cn.edu.zju.lau.test.simulate.cache;
+
+/**
+ * 按字节计算容量的LRU：每个文件占用FileSizeTable中的字节数，放入文件时替换最久未使用的文件，直到放得下为止。
+ * 大于整个缓存容量的文件不放入缓存（读取时总是未命中，也不会挤掉其他文件）。
+ *
+ * prefetchAware为true时与PrefetchAwareFileCache相同：预取的文件先放在试用区，第一次被读取时才提升，
+ * 替换时先替换试用区中最早预取的文件。两者都在放入新文件之前腾出空间，每个文件为1字节时，
+ * 结果与PrefetchAwareFileCache（prefetchAware为false时与LRUFileCache）完全相同。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class WeightedLRUFileCache implements FileCache {
+
+	private KeyList probation = new KeyList();		// 预取后还没有被读取的文件，prefetchAware为false时不使用
+	private KeyList main = new KeyList();			// LRU
+	private FileSizeTable sizes;
+	private long capacity;							// 字节数
+	private long usedBytes;
+	private boolean prefetchAware;
+
+	public WeightedLRUFileCache(long capacity, FileSizeTable sizes){
+		this(capacity, sizes, false);
+	}
+
+	/**
+	 * @param capacity	缓存的字节数
+	 * @param sizes	文件大小表
+	 * @param prefetchAware	预取的文件是否先放在试用区
+	 */
+	public WeightedLRUFileCache(long capacity, FileSizeTable sizes, boolean prefetchAware){
+		this.capacity = Math.max(capacity, 1);
+		this.sizes = sizes;
+		this.prefetchAware = prefetchAware;
+	}
+
+	@Override
+	public synchronized boolean access(String file) {
+
+		if(main.moveToFirst(file)){
+			return true;
+		}
+		// 预取的文件第一次命中，提升
+		if(probation.remove(file)){
+			main.addFirst(file);
+			return true;
+		}
+		if(reserve(sizes.getSize(file))){
+			main.addFirst(file);
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized boolean prefetch(String file) {
+
+		// 与LRUFileCache相同，预取已在缓存中的文件时将其移到最近使用的位置
+		if(!prefetchAware && main.moveToFirst(file)){
+			return false;
+		}
+		if(main.contains(file) || probation.contains(file)){
+			return false;
+		}
+		if(!reserve(sizes.getSize(file))){
+			return false;
+		}
+		if(prefetchAware){
+			probation.addFirst(file);
+		}
+		else{
+			main.addFirst(file);
+		}
+		return true;
+	}
+
+	/**
+	 * 为size字节的文件腾出空间，先替换试用区中最早预取的文件，再替换最久未使用的文件
+	 * @return	文件是否放得下，放得下时usedBytes已加上size
+	 */
+	private boolean reserve(long size){
+
+		if(size > capacity){
+			return false;
+		}
+		while(usedBytes + size > capacity){
+			String victim = !probation.isEmpty() ? probation.removeLast() : main.removeLast();
+			usedBytes -= sizes.getSize(victim);
+		}
+		usedBytes += size;
+		return true;
+	}
+
+	@Override
+	public synchronized boolean contains(String file) {
+		return main.contains(file) || probation.contains(file);
+	}
+
+	@Override
+	public synchronized int size() {
+		return main.size() + probation.size();
+	}
+
+	@Override
+	public long getCapacity() {
+		return capacity;
+	}
+
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+}
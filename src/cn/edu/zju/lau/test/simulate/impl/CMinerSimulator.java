@@ -1,14 +1,15 @@
 package cn.edu.zju.lau.test.simulate.impl;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-
-import org.apache.commons.lang.StringUtils;
 
 import cn.edu.zju.lau.cminer.impl.hdfs.CMinerHDFS;
-import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+import cn.edu.zju.lau.cminer.model.hdfs.SessionSequences;
+import cn.edu.zju.lau.cminer.predict.RulePredictor;
+import cn.edu.zju.lau.cminer.predict.RuleTrie;
 import cn.edu.zju.lau.test.simulate.Simulator;
+import cn.edu.zju.lau.test.simulate.cache.FileCache;
+import cn.edu.zju.lau.test.simulate.cache.FileCaches;
+import cn.edu.zju.lau.test.simulate.cache.FileSizeTable;
 
 /**
  * 采用CMiner算法作为PredictCache的预测算法，模拟使用。
@@ -19,8 +20,8 @@ import cn.edu.zju.lau.test.simulate.Simulator;
 public class CMinerSimulator extends Simulator{
 
 	private CMinerHDFS miner;
-	private String currentPrefix;
-	private int currentGap = 0;
+	private RulePredictor predictor;	// 在关联规则的前缀树上，根据访问上文预测后续文件
+	private int predictNum = 1;			// 每次预测时，最多预取的文件个数（排名前predictNum的prediction）
 	
 	/**
 	 * 默认参数：
@@ -33,6 +34,14 @@ public class CMinerSimulator extends Simulator{
 		this.miner = new CMinerHDFS();
 		this.miner.setMaxGap(2);
 	}
+	
+	protected CMinerSimulator(FileCache fileCache) {
+		
+		super(fileCache);
+		
+		this.miner = new CMinerHDFS();
+		this.miner.setMaxGap(2);
+	}
 
 	/**
 	 * 设置CMiner数据集：文件访问日志中的文件名列表
@@ -42,12 +51,21 @@ public class CMinerSimulator extends Simulator{
 		this.miner.setInputSequence(logs);
 	}
 	
+	/**
+	 * 设置CMiner数据集：按会话拆分后的文件访问序列，每个会话单独分段
+	 * @param sessions
+	 */
+	public void setSessionDataSet(SessionSequences sessions){
+		this.miner.setInputSessions(sessions);
+	}
+	
 	/**
 	 * 调用CMiner方法，根据文件访问日志挖掘关联规则
 	 * @param logs
 	 */
 	public void generateRules(){
 		this.miner.startMining();
+		this.predictor = new RulePredictor(new RuleTrie(miner.getRules()), miner.getMaxGap());
 	}
 	
 	/**
@@ -55,65 +73,15 @@ public class CMinerSimulator extends Simulator{
 	 */
 	@Override
 	protected List<String> getPredictFiles(String currentFile) {
-		
-		String nextFile = null;
-
-		// 将当前读取的文件考虑到序列中
-		if(StringUtils.isEmpty(currentPrefix)){
-			currentPrefix = currentFile;
-		}
-		else{
-			currentPrefix += ("|" + currentFile);
-		}
-
-		// 在规则中搜索序列，若找到，则返回
-		boolean starts = false;
-		for(Map.Entry<String, HDFSRule> entry: miner.getRules().entrySet()){
-			if(entry.getKey().startsWith(currentPrefix)){
-				//【只是】以当前序列开头，非相等：保证找出a->c,a|b->这种情况
-				if(entry.getKey().endsWith(currentPrefix)){
-					nextFile = entry.getValue().getPrediction();
-				}
-				else{
-					starts = true;
-				}
-			}
-		}
-		
-		// 规则中未找到该序列，有四种可能：
-		if(currentPrefix.equals(currentFile)){
-			// 1. 序列仅包含一个文件，且没有匹配的：跳过，从下一个文件重新开始
-			if(!starts){
-				currentPrefix = null;
-				currentGap = 0;
-			}
-			// 2. 有匹配的序列前缀，但是并未完整形成：以当前序列为基础，继续生成 
-			else{
-				currentGap = 0;
-			}
-		}
-		else{
-			// 1. 没有匹配到规则序列，且超过maxGap：直接以当前文件作为新序列开头，重新生成
-			if((!starts) && currentGap > miner.getMaxGap()){
-				currentPrefix = currentFile;
-				currentGap = 0;
-			}
-			// 2. 有匹配的序列前缀，但是并未完整形成：以当前序列为基础，继续生成
-			else if(starts){
-				currentGap = 0;
-			}
-			// 3. 没有匹配的序列前缀，且不是序列开头，Gap也没有超过：让其在gap范围内继续扩展一层
-			else{
-				currentGap++;
-			}
-		}
-		
-		List<String> predictSuffixes = new ArrayList<String>();
-		if(!StringUtils.isEmpty(nextFile)){
-			predictSuffixes.add(nextFile);
-		}
+		return predictor.predict(currentFile, predictNum);
+	}
+	
+	public int getPredictNum() {
+		return predictNum;
+	}
 
-		return predictSuffixes;
+	public void setPredictNum(int predictNum) {
+		this.predictNum = predictNum;
 	}
 
 	/**
@@ -122,17 +90,39 @@ public class CMinerSimulator extends Simulator{
 	 */
 	public static void main(String[] args){
 		
+		// 文件缓存的替换策略，见FileCaches.POLICIES
+		String policy = FileCaches.LRU;
+		
+		// 文件大小表，为null时按文件个数统计
+		String sizePath = null;
+		FileSizeTable sizes = loadFileSizes(sizePath, "/user/root/input/sogou/query-log-", 4096);
+		
+		// 是否按客户端（ugi + ip）拆分会话后再挖掘，模拟读取时仍按日志中交错的顺序
+		boolean bySession = false;
+		
 		for(int fileCacheSize = 1; fileCacheSize <= 50; fileCacheSize++){
 				
-			CMinerSimulator simulator = new CMinerSimulator(fileCacheSize);
+			CMinerSimulator simulator = new CMinerSimulator(FileCaches.create(policy, fileCacheSize));
+			// 按字节计算容量：fileCacheSize为GB数
+//			simulator = new CMinerSimulator(FileCaches.createWeighted(policy, fileCacheSize * (1L << 30), sizes));
+			simulator.setFileSizes(sizes);
 			
 			// 获取数据集
 			List<String> logs = simulator.getDataSet("D://audit-interleaving.log", "/user/root/input/sogou/query-log-");
 			
 			// 生成关联规则
-			simulator.setDataSet(logs);
+			SessionSequences sessions = bySession ? simulator.getSessionDataSet("D://audit-interleaving.log", "/user/root/input/sogou/query-log-") : null;
+			if(sessions != null){
+				simulator.setSessionDataSet(sessions);
+			}
+			else{
+				simulator.setDataSet(logs);
+			}
 			simulator.generateRules();
 			
+			// 异步预取：预测的文件交给预取线程放入Cache，不阻塞访问
+//			simulator.enableAsyncPrefetch(64, 2, 10);
+			
 			// 模拟读取数据，利用关联规则提高Cache命中率
 			int hitCount = 0;
 			int prefetchCount = 0;
@@ -154,10 +144,7 @@ public class CMinerSimulator extends Simulator{
 //					}
 					
 					// read miss causes prediction
-					for(String file: simulator.getPredictFiles(currentFile)){
-						simulator.putFileIntoCache(file, file);
-						prefetchCount++;
-					}
+					prefetchCount += simulator.prefetch(simulator.getPredictFiles(currentFile));
 				}
 				// Hit
 				else{
@@ -168,10 +155,18 @@ public class CMinerSimulator extends Simulator{
 				totalTime += (end - start);
 			}
 			
+			simulator.shutdownPrefetch();
+			
 			// 输出命中率
 			// System.out.println("CMiner Hit Ratio: " + (hitCount * 1.0 / logs.size()));
 			System.out.println(hitCount * 1.0 / logs.size());
+			// 读取了文件大小表时，输出字节命中率、预取的字节数
+			if(sizePath != null){
+				System.out.println(simulator.getByteHitRatio());
+				System.out.println(simulator.getPrefetchBytes());
+			}
 			// System.out.println(prefetchCount);
+			// System.out.println(simulator.getPrefetchPipeline());
 			// System.out.println(totalTime * 1.0 / logs.size() / 1000000);
 		}
 	}
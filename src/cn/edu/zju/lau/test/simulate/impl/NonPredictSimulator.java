@@ -3,9 +3,12 @@ package cn.edu.zju.lau.test.simulate.impl;
 import java.util.List;
 
 import cn.edu.zju.lau.test.simulate.Simulator;
+import cn.edu.zju.lau.test.simulate.cache.FileCache;
+import cn.edu.zju.lau.test.simulate.cache.FileCaches;
+import cn.edu.zju.lau.test.simulate.cache.FileSizeTable;
 
 /**
- * 不采用预测算法，直接使用LRUCache，模拟使用。
+ * 不采用预测算法，只使用FileCache的替换策略，模拟使用。
  * 
  * @author yuki
  * @date 2013-11-27
@@ -16,6 +19,11 @@ public class NonPredictSimulator extends Simulator{
 		
 		super(fileCacheSize);
 	}
+	
+	protected NonPredictSimulator(FileCache fileCache) {
+		
+		super(fileCache);
+	}
 
 	/**
 	 * 无预测，空方法。
@@ -32,9 +40,19 @@ public class NonPredictSimulator extends Simulator{
 	 */
 	public static void main(String[] args){
 		
+		// 文件缓存的替换策略，见FileCaches.POLICIES
+		String policy = FileCaches.LRU;
+		
+		// 文件大小表，为null时按文件个数统计
+		String sizePath = null;
+		FileSizeTable sizes = loadFileSizes(sizePath, "/user/root/input/sogou/query-log-", 4096);
+		
 		for(int fileCacheSize = 1; fileCacheSize <= 50; fileCacheSize++){
-			
-			NonPredictSimulator simulator = new NonPredictSimulator(fileCacheSize);
+				
+			NonPredictSimulator simulator = new NonPredictSimulator(FileCaches.create(policy, fileCacheSize));
+			// 按字节计算容量：fileCacheSize为GB数
+//			simulator = new NonPredictSimulator(FileCaches.createWeighted(policy, fileCacheSize * (1L << 30), sizes));
+			simulator.setFileSizes(sizes);
 			
 			// 获取数据集
 			List<String> logs = simulator.getDataSet("D://audit-interleaving.log", "/user/root/input/sogou/query-log-");
@@ -72,6 +90,10 @@ public class NonPredictSimulator extends Simulator{
 			// 输出命中率
 			// System.out.println("Non-Predict Hit Ratio: " + (hitCount * 1.0 / logs.size()));
 			System.out.println(hitCount * 1.0 / logs.size());
+			// 读取了文件大小表时，输出字节命中率
+			if(sizePath != null){
+				System.out.println(simulator.getByteHitRatio());
+			}
 			// System.out.println(totalTime * 1.0 / logs.size() /1000000);
 		}
 	}
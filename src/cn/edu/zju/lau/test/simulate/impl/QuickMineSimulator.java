@@ -6,6 +6,9 @@ import java.util.List;
 import cn.edu.zju.lau.quickmine.QuickMine;
 import cn.edu.zju.lau.quickmine.model.Suffix;
 import cn.edu.zju.lau.test.simulate.Simulator;
+import cn.edu.zju.lau.test.simulate.cache.FileCache;
+import cn.edu.zju.lau.test.simulate.cache.FileCaches;
+import cn.edu.zju.lau.test.simulate.cache.FileSizeTable;
 
 /**
  * 采用QuickMine算法作为PredictCache的预测算法，模拟使用。
@@ -30,6 +33,14 @@ public class QuickMineSimulator extends Simulator{
 		this.prefetchNum = 3;
 		this.miner = new QuickMine(1024, 8, 3);
 	}
+	
+	protected QuickMineSimulator(FileCache fileCache) {
+		
+		super(fileCache);
+		
+		this.prefetchNum = 3;
+		this.miner = new QuickMine(1024, 8, 3);
+	}
 
 	/**
 	 * 根据当前访问的前两次访问构成的序列，获取后续预测文件。
@@ -49,7 +60,7 @@ public class QuickMineSimulator extends Simulator{
 			int count = 0;
 			for(int i = 0; i < candidateSuffix.size() && count < this.prefetchNum; i++){
 				String suffix = candidateSuffix.get(i).getSuffix();
-				if(FILE_CACHE.containsKey(suffix)){
+				if(FILE_CACHE.contains(suffix)){
 					continue;
 				}
 				else{
@@ -76,15 +87,28 @@ public class QuickMineSimulator extends Simulator{
 	 */
 	public static void main(String[] args){
 		
+		// 文件缓存的替换策略，见FileCaches.POLICIES
+		String policy = FileCaches.LRU;
+		
+		// 文件大小表，为null时按文件个数统计
+		String sizePath = null;
+		FileSizeTable sizes = loadFileSizes(sizePath, "/user/root/input/sogou/query-log-", 4096);
+		
 		for(int fileCacheSize = 1; fileCacheSize <= 50; fileCacheSize++){
 				
-			QuickMineSimulator simulator = new QuickMineSimulator(fileCacheSize);
+			QuickMineSimulator simulator = new QuickMineSimulator(FileCaches.create(policy, fileCacheSize));
+			// 按字节计算容量：fileCacheSize为GB数
+//			simulator = new QuickMineSimulator(FileCaches.createWeighted(policy, fileCacheSize * (1L << 30), sizes));
+			simulator.setFileSizes(sizes);
 			
 			// 获取数据集
 			List<String> logs = simulator.getDataSet("D://audit-interleaving.log", "/user/root/input/sogou/query-log-");
 			
 			// 生成关联规则：QuickMine 不需要预先生成关联规则
 			
+			// 异步预取：预测的文件交给预取线程放入Cache，不阻塞访问
+//			simulator.enableAsyncPrefetch(64, 2, 10);
+			
 			// 模拟读取数据，利用关联规则提高Cache命中率
 			int hitCount = 0;
 			int prefetchCount = 0;
@@ -98,10 +122,7 @@ public class QuickMineSimulator extends Simulator{
 				// Miss
 				if(targetFile == null){		
 					// read miss causes prediction
-					for(String file: simulator.getPredictFiles(currentFile)){
-						simulator.putFileIntoCache(file, file);
-						prefetchCount++;
-					}
+					prefetchCount += simulator.prefetch(simulator.getPredictFiles(currentFile));
 				}
 				// Hit
 				else{
@@ -116,10 +137,18 @@ public class QuickMineSimulator extends Simulator{
 				totalTime += (end - start);
 			}
 			
+			simulator.shutdownPrefetch();
+			
 			// 输出命中率
 			// System.out.println("QuickMine Hit Ratio: " + (hitCount * 1.0 / logs.size()));
 			System.out.println(hitCount * 1.0 / logs.size());
+			// 读取了文件大小表时，输出字节命中率、预取的字节数
+			if(sizePath != null){
+				System.out.println(simulator.getByteHitRatio());
+				System.out.println(simulator.getPrefetchBytes());
+			}
 			// System.out.println(prefetchCount);
+			// System.out.println(simulator.getPrefetchPipeline());
 			// System.out.println(totalTime * 1.0 / logs.size() / 1000000);
 		}
 	}
@@ -0,0 +1,70 @@
+package cn.edu.zju.lau.test.unit;
+
+import java.util.List;
+import java.util.Map;
+
+import cn.edu.zju.lau.cminer.impl.hdfs.CMinerHDFSInterned;
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+
+/**
+ * CMinerHDFSInterned测试类
+ * @author yuki
+ * @date 2013-12-02
+ */
+public class CMinerHDFSInternedTest {
+
+	private static final String LOG_PATH = "D://audit.log";
+	private static CMinerHDFSInterned miner = new CMinerHDFSInterned();
+
+	public static void main(String[] args){
+
+		// 使用默认参数执行挖掘，输出每一步的结果
+		testByStep(LOG_PATH);
+	}
+
+	/**
+	 * 分步执行挖掘过程的每一个过程，并输出中间结果
+	 */
+	public static void testByStep(String filePath){
+
+		miner.setMinSupport(3);
+		miner.setWindowSize(26);
+
+		// 读取文件
+		List<String> logs = CMinerHDFSTest.getLogs(filePath);
+		miner.setInputSequence(logs);
+
+		long start = System.currentTimeMillis();
+
+		// 对文件访问日志分段，同时转换为文件ID
+		miner.cutAccessSequence();
+		System.out.println("** dictionary:");
+		System.out.println(miner.getDictionary());
+
+		// 获取长度为1的频繁序列
+		miner.generateFirstDs();
+
+		// 挖掘：频繁子序列
+		miner.candidateFreSubsequences();
+		System.out.println("** frequent subsequences:");
+		System.out.println(miner.getIdFreSubsequences());
+
+		// 过滤：Closed频繁子序列
+		miner.closedFreSubsequences();
+		System.out.println("** closed frequent subsequences:");
+		System.out.println(miner.getIdClosedFreSubsequences());
+
+		// 生成：关联规则
+		miner.generateRules();
+		long end = System.currentTimeMillis();
+
+		System.out.println("** rules:");
+		for(Map.Entry<String, HDFSRule> entry: miner.getRules().entrySet()){
+			System.out.println(entry.getValue());
+		}
+		System.out.print(miner);
+		System.out.println("Run Time: \t" + (end - start)/1000.0 + "s");
+
+		miner.clear();
+	}
+}
@@ -1,17 +1,15 @@
 package cn.edu.zju.lau.test.unit;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import cn.edu.zju.lau.cminer.impl.hdfs.CMinerHDFS;
-import cn.edu.zju.lau.cminer.model.hdfs.FileAccessLog;
+import cn.edu.zju.lau.cminer.io.hdfs.AuditLogReader;
 import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
 import cn.edu.zju.lau.cminer.model.hdfs.HDFSSubseqSuffix;
+import cn.edu.zju.lau.utils.FileDictionary;
 
 /**
  * CMinerHDFS测试类
@@ -45,25 +43,21 @@ public class CMinerHDFSTest {
 	}
 	
 	/**
-	 * 从filePath处读取日志文件，并解析成FileAccessLog对象列表，返回。
+	 * 从filePath处读取日志文件，返回OPEN操作访问的文件名列表。
 	 * @param filePath
 	 * @return
 	 */
 	public static List<String> getLogs(String filePath){
 		
 		List<String> logs = new ArrayList<String>();
-
-		File file = new File(filePath);
-        BufferedReader reader = null;
+		FileDictionary dictionary = new FileDictionary();
+        AuditLogReader reader = null;
         
         try {
-            reader = new BufferedReader(new FileReader(file));
-            String logLine = null;
-            while ((logLine = reader.readLine()) != null) {
-            	FileAccessLog log = FileAccessLog.parse(logLine);
-            	if(log.isValid()){
-            		logs.add(log.getSrc().split("/user/root/input/sogou/query-log-")[1]);
-            	}
+            reader = new AuditLogReader(filePath, dictionary, "/user/root/input/sogou/query-log-");
+            int fileId;
+            while ((fileId = reader.next()) >= 0) {
+            	logs.add(dictionary.getName(fileId));
             }
         } 
         catch (IOException ioe) {
@@ -0,0 +1,117 @@
+package cn.edu.zju.lau.test.unit;
+
+import java.util.Random;
+
+import cn.edu.zju.lau.test.simulate.cache.FileCache;
+import cn.edu.zju.lau.test.simulate.cache.FileCaches;
+import cn.edu.zju.lau.test.simulate.cache.FileSizeTable;
+import cn.edu.zju.lau.test.simulate.cache.LRUFileCache;
+import cn.edu.zju.lau.test.simulate.cache.PrefetchAwareFileCache;
+import cn.edu.zju.lau.test.simulate.cache.WeightedLRUFileCache;
+
+/**
+ * FileCache测试类：
+ * 		1. 缓存中都是读取过的文件时，预取的文件应留在缓存中，之后读取命中；
+ * 		2. 所有替换策略：prefetch返回true后文件在缓存中，access的返回值与之前的contains相同，文件个数不超过容量；
+ * 		3. WeightedLRUFileCache：每个文件为1字节时与LRUFileCache / PrefetchAwareFileCache完全相同，
+ * 		   文件大小不同时占用的字节数不超过容量。
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class FileCacheTest {
+
+	public static void main(String[] args){
+
+		// 缓存已满，试用区为空
+		FileCache cache = new PrefetchAwareFileCache(3);
+		cache.access("a");
+		cache.access("b");
+		cache.access("c");
+		boolean loaded = cache.prefetch("x");
+		boolean cached = cache.contains("x");
+		boolean hit = cache.access("x");
+		boolean evicted = !cache.contains("a");
+		System.out.println("prefetch into full cache: " + (loaded && cached && hit && evicted ? "OK" : "MISMATCH"));
+
+		for(String policy: FileCaches.POLICIES){
+			boolean ok = true;
+			for(int capacity: new int[]{1, 2, 3, 7, 16, 100}){
+				ok &= check(FileCaches.create(policy, capacity), capacity, new Random(capacity));
+			}
+			System.out.println(policy + ": " + (ok ? "OK" : "MISMATCH"));
+		}
+
+		// 每个文件为1字节
+		boolean lruSame = true;
+		boolean prefetchAwareSame = true;
+		for(int capacity: new int[]{1, 2, 3, 7, 16, 100}){
+			lruSame &= same(new LRUFileCache(capacity),
+					new WeightedLRUFileCache(capacity, new FileSizeTable(1)), capacity, new Random(capacity));
+			prefetchAwareSame &= same(new PrefetchAwareFileCache(capacity),
+					new WeightedLRUFileCache(capacity, new FileSizeTable(1), true), capacity, new Random(capacity));
+		}
+		System.out.println("weighted lru with unit sizes: " + (lruSame ? "OK" : "MISMATCH"));
+		System.out.println("weighted prefetch-aware with unit sizes: " + (prefetchAwareSame ? "OK" : "MISMATCH"));
+
+		// 文件大小不同
+		boolean withinCapacity = true;
+		for(long capacity: new long[]{1, 10, 100, 1000}){
+			Random random = new Random(capacity);
+			FileSizeTable sizes = new FileSizeTable(1);
+			for(int i = 0; i < 500; i++){
+				sizes.put("/file" + i, 1 + random.nextInt(50));
+			}
+			WeightedLRUFileCache weighted = new WeightedLRUFileCache(capacity, sizes, capacity % 20 == 0);
+			for(int i = 0; i < 100000; i++){
+				String file = "/file" + random.nextInt(500);
+				if(random.nextInt(4) == 0){
+					weighted.prefetch(file);
+				}
+				else if(weighted.contains(file) != weighted.access(file)){
+					withinCapacity = false;
+				}
+				withinCapacity &= weighted.getUsedBytes() <= capacity;
+			}
+		}
+		System.out.println("weighted sizes within capacity: " + (withinCapacity ? "OK" : "MISMATCH"));
+	}
+
+	/**
+	 * 相同的读取、预取序列，两个缓存每一步的结果都相同
+	 */
+	static boolean same(FileCache expected, FileCache actual, int capacity, Random random){
+
+		for(int i = 0; i < 100000; i++){
+			String file = "/file" + (int) Math.abs(random.nextGaussian() * capacity * 2);
+			boolean prefetch = random.nextInt(4) == 0;
+			boolean expectedResult = prefetch ? expected.prefetch(file) : expected.access(file);
+			boolean actualResult = prefetch ? actual.prefetch(file) : actual.access(file);
+			if(expectedResult != actualResult || expected.size() != actual.size()){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 随机读取、预取，检查每一步的结果
+	 */
+	static boolean check(FileCache cache, int capacity, Random random){
+
+		for(int i = 0; i < 100000; i++){
+			String file = "/file" + (int) Math.abs(random.nextGaussian() * capacity * 2);
+			if(random.nextInt(4) == 0){
+				if(cache.prefetch(file) && !cache.contains(file)){
+					return false;
+				}
+			}
+			else if(cache.contains(file) != cache.access(file)){
+				return false;
+			}
+			if(cache.size() > capacity){
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,58 @@
+package cn.edu.zju.lau.test.unit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.edu.zju.lau.cminer.impl.hdfs.CMinerHDFSInterned;
+import cn.edu.zju.lau.cminer.impl.hdfs.IncrementalCMinerHDFS;
+
+/**
+ * IncrementalCMinerHDFS测试类：按片段增量挖掘会话，结果应与一次性挖掘所有会话相同。
+ * 每个片段由SessionDemultiplexer的方式生成（各自新建字典），相同的文件ID在不同片段中代表不同的文件。
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class IncrementalCMinerHDFSTest {
+
+	private static final int WINDOW_SIZE = 4;
+	private static final int MAX_GAP = 2;
+	private static final int MIN_SUPPORT = 3;
+	private static final float MIN_CONFIDENCE = 0.1f;
+
+	public static void main(String[] args){
+
+		// 每个会话的长度都是WINDOW_SIZE的整数倍
+		String[][][] slices = {
+			{
+				SessionTestUtils.repeat(new String[]{"/a", "/b"}, 12),
+				SessionTestUtils.repeat(new String[]{"/a", "/b", "/e", "/a"}, 4),
+			},
+			{
+				SessionTestUtils.repeat(new String[]{"/c", "/d"}, 12),
+				SessionTestUtils.repeat(new String[]{"/a", "/c", "/d", "/b"}, 4),
+			},
+		};
+
+		IncrementalCMinerHDFS incremental = new IncrementalCMinerHDFS(WINDOW_SIZE, MAX_GAP, MIN_SUPPORT, MIN_CONFIDENCE);
+		List<String[]> allSessions = new ArrayList<String[]>();
+		for(String[][] slice: slices){
+			incremental.setInputSessions(SessionTestUtils.toSessions(slice));
+			incremental.startMining();
+			for(String[] session: slice){
+				allSessions.add(session);
+			}
+		}
+
+		CMinerHDFSInterned batch = new CMinerHDFSInterned(new ArrayList<String>(), WINDOW_SIZE, MAX_GAP, MIN_SUPPORT, MIN_CONFIDENCE);
+		batch.setInputSessions(SessionTestUtils.toSessions(allSessions.toArray(new String[allSessions.size()][])));
+		batch.startMining();
+
+		String incrementalRules = SessionTestUtils.dump(incremental.getRules());
+		String batchRules = SessionTestUtils.dump(batch.getRules());
+		System.out.println("** incremental rules:");
+		System.out.print(incrementalRules);
+		System.out.println("** batch rules:");
+		System.out.print(batchRules);
+		System.out.println(incrementalRules.equals(batchRules) ? "OK" : "MISMATCH");
+	}
+}
@@ -0,0 +1,133 @@
+package cn.edu.zju.lau.test.unit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import cn.edu.zju.lau.quickmine.model.OffHeapRuleCache;
+import cn.edu.zju.lau.quickmine.model.RuleCache;
+import cn.edu.zju.lau.utils.FileDictionary;
+
+/**
+ * OffHeapRuleCache测试类：
+ * 		1. 不发生替换时，每个prefix的后缀列表（顺序及support）与RuleCache相同；
+ * 		2. 发生替换时，prefix个数不超过容量，toString与getSuffixes一致；
+ * 		3. 压缩字典前后规则相同，压缩后继续添加的规则与不压缩时相同，有替换时字典变小。
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class OffHeapRuleCacheTest {
+
+	private static final int MAX_GAP = 3;
+	private static final int MAX_SUFFIX_NUM = 4;
+
+	public static void main(String[] args){
+
+		int[] files = randomAccesses(200000, 500, 1);
+
+		// 不发生替换
+		FileDictionary dictionary = new FileDictionary();
+		RuleCache heapCache = new RuleCache(1 << 20, MAX_SUFFIX_NUM, dictionary);
+		OffHeapRuleCache offHeapCache = new OffHeapRuleCache(1 << 20, MAX_SUFFIX_NUM, dictionary);
+		addRules(files, dictionary, heapCache, offHeapCache);
+		List<String> heapRules = sortedLines(heapCache.toString());
+		List<String> offHeapRules = sortedLines(offHeapCache.toString());
+		System.out.println("prefixes: " + heapCache.getRules().size() + " / " + offHeapCache.size()
+				+ ", off-heap bytes: " + offHeapCache.getOffHeapBytes());
+		System.out.println("without eviction: " + (heapRules.equals(offHeapRules) ? "OK" : "MISMATCH"));
+
+		// 发生替换
+		int capacity = 1000;
+		dictionary = new FileDictionary();
+		offHeapCache = new OffHeapRuleCache(capacity, MAX_SUFFIX_NUM, dictionary);
+		addRules(files, dictionary, null, offHeapCache);
+		boolean consistent = offHeapCache.size() <= capacity;
+		for(String line: sortedLines(offHeapCache.toString())){
+			String prefix = line.substring(0, line.indexOf("->"));
+			consistent &= line.equals(prefix + "->" + offHeapCache.getSuffixes(prefix));
+		}
+		System.out.println("with eviction: " + (consistent ? "OK" : "MISMATCH"));
+
+		// 压缩字典：不发生替换时文件ID只是重新编号，之后继续添加
+		int[] firstHalf = Arrays.copyOfRange(files, 0, files.length / 2);
+		int[] secondHalf = Arrays.copyOfRange(files, files.length / 2, files.length);
+		FileDictionary plainDictionary = new FileDictionary();
+		OffHeapRuleCache plain = new OffHeapRuleCache(1 << 20, MAX_SUFFIX_NUM, plainDictionary);
+		FileDictionary compactedDictionary = new FileDictionary();
+		OffHeapRuleCache compacted = new OffHeapRuleCache(1 << 20, MAX_SUFFIX_NUM, compactedDictionary);
+		addRules(firstHalf, plainDictionary, null, plain);
+		addRules(firstHalf, compactedDictionary, null, compacted);
+		compacted.compactDictionary(new int[0]);
+		boolean same = sortedLines(plain.toString()).equals(sortedLines(compacted.toString()));
+		addRules(secondHalf, plainDictionary, null, plain);
+		addRules(secondHalf, compactedDictionary, null, compacted);
+		same &= sortedLines(plain.toString()).equals(sortedLines(compacted.toString()));
+		System.out.println("compact without eviction: " + (same ? "OK" : "MISMATCH"));
+
+		// 压缩字典：发生替换后，被替换的文件名移出字典
+		int dictionarySize = dictionary.size();
+		List<String> before = sortedLines(offHeapCache.toString());
+		int pinned = dictionary.getId("/file0");
+		int[] old2New = offHeapCache.compactDictionary(new int[]{pinned});
+		boolean shrunk = before.equals(sortedLines(offHeapCache.toString())) && dictionary.size() < dictionarySize
+				&& old2New[pinned] == 0;
+		for(String line: before){
+			String prefix = line.substring(0, line.indexOf("->"));
+			shrunk &= line.equals(prefix + "->" + offHeapCache.getSuffixes(prefix));
+		}
+		System.out.println("dictionary: " + dictionarySize + " -> " + dictionary.size());
+		System.out.println("compact with eviction: " + (shrunk ? "OK" : "MISMATCH"));
+	}
+
+	/**
+	 * 访问序列：大部分访问集中在少数文件上
+	 */
+	static int[] randomAccesses(int length, int fileNum, long seed){
+
+		Random random = new Random(seed);
+		int[] files = new int[length];
+		for(int i = 0; i < length; i++){
+			files[i] = Math.min((int) Math.abs(random.nextGaussian() * fileNum / 4), fileNum - 1);
+		}
+		return files;
+	}
+
+	/**
+	 * 按QuickMine的规则 Ai & Aj -> Ak 生成规则，同时加入两个Cache
+	 */
+	private static void addRules(int[] files, FileDictionary dictionary, RuleCache heapCache, OffHeapRuleCache offHeapCache){
+
+		int[] ids = new int[files.length];
+		for(int k = 0; k < files.length; k++){
+			ids[k] = dictionary.intern("/file" + files[k]);
+		}
+
+		for(int k = 2; k < ids.length; k++){
+			String suffix = dictionary.getName(ids[k]);
+			for(int j = k - 1; j >= k - MAX_GAP && j >= 1; j--){
+				if(ids[j] == ids[k]){
+					continue;
+				}
+				for(int i = j - 1; i >= j - MAX_GAP && i >= 0; i--){
+					if(ids[i] == ids[k]){
+						continue;
+					}
+					long prefixKey = RuleCache.prefixKey(ids[i], ids[j]);
+					if(heapCache != null){
+						heapCache.addRule(prefixKey, suffix);
+					}
+					offHeapCache.addRule(prefixKey, suffix);
+				}
+			}
+		}
+	}
+
+	static List<String> sortedLines(String dump){
+
+		List<String> lines = new ArrayList<String>(Arrays.asList(dump.split("\n")));
+		Collections.sort(lines);
+		return lines;
+	}
+}
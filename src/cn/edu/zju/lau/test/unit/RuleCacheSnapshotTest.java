@@ -0,0 +1,95 @@
+package cn.edu.zju.lau.test.unit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import cn.edu.zju.lau.quickmine.QuickMine;
+import cn.edu.zju.lau.quickmine.io.RuleCacheSnapshot;
+import cn.edu.zju.lau.quickmine.model.RuleCache;
+import cn.edu.zju.lau.quickmine.model.Suffix;
+import cn.edu.zju.lau.utils.FileDictionary;
+
+/**
+ * RuleCacheSnapshot测试类：
+ * 		1. 编码后再解码，规则及其LRU顺序不变；
+ * 		2. 不发生替换时，合并与顺序、分组无关：(A + B) + C、A + (B + C)、C + A + B 的规则相同；
+ * 		3. 格式不正确的快照被拒绝。
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class RuleCacheSnapshotTest {
+
+	private static final int MAX_PREFIX_NUM = 1 << 20;
+	private static final int MAX_SUFFIX_NUM = 1 << 10;		// 足够大，合并时不移除suffix
+
+	public static void main(String[] args) throws IOException{
+
+		// 三段访问序列分别挖掘
+		int[] files = OffHeapRuleCacheTest.randomAccesses(90000, 300, 2);
+		RuleCache[] parts = new RuleCache[3];
+		for(int p = 0; p < parts.length; p++){
+			QuickMine miner = new QuickMine(MAX_PREFIX_NUM, MAX_SUFFIX_NUM, 3);
+			List<String> logs = new ArrayList<String>();
+			for(int i = p * files.length / 3; i < (p + 1) * files.length / 3; i++){
+				logs.add("/file" + files[i]);
+			}
+			miner.setAccessLogs(logs);
+			miner.miningByBatch();
+			parts[p] = miner.getRuleCache();
+		}
+
+		// 编码、解码
+		byte[] snapshot = RuleCacheSnapshot.encode(parts[0]);
+		RuleCache decoded = RuleCacheSnapshot.decode(snapshot);
+		System.out.println("snapshot bytes: " + snapshot.length + ", prefixes: " + decoded.getRules().size());
+		System.out.println("round trip: " + (decoded.toString().equals(parts[0].toString()) ? "OK" : "MISMATCH"));
+
+		// (A + B) + C
+		RuleCache left = RuleCacheSnapshot.decode(snapshot);
+		RuleCacheSnapshot.merge(RuleCacheSnapshot.encode(parts[1]), left);
+		RuleCacheSnapshot.merge(RuleCacheSnapshot.encode(parts[2]), left);
+
+		// A + (B + C)
+		RuleCache bc = RuleCacheSnapshot.decode(RuleCacheSnapshot.encode(parts[1]));
+		bc.merge(parts[2]);
+		RuleCache right = RuleCacheSnapshot.decode(snapshot);
+		RuleCacheSnapshot.merge(RuleCacheSnapshot.encode(bc), right);
+
+		// C + A + B
+		RuleCache reordered = new RuleCache(MAX_PREFIX_NUM, MAX_SUFFIX_NUM, new FileDictionary());
+		reordered.merge(parts[2]);
+		reordered.merge(parts[0]);
+		reordered.merge(parts[1]);
+
+		System.out.println("associative: " + (rules(left).equals(rules(right)) ? "OK" : "MISMATCH"));
+		System.out.println("commutative: " + (rules(left).equals(rules(reordered)) ? "OK" : "MISMATCH"));
+
+		// 格式不正确
+		try{
+			RuleCacheSnapshot.decode(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+			System.out.println("corrupt snapshot: MISMATCH");
+		}
+		catch(IOException e){
+			System.out.println("corrupt snapshot: OK (" + e.getMessage() + ")");
+		}
+	}
+
+	/**
+	 * 所有的 (prefix, suffix, support)，与顺序无关
+	 */
+	private static Set<String> rules(RuleCache cache){
+
+		FileDictionary dictionary = cache.getDictionary();
+		Set<String> rules = new HashSet<String>();
+		for(long key: cache.getRules().keys()){
+			String prefix = dictionary.getName((int) (key >>> 32)) + "|" + dictionary.getName((int) key);
+			for(Suffix suffix: cache.getRules().peek(key).getSuffixList()){
+				rules.add(prefix + "->" + suffix);
+			}
+		}
+		return rules;
+	}
+}
@@ -0,0 +1,70 @@
+package cn.edu.zju.lau.test.unit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import cn.edu.zju.lau.cminer.impl.hdfs.CMinerHDFSInterned;
+import cn.edu.zju.lau.cminer.io.hdfs.MappedRuleSet;
+import cn.edu.zju.lau.cminer.io.hdfs.RuleSetWriter;
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+import cn.edu.zju.lau.cminer.predict.MappedRuleIndex;
+import cn.edu.zju.lau.cminer.predict.RulePredictor;
+import cn.edu.zju.lau.cminer.predict.RuleTrie;
+
+/**
+ * RulePredictor测试类：同一组规则写入规则集文件后，在MappedRuleIndex上预测的结果与在RuleTrie上的完全相同。
+ * @author yuki
+ * @date 2013-12-13
+ */
+public class RulePredictorTest {
+
+	public static void main(String[] args) throws IOException{
+
+		// 几组固定的访问模式，中间夹杂随机访问
+		Random random = new Random(1);
+		String[][] patterns = {
+			{"/a", "/b", "/c"},
+			{"/a", "/b", "/d", "/e"},
+			{"/f", "/g"},
+			{"/b", "/h", "/a"},
+		};
+		List<String> logs = new ArrayList<String>();
+		for(int i = 0; i < 5000; i++){
+			if(random.nextInt(3) == 0){
+				logs.add("/random" + random.nextInt(50));
+			}
+			else{
+				for(String file: patterns[random.nextInt(patterns.length)]){
+					logs.add(file);
+				}
+			}
+		}
+
+		CMinerHDFSInterned miner = new CMinerHDFSInterned(new ArrayList<String>(logs), 20, 2, 20, 0.1f);
+		Map<String, HDFSRule> rules = miner.startMining();
+
+		File ruleFile = File.createTempFile("rules", ".cmrs");
+		ruleFile.deleteOnExit();
+		RuleSetWriter.write(rules, ruleFile.getPath());
+		MappedRuleSet ruleSet = MappedRuleSet.load(ruleFile.getPath());
+
+		RulePredictor inHeap = new RulePredictor(new RuleTrie(rules), miner.getMaxGap());
+		RulePredictor mapped = new RulePredictor(new MappedRuleIndex(ruleSet), miner.getMaxGap());
+		int predictions = 0;
+		boolean same = true;
+		for(String file: logs){
+			HDFSRule expected = inHeap.next(file);
+			HDFSRule actual = mapped.next(file);
+			if(expected != null){
+				predictions++;
+			}
+			same &= expected == null ? actual == null : actual != null && expected.toString().equals(actual.toString());
+		}
+		System.out.println("rules: " + rules.size() + ", predictions: " + predictions);
+		System.out.println("mapped rule index: " + (same && predictions > 0 ? "OK" : "MISMATCH"));
+	}
+}
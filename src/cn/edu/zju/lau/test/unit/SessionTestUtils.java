@@ -0,0 +1,75 @@
+package cn.edu.zju.lau.test.unit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import cn.edu.zju.lau.cminer.model.hdfs.HDFSRule;
+import cn.edu.zju.lau.cminer.model.hdfs.SessionSequences;
+import cn.edu.zju.lau.utils.FileDictionary;
+import cn.edu.zju.lau.utils.IntList;
+import cn.edu.zju.lau.utils.LongList;
+
+/**
+ * 会话挖掘测试（IncrementalCMinerHDFSTest、SlidingWindowCMinerHDFSTest）共用的会话生成、规则输出方法
+ * @author yuki
+ * @date 2013-12-16
+ */
+class SessionTestUtils {
+
+	private SessionTestUtils(){
+	}
+
+	/**
+	 * 将files重复times次，作为一个会话
+	 */
+	static String[] repeat(String[] files, int times){
+
+		String[] session = new String[files.length * times];
+		for(int i = 0; i < session.length; i++){
+			session[i] = files[i % files.length];
+		}
+		return session;
+	}
+
+	/**
+	 * 用新的字典生成会话序列，与SessionDemultiplexer相同；每个会话从时间0开始
+	 */
+	static SessionSequences toSessions(String[][] sessions){
+		return toSessions(sessions, new long[sessions.length]);
+	}
+
+	/**
+	 * 用新的字典生成会话序列，与SessionDemultiplexer相同；每个会话从startTimes开始，每次访问间隔1秒
+	 */
+	static SessionSequences toSessions(String[][] sessions, long[] startTimes){
+
+		FileDictionary dictionary = new FileDictionary();
+		List<String> sessionKeys = new ArrayList<String>();
+		IntList sessionStarts = new IntList();
+		IntList fileIds = new IntList();
+		LongList timestamps = new LongList();
+		for(int session = 0; session < sessions.length; session++){
+			sessionKeys.add("user" + session);
+			sessionStarts.add(fileIds.size());
+			for(int i = 0; i < sessions[session].length; i++){
+				fileIds.add(dictionary.intern(sessions[session][i]));
+				timestamps.add(startTimes[session] + i * 1000L);
+			}
+		}
+		return new SessionSequences(dictionary, sessionKeys, sessionStarts, fileIds, timestamps);
+	}
+
+	/**
+	 * 按规则的键排序输出，与文件ID无关
+	 */
+	static String dump(Map<String, HDFSRule> rules){
+
+		StringBuilder sb = new StringBuilder();
+		for(Map.Entry<String, HDFSRule> entry: new TreeMap<String, HDFSRule>(rules).entrySet()){
+			sb.append(entry.getKey()).append(" -> ").append(entry.getValue()).append("\n");
+		}
+		return sb.toString();
+	}
+}
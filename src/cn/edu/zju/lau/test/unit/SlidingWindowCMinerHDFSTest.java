@@ -0,0 +1,50 @@
+package cn.edu.zju.lau.test.unit;
+
+import java.util.ArrayList;
+
+import cn.edu.zju.lau.cminer.impl.hdfs.CMinerHDFSInterned;
+import cn.edu.zju.lau.cminer.impl.hdfs.SlidingWindowCMinerHDFS;
+
+/**
+ * SlidingWindowCMinerHDFS测试类：按时间过期时，会话依次排列的segment中，
+ * 排在较新的会话之后的旧segment也要过期，结果应与只挖掘窗口内的会话相同。
+ * @author yuki
+ * @date 2013-12-16
+ */
+public class SlidingWindowCMinerHDFSTest {
+
+	private static final int WINDOW_SIZE = 4;
+	private static final int MAX_GAP = 2;
+	private static final int MIN_SUPPORT = 3;
+	private static final float MIN_CONFIDENCE = 0.1f;
+	private static final long MAX_MILLIS = 60 * 1000;
+
+	public static void main(String[] args){
+
+		// 第一个片段都在窗口之外，第二个片段中较新的会话排在较旧的会话之前
+		// 窗口外的文件不与窗口内的文件重名，两边为/c、/d、/a分配的ID顺序相同，支持度相同的预测选择一致
+		String[] oldSession = SessionTestUtils.repeat(new String[]{"/x", "/b"}, 12);
+		String[] newSession = SessionTestUtils.repeat(new String[]{"/c", "/d", "/a", "/c"}, 6);
+		String[] staleSession = SessionTestUtils.repeat(new String[]{"/e", "/b"}, 12);
+
+		SlidingWindowCMinerHDFS window = new SlidingWindowCMinerHDFS(WINDOW_SIZE, MAX_GAP, MIN_SUPPORT, MIN_CONFIDENCE, 0);
+		window.setMaxMillis(MAX_MILLIS);
+		window.setInputSessions(SessionTestUtils.toSessions(new String[][]{oldSession}, new long[]{0}));
+		window.startMining();
+		window.setInputSessions(SessionTestUtils.toSessions(new String[][]{newSession, staleSession}, new long[]{10 * MAX_MILLIS, 5 * MAX_MILLIS}));
+		window.startMining();
+
+		CMinerHDFSInterned batch = new CMinerHDFSInterned(new ArrayList<String>(), WINDOW_SIZE, MAX_GAP, MIN_SUPPORT, MIN_CONFIDENCE);
+		batch.setInputSessions(SessionTestUtils.toSessions(new String[][]{newSession}, new long[]{10 * MAX_MILLIS}));
+		batch.startMining();
+
+		String windowRules = SessionTestUtils.dump(window.getRules());
+		String batchRules = SessionTestUtils.dump(batch.getRules());
+		System.out.println("** live segments: " + window.getLiveSegmentNum());
+		System.out.println("** sliding window rules:");
+		System.out.print(windowRules);
+		System.out.println("** batch rules:");
+		System.out.print(batchRules);
+		System.out.println(windowRules.equals(batchRules) ? "OK" : "MISMATCH");
+	}
+}
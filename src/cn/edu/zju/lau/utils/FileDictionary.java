@@ -0,0 +1,79 @@
+package cn.edu.zju.lau.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文件名字典：将每个不同的文件路径只保存一次，并映射为从0开始连续的int ID。
+ * 挖掘过程中只使用ID，需要输出时再通过ID取回文件路径。
+ *
+ * @author yuki
+ * @date 2013-12-02
+ */
+public class FileDictionary {
+
+	private Map<String, Integer> name2Id;	// 文件路径 -> ID
+	private List<String> id2Name;			// ID -> 文件路径
+
+	public FileDictionary(){
+		this.name2Id = new HashMap<String, Integer>();
+		this.id2Name = new ArrayList<String>();
+	}
+
+	public FileDictionary(int initialCapacity){
+		this.name2Id = new HashMap<String, Integer>(initialCapacity);
+		this.id2Name = new ArrayList<String>(initialCapacity);
+	}
+
+	/**
+	 * 获取文件路径对应的ID，若该路径第一次出现，则为其分配新的ID
+	 * @param name
+	 * @return
+	 */
+	public int intern(String name){
+
+		Integer id = name2Id.get(name);
+		if(id == null){
+			id = id2Name.size();
+			name2Id.put(name, id);
+			id2Name.add(name);
+		}
+		return id;
+	}
+
+	/**
+	 * 获取文件路径对应的ID，不存在返回-1
+	 * @param name
+	 * @return
+	 */
+	public int getId(String name){
+
+		Integer id = name2Id.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * 根据ID获取文件路径
+	 * @param id
+	 * @return
+	 */
+	public String getName(int id){
+		return id2Name.get(id);
+	}
+
+	public int size(){
+		return id2Name.size();
+	}
+
+	public void clear(){
+		name2Id.clear();
+		id2Name.clear();
+	}
+
+	@Override
+	public String toString(){
+		return id2Name.toString();
+	}
+}
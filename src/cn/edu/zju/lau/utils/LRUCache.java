@@ -50,6 +50,19 @@ public class LRUCache<K, V> extends LinkedHashMap<K, V>{
 		}
 	}
 
+	@Override
+	public boolean containsKey(Object key) {
+		
+		// 与get/put共享锁，预取线程可能同时在put
+		try{
+			lock.lock();
+			return super.containsKey(key);
+		}
+		finally{
+			lock.unlock();
+		}
+	}
+
 	@Override
 	public V put(K key, V value) {
 		
@@ -0,0 +1,255 @@
+package cn.edu.zju.lau.utils;
+
+/**
+ * 以long为键的LRU Cache，键不装箱，查找时不创建任何对象：
+ * 		1. 最多保存capacity个节点，节点的键、值、前后指针都存放在数组中，以节点下标相互引用；
+ * 		2. 键 -> 节点下标 存放在开放寻址（线性探测）表中，删除时后移填补空位，不使用删除标记；
+ * 		3. 节点按访问顺序组成双向链表，get/put将节点移到表头，容量满时替换表尾（最久未使用）的节点。
+ *
+ * 非线程安全，多线程使用时由调用者加锁。
+ *
+ * @author yuki
+ * @date 2013-12-16
+ *
+ * @param <V>
+ */
+public class LongLRUCache<V> {
+
+	private static final int NIL = -1;
+
+	private int capacity;
+
+	// 节点
+	private long[] nodeKeys;
+	private Object[] nodeValues;
+	private int[] prev;
+	private int[] next;
+	private int head;		// 最近使用的节点
+	private int tail;		// 最久未使用的节点
+	private int size;
+
+	// 开放寻址表，存储 节点下标 + 1，0表示空位
+	private int[] table;
+
+	public LongLRUCache(int capacity){
+
+		this.capacity = Math.max(capacity, 1);
+		this.nodeKeys = new long[this.capacity];
+		this.nodeValues = new Object[this.capacity];
+		this.prev = new int[this.capacity];
+		this.next = new int[this.capacity];
+
+		int tableSize = 2;
+		while(tableSize < this.capacity * 2){
+			tableSize *= 2;
+		}
+		this.table = new int[tableSize];
+
+		clear();
+	}
+
+	/**
+	 * 获取key对应的值，并将其标记为最近使用
+	 * @param key
+	 * @return	不存在时返回null
+	 */
+	public V get(long key){
+
+		int node = findNode(key);
+		if(node == NIL){
+			return null;
+		}
+		moveToHead(node);
+		return value(node);
+	}
+
+	/**
+	 * 获取key对应的值，不改变访问顺序
+	 * @param key
+	 * @return	不存在时返回null
+	 */
+	public V peek(long key){
+
+		int node = findNode(key);
+		return node == NIL ? null : value(node);
+	}
+
+	public boolean containsKey(long key){
+		return findNode(key) != NIL;
+	}
+
+	/**
+	 * 放入key -> value，并将其标记为最近使用；容量已满时替换最久未使用的节点
+	 * @param key
+	 * @param value
+	 * @return	key原来对应的值，不存在时返回null
+	 */
+	public V put(long key, V value){
+
+		int node = findNode(key);
+		if(node != NIL){
+			V old = value(node);
+			nodeValues[node] = value;
+			moveToHead(node);
+			return old;
+		}
+
+		// 容量已满，复用最久未使用的节点
+		if(size == capacity){
+			node = tail;
+			removeFromTable(nodeKeys[node]);
+			unlink(node);
+		}
+		else{
+			node = size++;
+		}
+
+		nodeKeys[node] = key;
+		nodeValues[node] = value;
+		linkHead(node);
+		insertIntoTable(key, node);
+		return null;
+	}
+
+	/**
+	 * 按从最近使用到最久未使用的顺序，返回所有的键
+	 * @return
+	 */
+	public long[] keys(){
+
+		long[] keys = new long[size];
+		int i = 0;
+		for(int node = head; node != NIL; node = next[node]){
+			keys[i++] = nodeKeys[node];
+		}
+		return keys;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public int getCapacity(){
+		return capacity;
+	}
+
+	public void clear(){
+
+		for(int i = 0; i < size; i++){
+			nodeValues[i] = null;
+		}
+		for(int i = 0; i < table.length; i++){
+			table[i] = 0;
+		}
+		head = NIL;
+		tail = NIL;
+		size = 0;
+	}
+
+	@Override
+	public String toString(){
+
+		StringBuilder sb = new StringBuilder("{");
+		for(int node = head; node != NIL; node = next[node]){
+			if(node != head){
+				sb.append(", ");
+			}
+			sb.append(nodeKeys[node]).append("=").append(nodeValues[node]);
+		}
+		return sb.append("}").toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private V value(int node){
+		return (V) nodeValues[node];
+	}
+
+	private int findNode(long key){
+
+		int mask = table.length - 1;
+		for(int slot = slotOf(key, mask); table[slot] != 0; slot = (slot + 1) & mask){
+			int node = table[slot] - 1;
+			if(nodeKeys[node] == key){
+				return node;
+			}
+		}
+		return NIL;
+	}
+
+	private void insertIntoTable(long key, int node){
+
+		int mask = table.length - 1;
+		int slot = slotOf(key, mask);
+		while(table[slot] != 0){
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = node + 1;
+	}
+
+	/**
+	 * 从开放寻址表中删除key，之后同一探测链上的节点依次前移填补空位
+	 */
+	private void removeFromTable(long key){
+
+		int mask = table.length - 1;
+		int slot = slotOf(key, mask);
+		while(nodeKeys[table[slot] - 1] != key){
+			slot = (slot + 1) & mask;
+		}
+
+		int hole = slot;
+		for(slot = (hole + 1) & mask; table[slot] != 0; slot = (slot + 1) & mask){
+			int home = slotOf(nodeKeys[table[slot] - 1], mask);
+
+			// home不在(hole, slot]之间时，该节点可以移到hole
+			if(((slot - home) & mask) >= ((slot - hole) & mask)){
+				table[hole] = table[slot];
+				hole = slot;
+			}
+		}
+		table[hole] = 0;
+	}
+
+	private void moveToHead(int node){
+
+		if(node == head){
+			return;
+		}
+		unlink(node);
+		linkHead(node);
+	}
+
+	private void linkHead(int node){
+
+		prev[node] = NIL;
+		next[node] = head;
+		if(head != NIL){
+			prev[head] = node;
+		}
+		head = node;
+		if(tail == NIL){
+			tail = node;
+		}
+	}
+
+	private void unlink(int node){
+
+		if(prev[node] != NIL){
+			next[prev[node]] = next[node];
+		}
+		else{
+			head = next[node];
+		}
+		if(next[node] != NIL){
+			prev[next[node]] = prev[node];
+		}
+		else{
+			tail = prev[node];
+		}
+	}
+
+	private static int slotOf(long key, int mask){
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}
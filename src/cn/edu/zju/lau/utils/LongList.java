@@ -0,0 +1,78 @@
+package cn.edu.zju.lau.utils;
+
+import java.util.Arrays;
+
+/**
+ * 基于long数组的可变长列表，避免List<Long>的装箱开销
+ *
+ * @author yuki
+ * @date 2013-12-08
+ */
+public class LongList {
+
+	private long[] values;
+	private int size;
+
+	public LongList(){
+		this(16);
+	}
+
+	public LongList(int initialCapacity){
+		this.values = new long[Math.max(initialCapacity, 1)];
+		this.size = 0;
+	}
+
+	public void add(long value){
+
+		if(size == values.length){
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		values[size++] = value;
+	}
+
+	public void addAll(LongList other){
+
+		if(size + other.size > values.length){
+			values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+		}
+		System.arraycopy(other.values, 0, values, size, other.size);
+		size += other.size;
+	}
+
+	public long get(int index){
+
+		if(index >= size){
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return values[index];
+	}
+
+	public void set(int index, long value){
+
+		if(index >= size){
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		values[index] = value;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	public void clear(){
+		size = 0;
+	}
+
+	public long[] toArray(){
+		return Arrays.copyOf(values, size);
+	}
+
+	@Override
+	public String toString(){
+		return Arrays.toString(toArray());
+	}
+}
@@ -0,0 +1,116 @@
+package cn.edu.zju.lau.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * 将Audit Log中固定格式的时间 yyyy-MM-dd HH:mm:ss,SSS（23个字符）解码为毫秒时间戳（epoch millis），
+ * 结果与 SimpleDateFormat("yyyy-MM-dd HH:mm:ss,SSS") 在默认时区下的解析结果相同。
+ *
+ * 日志是按时间顺序写入的，相邻日志行几乎都在同一个小时内：
+ * 缓存最近一次的 年月日时 对应的时间戳，只有跨小时的时候才通过Calendar计算一次（同时正确处理夏令时），
+ * 其余情况只需逐个读取数字，不创建任何对象。
+ *
+ * 非线程安全，每个线程使用自己的实例。
+ *
+ * @author yuki
+ * @date 2013-12-07
+ */
+public class TimestampDecoder {
+
+	public static final int TIMESTAMP_LENGTH = 23;	// yyyy-MM-dd HH:mm:ss,SSS
+
+	private Calendar calendar;
+	private int cachedHourKey;		// 缓存的 yyyyMMddHH
+	private long cachedHourBase;	// 缓存的整点时间戳
+
+	public TimestampDecoder(){
+		this(TimeZone.getDefault());
+	}
+
+	public TimestampDecoder(TimeZone timeZone){
+		this.calendar = Calendar.getInstance(timeZone);
+		this.cachedHourKey = -1;
+		this.cachedHourBase = 0;
+	}
+
+	/**
+	 * 解码字符串中从offset开始的时间
+	 * @param time
+	 * @param offset
+	 * @return	毫秒时间戳
+	 * @throws IllegalArgumentException	格式不正确
+	 */
+	public long decode(CharSequence time, int offset){
+
+		if(time.length() - offset < TIMESTAMP_LENGTH
+				|| time.charAt(offset + 4) != '-' || time.charAt(offset + 7) != '-' || time.charAt(offset + 10) != ' '
+				|| time.charAt(offset + 13) != ':' || time.charAt(offset + 16) != ':' || time.charAt(offset + 19) != ','){
+			throw new IllegalArgumentException("Invalid time: " + time);
+		}
+
+		return toMillis(digits(time, offset, 4), digits(time, offset + 5, 2), digits(time, offset + 8, 2),
+				digits(time, offset + 11, 2), digits(time, offset + 14, 2), digits(time, offset + 17, 2),
+				digits(time, offset + 20, 3));
+	}
+
+	/**
+	 * 解码字节缓冲区中从offset开始的时间（绝对位置，不改变缓冲区的position）
+	 * @param buffer
+	 * @param offset
+	 * @return	毫秒时间戳
+	 * @throws IllegalArgumentException	格式不正确
+	 */
+	public long decode(ByteBuffer buffer, int offset){
+
+		if(buffer.limit() - offset < TIMESTAMP_LENGTH
+				|| buffer.get(offset + 4) != '-' || buffer.get(offset + 7) != '-' || buffer.get(offset + 10) != ' '
+				|| buffer.get(offset + 13) != ':' || buffer.get(offset + 16) != ':' || buffer.get(offset + 19) != ','){
+			throw new IllegalArgumentException("Invalid time at position " + offset);
+		}
+
+		return toMillis(digits(buffer, offset, 4), digits(buffer, offset + 5, 2), digits(buffer, offset + 8, 2),
+				digits(buffer, offset + 11, 2), digits(buffer, offset + 14, 2), digits(buffer, offset + 17, 2),
+				digits(buffer, offset + 20, 3));
+	}
+
+	private long toMillis(int year, int month, int day, int hour, int minute, int second, int millis){
+
+		// 跨小时才重新计算整点时间戳
+		int hourKey = ((year * 100 + month) * 100 + day) * 100 + hour;
+		if(hourKey != cachedHourKey){
+			calendar.clear();
+			calendar.set(year, month - 1, day, hour, 0, 0);
+			cachedHourBase = calendar.getTimeInMillis();
+			cachedHourKey = hourKey;
+		}
+		return cachedHourBase + minute * 60000L + second * 1000L + millis;
+	}
+
+	private static int digits(CharSequence time, int offset, int length){
+
+		int value = 0;
+		for(int i = offset; i < offset + length; i++){
+			int digit = time.charAt(i) - '0';
+			if(digit < 0 || digit > 9){
+				throw new IllegalArgumentException("Invalid time: " + time);
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private static int digits(ByteBuffer buffer, int offset, int length){
+
+		int value = 0;
+		for(int i = offset; i < offset + length; i++){
+			int digit = buffer.get(i) - '0';
+			if(digit < 0 || digit > 9){
+				throw new IllegalArgumentException("Invalid time at position " + offset);
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+}